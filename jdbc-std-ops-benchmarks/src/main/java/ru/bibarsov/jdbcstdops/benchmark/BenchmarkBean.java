@@ -0,0 +1,58 @@
+package ru.bibarsov.jdbcstdops.benchmark;
+
+import java.time.Instant;
+import javax.annotation.Nullable;
+
+/**
+ * Mutable counterpart of {@link BenchmarkEntity} for Spring's BeanPropertyRowMapper
+ */
+public class BenchmarkBean {
+
+  private long id;
+  private String name;
+  @Nullable
+  private String description;
+  private int amount;
+  private Instant createdAt;
+
+  public long getId() {
+    return id;
+  }
+
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  @Nullable
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription(@Nullable String description) {
+    this.description = description;
+  }
+
+  public int getAmount() {
+    return amount;
+  }
+
+  public void setAmount(int amount) {
+    this.amount = amount;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(Instant createdAt) {
+    this.createdAt = createdAt;
+  }
+}
@@ -0,0 +1,40 @@
+package ru.bibarsov.jdbcstdops.benchmark;
+
+import java.time.Instant;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import ru.bibarsov.jdbcstdops.annotation.Column;
+import ru.bibarsov.jdbcstdops.annotation.Id;
+import ru.bibarsov.jdbcstdops.annotation.Table;
+
+@Table(name = "benchmark_entity")
+@ParametersAreNonnullByDefault
+public class BenchmarkEntity {
+
+  @Id
+  @Column(name = "id")
+  public final long id;
+  @Column(name = "name")
+  public final String name;
+  @Nullable
+  @Column(name = "description", nullable = true)
+  public final String description;
+  @Column(name = "amount")
+  public final int amount;
+  @Column(name = "created_at")
+  public final Instant createdAt;
+
+  public BenchmarkEntity(
+      long id,
+      String name,
+      @Nullable String description,
+      int amount,
+      Instant createdAt
+  ) {
+    this.id = id;
+    this.name = name;
+    this.description = description;
+    this.amount = amount;
+    this.createdAt = createdAt;
+  }
+}
@@ -0,0 +1,118 @@
+package ru.bibarsov.jdbcstdops.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.bibarsov.jdbcstdops.core.ColumnCodec;
+import ru.bibarsov.jdbcstdops.core.ColumnCodecRegistry;
+import ru.bibarsov.jdbcstdops.core.ColumnValueConverter;
+import ru.bibarsov.jdbcstdops.core.EnumMetadata;
+import ru.bibarsov.jdbcstdops.core.QueryColDef;
+
+/**
+ * Java to db value and back for every built-in type: {@link ColumnValueConverter} instanceof
+ * chain against column codec resolved once, with plain {@code getObject} as baseline. Values are
+ * read from a single-row in-memory result set.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ColumnValueConverterBenchmark {
+
+  public enum Status {
+    ACTIVE,
+    ARCHIVED
+  }
+
+  public enum ValueType {
+    INTEGER(Integer.class, 42, 42),
+    LONG(Long.class, 42L, 42L),
+    DOUBLE(Double.class, 4.2d, 4.2d),
+    BOOLEAN(Boolean.class, true, true),
+    STRING(String.class, "value", "value"),
+    BIG_DECIMAL(BigDecimal.class, new BigDecimal("4.2"), new BigDecimal("4.2")),
+    UUID_VALUE(UUID.class, new UUID(1, 2), new UUID(1, 2)),
+    LOCAL_DATE(LocalDate.class, LocalDate.EPOCH, LocalDate.EPOCH),
+    INSTANT(Instant.class, Instant.EPOCH, Timestamp.from(Instant.EPOCH)),
+    ENUM(Status.class, Status.ACTIVE, "ACTIVE");
+
+    private final Class<?> valueClass;
+    private final Object javaValue;
+    //as returned by driver
+    private final Object dbValue;
+
+    ValueType(Class<?> valueClass, Object javaValue, Object dbValue) {
+      this.valueClass = valueClass;
+      this.javaValue = javaValue;
+      this.dbValue = dbValue;
+    }
+  }
+
+  @Param
+  public ValueType valueType;
+
+  private final ColumnValueConverter columnValueConverter = new ColumnValueConverter();
+  private QueryColDef converterColumn;
+  @Nullable
+  private EnumMetadata enumMetadata;
+  private ColumnCodec<Object> codec;
+  private ResultSet rs;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() throws SQLException {
+    this.enumMetadata = valueType == ValueType.ENUM
+        ? new EnumMetadata(null, null, null, Status.class)
+        : null;
+    this.converterColumn = new QueryColDef("value", null, enumMetadata);
+    this.codec = (ColumnCodec<Object>) ColumnCodecRegistry.createDefault()
+        .resolve(valueType.valueClass, null, enumMetadata);
+    this.rs = InMemoryJdbc.resultSet(new String[]{"value"}, new Object[][]{{valueType.dbValue}});
+    rs.next();
+  }
+
+  @Benchmark
+  public Object toDbValueConverter() {
+    return columnValueConverter.toDbTypeValue(valueType.javaValue, converterColumn);
+  }
+
+  @Benchmark
+  public Object toDbValueCodec() {
+    return codec.toDbValue(valueType.javaValue);
+  }
+
+  @Benchmark
+  public Object readConverter() throws SQLException {
+    return columnValueConverter.toJavaTypeValue(rs, 1, valueType.valueClass, enumMetadata);
+  }
+
+  @Benchmark
+  public Object readCodec() throws SQLException {
+    return codec.read(rs, 1);
+  }
+
+  @Benchmark
+  public Object readHandWritten() throws SQLException {
+    return rs.getObject(1);
+  }
+}
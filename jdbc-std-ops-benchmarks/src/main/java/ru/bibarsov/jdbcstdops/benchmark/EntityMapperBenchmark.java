@@ -0,0 +1,89 @@
+package ru.bibarsov.jdbcstdops.benchmark;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.bibarsov.jdbcstdops.annotation.Column;
+import ru.bibarsov.jdbcstdops.core.ColumnDefinition;
+import ru.bibarsov.jdbcstdops.core.EntityMapper;
+import ru.bibarsov.jdbcstdops.core.IdMetadata;
+import ru.bibarsov.jdbcstdops.core.MethodHandleEntityMapper;
+
+/**
+ * Entity construction and field reads: reflective path (Constructor.newInstance, Field.get)
+ * against {@link MethodHandleEntityMapper}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EntityMapperBenchmark {
+
+  private Constructor<?> constructor;
+  private Field[] fields;
+  private EntityMapper<BenchmarkEntity> entityMapper;
+  private Object[] args;
+  private BenchmarkEntity entity;
+
+  @Setup
+  public void setUp() {
+    this.constructor = BenchmarkEntity.class.getConstructors()[0];
+    this.fields = BenchmarkEntity.class.getDeclaredFields();
+    List<ColumnDefinition> columnDefinitions = new ArrayList<>(fields.length);
+    for (Field field : fields) {
+      field.setAccessible(true);
+      Column column = field.getAnnotation(Column.class);
+      columnDefinitions.add(new ColumnDefinition(
+          field,
+          column.name(),
+          field.getType(),
+          field.getName().equals("id") ? new IdMetadata(false, false, null) : null,
+          null,
+          column.nullable()
+      ));
+    }
+    this.entityMapper = new MethodHandleEntityMapper<>(BenchmarkEntity.class, columnDefinitions);
+    this.args = new Object[]{1L, "name", null, 42, Instant.EPOCH};
+    this.entity = new BenchmarkEntity(1L, "name", null, 42, Instant.EPOCH);
+  }
+
+  @Benchmark
+  public Object newEntityReflective() throws ReflectiveOperationException {
+    return constructor.newInstance(args);
+  }
+
+  @Benchmark
+  public Object newEntityMethodHandle() {
+    return entityMapper.newEntity(args);
+  }
+
+  @Benchmark
+  public void readFieldsReflective(Blackhole blackhole) throws IllegalAccessException {
+    for (Field field : fields) {
+      blackhole.consume(field.get(entity));
+    }
+  }
+
+  @Benchmark
+  public void readFieldsMethodHandle(Blackhole blackhole) {
+    for (int i = 0; i < fields.length; i++) {
+      blackhole.consume(entityMapper.getFieldValue(entity, i));
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package ru.bibarsov.jdbcstdops.benchmark;
+
+import java.sql.Timestamp;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Baselines for StandardOperations of {@link BenchmarkEntity}: constant sql with typed getters
+ * and setters, and Spring's {@link BeanPropertyRowMapper}
+ */
+@ParametersAreNonnullByDefault
+public class HandWrittenDao {
+
+  public static final String[] COLUMNS = {"id", "name", "description", "amount", "created_at"};
+  public static final String CREATE_TABLE = "CREATE TABLE benchmark_entity ("
+      + "id bigint PRIMARY KEY, name text NOT NULL, description text, amount int NOT NULL, "
+      + "created_at timestamp NOT NULL)";
+
+  private static final String SELECT_ALL =
+      "SELECT id,name,description,amount,created_at FROM benchmark_entity";
+  private static final String FIND_ONE = SELECT_ALL + " WHERE id = ?";
+  private static final String INSERT = "INSERT INTO benchmark_entity "
+      + "(id,name,description,amount,created_at) VALUES (?,?,?,?,?)";
+  private static final RowMapper<BenchmarkEntity> ROW_MAPPER = (rs, rowNum) -> new BenchmarkEntity(
+      rs.getLong(1),
+      rs.getString(2),
+      rs.getString(3),
+      rs.getInt(4),
+      rs.getTimestamp(5).toInstant()
+  );
+
+  private final JdbcTemplate jdbcTemplate;
+  //created once, as it caches property descriptors
+  private final BeanPropertyRowMapper<BenchmarkBean> beanRowMapper =
+      new BeanPropertyRowMapper<>(BenchmarkBean.class);
+
+  public HandWrittenDao(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Nullable
+  public BenchmarkEntity findOne(long id) {
+    List<BenchmarkEntity> entities = jdbcTemplate.query(FIND_ONE, ROW_MAPPER, id);
+    return entities.isEmpty() ? null : entities.get(0);
+  }
+
+  public List<BenchmarkEntity> getAll() {
+    return jdbcTemplate.query(SELECT_ALL, ROW_MAPPER);
+  }
+
+  public void create(BenchmarkEntity entity) {
+    jdbcTemplate.update(INSERT, ps -> {
+      ps.setLong(1, entity.id);
+      ps.setString(2, entity.name);
+      ps.setString(3, entity.description);
+      ps.setInt(4, entity.amount);
+      ps.setTimestamp(5, Timestamp.from(entity.createdAt));
+    });
+  }
+
+  @Nullable
+  public BenchmarkBean findOneBean(long id) {
+    List<BenchmarkBean> beans = jdbcTemplate.query(FIND_ONE, beanRowMapper, id);
+    return beans.isEmpty() ? null : beans.get(0);
+  }
+
+  public List<BenchmarkBean> getAllBeans() {
+    return jdbcTemplate.query(SELECT_ALL, beanRowMapper);
+  }
+
+  /**
+   * @return row of {@link #COLUMNS} as returned by driver
+   */
+  public static Object[] toRow(BenchmarkEntity entity) {
+    return new Object[]{
+        entity.id,
+        entity.name,
+        entity.description,
+        entity.amount,
+        Timestamp.from(entity.createdAt)
+    };
+  }
+}
@@ -0,0 +1,231 @@
+package ru.bibarsov.jdbcstdops.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.sql.DataSource;
+
+/**
+ * JDBC objects backed by arrays, so the cost of the library is measured without driver and
+ * network. Built on dynamic proxies: methods which are not needed return default values, e.g.
+ * null for objects, so bound values must not be null.
+ * <p>
+ * Proxy dispatch costs the same for the library and for baselines.
+ */
+@ParametersAreNonnullByDefault
+public final class InMemoryJdbc {
+
+  private InMemoryJdbc() {
+  }
+
+  /**
+   * @return result set over {@code rows}, cursor is before the first row
+   */
+  public static ResultSet resultSet(String[] columns, Object[][] rows) {
+    return proxy(ResultSet.class, new ResultSetHandler(columns, rows));
+  }
+
+  /**
+   * @return data source, every query of which returns {@code rows}, every update affects one
+   * row
+   */
+  public static DataSource dataSource(String[] columns, Object[][] rows) {
+    PreparedStatement ps = proxy(PreparedStatement.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "executeQuery":
+          return resultSet(columns, rows);
+        case "executeUpdate":
+          return 1;
+        default:
+          return defaultValue(proxy, method, args);
+      }
+    });
+    Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "prepareStatement":
+        case "createStatement":
+          return ps;
+        case "getAutoCommit":
+          return true;
+        default:
+          return defaultValue(proxy, method, args);
+      }
+    });
+    return proxy(DataSource.class, (proxy, method, args) ->
+        method.getName().equals("getConnection") ? connection : defaultValue(proxy, method, args)
+    );
+  }
+
+  /**
+   * @return prepared statement ignoring bound values
+   */
+  public static PreparedStatement preparedStatement() {
+    return proxy(PreparedStatement.class, InMemoryJdbc::defaultValue);
+  }
+
+  private static <T> T proxy(Class<T> clazz, InvocationHandler handler) {
+    return clazz.cast(Proxy.newProxyInstance(
+        InMemoryJdbc.class.getClassLoader(),
+        new Class<?>[]{clazz},
+        handler
+    ));
+  }
+
+  @Nullable
+  private static Object defaultValue(Object proxy, Method method, @Nullable Object[] args) {
+    switch (method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return method.getDeclaringClass().getSimpleName() + "@InMemory";
+      default:
+        return primitiveDefault(method.getReturnType());
+    }
+  }
+
+  @Nullable
+  private static Object primitiveDefault(Class<?> clazz) {
+    if (clazz == boolean.class) {
+      return false;
+    }
+    if (clazz == int.class) {
+      return 0;
+    }
+    if (clazz == long.class) {
+      return 0L;
+    }
+    if (clazz == short.class) {
+      return (short) 0;
+    }
+    if (clazz == byte.class) {
+      return (byte) 0;
+    }
+    if (clazz == double.class) {
+      return 0d;
+    }
+    if (clazz == float.class) {
+      return 0f;
+    }
+    return null;
+  }
+
+  private static class ResultSetHandler implements InvocationHandler {
+
+    private final String[] columns;
+    private final Object[][] rows;
+    private final ResultSetMetaData metaData;
+
+    private int row = -1;
+    private boolean wasNull = false;
+
+    private ResultSetHandler(String[] columns, Object[][] rows) {
+      this.columns = columns;
+      this.rows = rows;
+      this.metaData = proxy(ResultSetMetaData.class, (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "getColumnCount":
+            return columns.length;
+          case "getColumnLabel":
+          case "getColumnName":
+            return columns[(int) args[0] - 1];
+          default:
+            return defaultValue(proxy, method, args);
+        }
+      });
+    }
+
+    @Nullable
+    @Override
+    public Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "next":
+          return ++row < rows.length;
+        case "wasNull":
+          return wasNull;
+        case "getMetaData":
+          return metaData;
+        case "findColumn":
+          return findColumn((String) args[0]);
+        case "getObject":
+          Object value = value(args[0]);
+          if (args.length == 2 && value != null && !((Class<?>) args[1]).isInstance(value)) {
+            //as drivers do for unsupported conversions
+            throw new SQLFeatureNotSupportedException("Conversion to " + args[1]);
+          }
+          return value;
+        case "getString":
+          Object string = value(args[0]);
+          return string != null ? string.toString() : null;
+        case "getInt":
+        case "getLong":
+        case "getShort":
+        case "getByte":
+        case "getDouble":
+        case "getFloat":
+          return toNumber(value(args[0]), method.getReturnType());
+        case "getBoolean":
+          Object bool = value(args[0]);
+          return bool != null ? bool : false;
+        case "getBigDecimal":
+        case "getBytes":
+        case "getTimestamp":
+        case "getDate":
+        case "getTime":
+          return value(args[0]);
+        default:
+          return defaultValue(proxy, method, args);
+      }
+    }
+
+    @Nullable
+    private Object value(Object column) throws SQLException {
+      int columnIndex = column instanceof Integer ? (int) column : findColumn((String) column);
+      Object value = rows[row][columnIndex - 1];
+      this.wasNull = value == null;
+      return value;
+    }
+
+    private int findColumn(String columnLabel) throws SQLException {
+      for (int i = 0; i < columns.length; i++) {
+        if (columns[i].equalsIgnoreCase(columnLabel)) {
+          return i + 1;
+        }
+      }
+      throw new SQLException("No column " + columnLabel + " in " + Arrays.toString(columns));
+    }
+
+    private static Object toNumber(@Nullable Object value, Class<?> clazz) {
+      if (value == null) {
+        return primitiveDefault(clazz);
+      }
+      Number number = (Number) value;
+      if (clazz == int.class) {
+        return number.intValue();
+      }
+      if (clazz == long.class) {
+        return number.longValue();
+      }
+      if (clazz == short.class) {
+        return number.shortValue();
+      }
+      if (clazz == byte.class) {
+        return number.byteValue();
+      }
+      if (clazz == double.class) {
+        return number.doubleValue();
+      }
+      return number.floatValue();
+    }
+  }
+}
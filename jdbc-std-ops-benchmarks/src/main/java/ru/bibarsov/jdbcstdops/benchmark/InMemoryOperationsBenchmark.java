@@ -0,0 +1,115 @@
+package ru.bibarsov.jdbcstdops.benchmark;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.bibarsov.jdbcstdops.core.QueryListener;
+import ru.bibarsov.jdbcstdops.core.StandardOperations;
+import ru.bibarsov.jdbcstdops.core.StandardOperationsConfig;
+
+/**
+ * findOne, getAll and create over in-memory JDBC objects, i.e. binding of values, column value
+ * generation and row mapping without driver and network, against hand-written JDBC and
+ * BeanPropertyRowMapper
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InMemoryOperationsBenchmark {
+
+  @Param({"100"})
+  public int rowCount;
+
+  private StandardOperations<BenchmarkEntity, Long> singleRowOps;
+  private StandardOperations<BenchmarkEntity, Long> allRowsOps;
+  private HandWrittenDao singleRowDao;
+  private HandWrittenDao allRowsDao;
+  private BenchmarkEntity entity;
+
+  @Setup
+  public void setUp() {
+    this.entity = new BenchmarkEntity(1L, "name", "description", 42, Instant.EPOCH);
+    Object[][] rows = new Object[rowCount][];
+    for (int i = 0; i < rowCount; i++) {
+      rows[i] = HandWrittenDao.toRow(
+          new BenchmarkEntity(i, "name-" + i, "description", i, Instant.EPOCH)
+      );
+    }
+    JdbcTemplate singleRow = new JdbcTemplate(InMemoryJdbc.dataSource(
+        HandWrittenDao.COLUMNS,
+        new Object[][]{HandWrittenDao.toRow(entity)}
+    ));
+    JdbcTemplate allRows = new JdbcTemplate(InMemoryJdbc.dataSource(HandWrittenDao.COLUMNS, rows));
+    this.singleRowOps = newStandardOperations(singleRow);
+    this.allRowsOps = newStandardOperations(allRows);
+    this.singleRowDao = new HandWrittenDao(singleRow);
+    this.allRowsDao = new HandWrittenDao(allRows);
+  }
+
+  @Benchmark
+  public Object findOne() {
+    return singleRowOps.findOne(1L);
+  }
+
+  @Benchmark
+  public Object findOneHandWritten() {
+    return singleRowDao.findOne(1L);
+  }
+
+  @Benchmark
+  public Object findOneBeanPropertyRowMapper() {
+    return singleRowDao.findOneBean(1L);
+  }
+
+  @Benchmark
+  public List<BenchmarkEntity> getAll() {
+    return allRowsOps.getAll();
+  }
+
+  @Benchmark
+  public List<BenchmarkEntity> getAllHandWritten() {
+    return allRowsDao.getAll();
+  }
+
+  @Benchmark
+  public List<BenchmarkBean> getAllBeanPropertyRowMapper() {
+    return allRowsDao.getAllBeans();
+  }
+
+  @Benchmark
+  public void create() {
+    singleRowOps.create(entity);
+  }
+
+  @Benchmark
+  public void createHandWritten() {
+    singleRowDao.create(entity);
+  }
+
+  static StandardOperations<BenchmarkEntity, Long> newStandardOperations(
+      JdbcTemplate jdbcTemplate
+  ) {
+    //statement listener is a no-op, so the numbers don't depend on logging configuration
+    return new StandardOperations<>(
+        BenchmarkEntity.class,
+        new NamedParameterJdbcTemplate(jdbcTemplate),
+        new StandardOperationsConfig().setQueryListener(QueryListener.NOOP)
+    );
+  }
+}
@@ -0,0 +1,111 @@
+package ru.bibarsov.jdbcstdops.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.bibarsov.jdbcstdops.core.StandardOperations;
+
+/**
+ * findOne, getAll and create against embedded postgres, the same one tests use, with
+ * hand-written JDBC and BeanPropertyRowMapper as baselines. Connections aren't pooled, so
+ * numbers include connection setup for every call, equally for all variants.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostgresOperationsBenchmark {
+
+  @Param({"100"})
+  public int rowCount;
+
+  private EmbeddedPostgres postgres;
+  private StandardOperations<BenchmarkEntity, Long> stdOps;
+  private HandWrittenDao dao;
+  //ids of created rows, they follow the ids of prepared rows
+  private long nextId;
+
+  @Setup
+  public void setUp() throws IOException {
+    this.postgres = EmbeddedPostgres.start();
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+    jdbcTemplate.execute(HandWrittenDao.CREATE_TABLE);
+    this.stdOps = InMemoryOperationsBenchmark.newStandardOperations(jdbcTemplate);
+    this.dao = new HandWrittenDao(jdbcTemplate);
+    for (int i = 0; i < rowCount; i++) {
+      dao.create(new BenchmarkEntity(i, "name-" + i, "description", i, Instant.EPOCH));
+    }
+    this.nextId = rowCount;
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    postgres.close();
+  }
+
+  @Benchmark
+  public Object findOne() {
+    return stdOps.findOne(randomId());
+  }
+
+  @Benchmark
+  public Object findOneHandWritten() {
+    return dao.findOne(randomId());
+  }
+
+  @Benchmark
+  public Object findOneBeanPropertyRowMapper() {
+    return dao.findOneBean(randomId());
+  }
+
+  @Benchmark
+  public List<BenchmarkEntity> getAll() {
+    return stdOps.getAll();
+  }
+
+  @Benchmark
+  public List<BenchmarkEntity> getAllHandWritten() {
+    return dao.getAll();
+  }
+
+  @Benchmark
+  public List<BenchmarkBean> getAllBeanPropertyRowMapper() {
+    return dao.getAllBeans();
+  }
+
+  @Benchmark
+  public void create() {
+    stdOps.create(newEntity());
+  }
+
+  @Benchmark
+  public void createHandWritten() {
+    dao.create(newEntity());
+  }
+
+  private long randomId() {
+    return ThreadLocalRandom.current().nextLong(rowCount);
+  }
+
+  private BenchmarkEntity newEntity() {
+    return new BenchmarkEntity(nextId++, "name", "description", 42, Instant.EPOCH);
+  }
+}
@@ -0,0 +1,138 @@
+package ru.bibarsov.jdbcstdops.benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import ru.bibarsov.jdbcstdops.core.ColumnValueConverter;
+import ru.bibarsov.jdbcstdops.core.IdMetadata;
+import ru.bibarsov.jdbcstdops.core.Query;
+import ru.bibarsov.jdbcstdops.core.QueryBuilder;
+import ru.bibarsov.jdbcstdops.core.QueryColDef;
+import ru.bibarsov.jdbcstdops.core.QueryPlan;
+import ru.bibarsov.jdbcstdops.util.Pair;
+import ru.bibarsov.jdbcstdops.value.QueryType;
+
+/**
+ * Statement preparation per query type: rendering by {@link QueryBuilder#build()} on every call,
+ * binding of a {@link QueryPlan} compiled once (what StandardOperations does), and hand-written
+ * baselines with constant sql
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class QueryBuilderBenchmark {
+
+  private static final String TABLE_NAME = "benchmark_entity";
+  private static final QueryColDef ID = new QueryColDef(
+      "id",
+      new IdMetadata(false, false, null),
+      null
+  );
+  private static final List<QueryColDef> COLUMNS = List.of(
+      ID,
+      new QueryColDef("name", null, null),
+      new QueryColDef("description", null, null),
+      new QueryColDef("amount", null, null),
+      new QueryColDef("created_at", null, null)
+  );
+
+  @Param({"INSERT", "UPSERT", "SELECT", "DELETE"})
+  public QueryType queryType;
+
+  private final ColumnValueConverter columnValueConverter = new ColumnValueConverter();
+  private final PreparedStatement ps = InMemoryJdbc.preparedStatement();
+  private Object[] values;
+  private QueryPlan plan;
+
+  @Setup
+  public void setUp() {
+    boolean isInsertion = queryType == QueryType.INSERT || queryType == QueryType.UPSERT;
+    this.values = isInsertion
+        ? new Object[]{1L, "name", "description", 42, Instant.EPOCH}
+        : new Object[]{1L};
+    QueryBuilder builder = newQueryBuilder();
+    if (isInsertion) {
+      builder.setColumnsToInsert(COLUMNS);
+    } else {
+      builder.setConditionColumns(List.of(ID));
+    }
+    this.plan = builder.compile();
+  }
+
+  @Benchmark
+  public Query build() {
+    QueryBuilder builder = newQueryBuilder();
+    if (queryType == QueryType.INSERT || queryType == QueryType.UPSERT) {
+      LinkedHashMap<String, Pair<QueryColDef, Object>> columnsToInsert = new LinkedHashMap<>();
+      for (int i = 0; i < COLUMNS.size(); i++) {
+        QueryColDef column = COLUMNS.get(i);
+        columnsToInsert.put(column.columnName, Pair.of(column, values[i]));
+      }
+      builder.setColumnsToInsert(columnsToInsert);
+    } else {
+      builder.setCondition(ID, values[0]);
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public MapSqlParameterSource handWrittenParameterSource() {
+    MapSqlParameterSource parameterSource = new MapSqlParameterSource().addValue("id", values[0]);
+    if (values.length > 1) {
+      parameterSource
+          .addValue("name", values[1])
+          .addValue("description", values[2])
+          .addValue("amount", values[3])
+          .addValue("created_at", Timestamp.from((Instant) values[4]));
+    }
+    return parameterSource;
+  }
+
+  @Benchmark
+  public PreparedStatement bindCompiledPlan() throws SQLException {
+    plan.setValues(ps, values);
+    return ps;
+  }
+
+  @Benchmark
+  public PreparedStatement bindHandWritten() throws SQLException {
+    ps.setLong(1, (Long) values[0]);
+    if (values.length > 1) {
+      ps.setString(2, (String) values[1]);
+      ps.setString(3, (String) values[2]);
+      ps.setInt(4, (Integer) values[3]);
+      ps.setTimestamp(5, Timestamp.from((Instant) values[4]));
+    }
+    return ps;
+  }
+
+  private QueryBuilder newQueryBuilder() {
+    QueryBuilder builder = new QueryBuilder(columnValueConverter)
+        .setType(queryType)
+        .setTableName(TABLE_NAME)
+        .setIdColumn(ID);
+    if (queryType == QueryType.SELECT) {
+      builder.setColumnsToSelect(List.of("id", "name", "description", "amount", "created_at"));
+    }
+    return builder;
+  }
+}
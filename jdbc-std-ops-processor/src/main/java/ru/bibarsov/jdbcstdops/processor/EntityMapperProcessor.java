@@ -0,0 +1,473 @@
+package ru.bibarsov.jdbcstdops.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import ru.bibarsov.jdbcstdops.annotation.Column;
+import ru.bibarsov.jdbcstdops.annotation.DbSideId;
+import ru.bibarsov.jdbcstdops.annotation.Enumerated;
+import ru.bibarsov.jdbcstdops.annotation.Id;
+import ru.bibarsov.jdbcstdops.annotation.Table;
+import ru.bibarsov.jdbcstdops.core.GeneratedEntityMapper;
+
+/**
+ * Generates {@link GeneratedEntityMapper} with direct constructor calls and field reads for
+ * every {@code @Table} entity, plus table and column constants, and registers generated mappers
+ * in {@code META-INF/services}. Entities which can't be accessed from generated code (private
+ * fields, several constructors etc.) are skipped with a note and mapped by StandardOperations
+ * at runtime.
+ */
+@SupportedAnnotationTypes("ru.bibarsov.jdbcstdops.annotation.Table")
+public class EntityMapperProcessor extends AbstractProcessor {
+
+  private static final String SERVICES_FILE =
+      "META-INF/services/" + GeneratedEntityMapper.class.getName();
+
+  //qualified names of mappers generated in all rounds
+  private final Set<String> mapperNames = new TreeSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      if (!mapperNames.isEmpty()) {
+        writeServicesFile();
+      }
+      return false;
+    }
+    for (Element element : roundEnv.getElementsAnnotatedWith(Table.class)) {
+      if (element.getKind() != ElementKind.CLASS) {
+        continue;
+      }
+      TypeElement entity = (TypeElement) element;
+      try {
+        mapperNames.add(writeMapper(entity, describe(entity)));
+      } catch (SkipGeneration e) {
+        processingEnv.getMessager().printMessage(
+            Diagnostic.Kind.NOTE,
+            "Mapper for " + entity.getQualifiedName() + " is not generated: " + e.getMessage(),
+            entity
+        );
+      } catch (IOException e) {
+        processingEnv.getMessager().printMessage(
+            Diagnostic.Kind.ERROR,
+            "Couldn't write mapper for " + entity.getQualifiedName() + ": " + e.getMessage(),
+            entity
+        );
+      }
+    }
+    return false;
+  }
+
+  private EntityDescription describe(TypeElement entity) {
+    checkAccessible(entity);
+    List<VariableElement> fields = instanceFields(entity);
+    List<String> fieldTypes = new ArrayList<>();
+    List<String> columnNames = new ArrayList<>();
+    List<String> columnDefinitions = new ArrayList<>();
+    TypeElement compositeId = null;
+    List<VariableElement> compositeIdFields = new ArrayList<>();
+    List<String> compositeIdFieldTypes = new ArrayList<>();
+    for (VariableElement field : fields) {
+      checkNotPrivate(field);
+      fieldTypes.add(castType(field.asType()));
+      Id id = field.getAnnotation(Id.class);
+      Column column = field.getAnnotation(Column.class);
+      if (id != null && id.compositeKey()) {
+        compositeId = (TypeElement) ((DeclaredType) field.asType()).asElement();
+        checkAccessible(compositeId);
+        List<String> componentDefinitions = new ArrayList<>();
+        for (VariableElement component : instanceFields(compositeId)) {
+          Column componentColumn = component.getAnnotation(Column.class);
+          if (componentColumn == null) {
+            continue;
+          }
+          checkNotPrivate(component);
+          compositeIdFields.add(component);
+          compositeIdFieldTypes.add(castType(component.asType()));
+          columnNames.add(componentColumn.name());
+          componentDefinitions.add("new ColumnComponentDefinition("
+              + literal(component.getSimpleName().toString()) + ", "
+              + literal(componentColumn.name()) + ", "
+              + classLiteral(component.asType()) + ", "
+              + enumMetadata(component) + ", "
+              + componentColumn.nullable() + ", null)");
+        }
+        if (componentDefinitions.isEmpty()) {
+          throw new SkipGeneration("composite id must declare at least one @Column");
+        }
+        columnDefinitions.add("new ColumnDefinition("
+            + literal(field.getSimpleName().toString()) + ", "
+            + (column != null ? literal(column.name()) : "null") + ", "
+            + classLiteral(field.asType()) + ", "
+            + "new IdMetadata(false, true, null, null, 1), null, "
+            + (column != null && column.nullable()) + ", "
+            + "List.of(\n"
+            + String.join(",\n", indent(componentDefinitions, "          ")) + "\n"
+            + "      ), null)");
+        int componentsCount = compositeIdFields.size();
+        boolean hasConstructor = ElementFilter.constructorsIn(compositeId.getEnclosedElements())
+            .stream()
+            .anyMatch(c -> !c.getModifiers().contains(Modifier.PRIVATE)
+                && c.getParameters().size() == componentsCount);
+        if (!hasConstructor) {
+          throw new SkipGeneration("composite id must have non-private constructor accepting "
+              + "all @Column fields");
+        }
+      } else if (column != null) {
+        columnNames.add(column.name());
+        columnDefinitions.add("new ColumnDefinition("
+            + literal(field.getSimpleName().toString()) + ", "
+            + literal(column.name()) + ", "
+            + classLiteral(field.asType()) + ", "
+            + (id != null ? idMetadata(field) : "null") + ", "
+            + enumMetadata(field) + ", "
+            + column.nullable() + ", List.of(), null)");
+      } else {
+        throw new SkipGeneration("field " + field.getSimpleName() + " has no @Column");
+      }
+    }
+    List<ExecutableElement> constructors = ElementFilter
+        .constructorsIn(entity.getEnclosedElements())
+        .stream()
+        .filter(c -> c.getModifiers().contains(Modifier.PUBLIC))
+        .collect(Collectors.toList());
+    if (constructors.size() != 1 || constructors.get(0).getParameters().size() != fields.size()) {
+      throw new SkipGeneration("entity must have one public constructor accepting all fields");
+    }
+    return new EntityDescription(
+        fields,
+        fieldTypes,
+        columnNames,
+        columnDefinitions,
+        compositeId,
+        compositeIdFields,
+        compositeIdFieldTypes
+    );
+  }
+
+  /**
+   * @return qualified name of written mapper
+   */
+  private String writeMapper(TypeElement entity, EntityDescription description)
+      throws IOException {
+    PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(entity);
+    String packageName = packageElement.getQualifiedName().toString();
+    String binaryName = processingEnv.getElementUtils().getBinaryName(entity).toString();
+    String mapperQualifiedName = binaryName.replace('$', '_')
+        + GeneratedEntityMapper.CLASS_NAME_SUFFIX;
+    String mapperName = mapperQualifiedName.substring(mapperQualifiedName.lastIndexOf('.') + 1);
+    String entityType = entity.getQualifiedName().toString();
+    Table table = entity.getAnnotation(Table.class);
+
+    StringBuilder source = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n\n");
+    }
+    source.append("import java.util.List;\n")
+        .append("import javax.annotation.processing.Generated;\n")
+        .append("import ru.bibarsov.jdbcstdops.core.ColumnComponentDefinition;\n")
+        .append("import ru.bibarsov.jdbcstdops.core.ColumnDefinition;\n")
+        .append("import ru.bibarsov.jdbcstdops.core.EnumMetadata;\n")
+        .append("import ru.bibarsov.jdbcstdops.core.GeneratedEntityMapper;\n")
+        .append("import ru.bibarsov.jdbcstdops.core.IdMetadata;\n\n")
+        .append("@Generated(\"").append(getClass().getName()).append("\")\n")
+        .append("public final class ").append(mapperName)
+        .append(" implements GeneratedEntityMapper<").append(entityType).append("> {\n\n")
+        .append("  public static final String TABLE_NAME = ")
+        .append(literal(table.name())).append(";\n")
+        .append("  public static final List<String> COLUMN_NAMES = List.of(")
+        .append(description.columnNames.stream()
+            .map(EntityMapperProcessor::literal)
+            .collect(Collectors.joining(", ")))
+        .append(");\n")
+        .append("  public static final String SELECT_COLUMNS = ")
+        .append(literal(String.join(",", description.columnNames))).append(";\n")
+        .append("  public static final List<ColumnDefinition> COLUMN_DEFINITIONS = List.of(\n")
+        .append(String.join(",\n", indent(description.columnDefinitions, "      ")))
+        .append("\n  );\n\n");
+
+    source.append("  @Override\n")
+        .append("  public Class<").append(entityType).append("> entityClass() {\n")
+        .append("    return ").append(entityType).append(".class;\n")
+        .append("  }\n\n");
+
+    source.append("  @Override\n")
+        .append("  public String tableName() {\n")
+        .append("    return TABLE_NAME;\n")
+        .append("  }\n\n");
+
+    source.append("  @Override\n")
+        .append("  @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+        .append("  public ").append(entityType).append(" newEntity(Object[] args) {\n")
+        .append("    return new ").append(entityType).append("(\n")
+        .append(castArgs(description.fieldTypes))
+        .append("    );\n")
+        .append("  }\n\n");
+
+    source.append("  @Override\n")
+        .append("  public Object getFieldValue(").append(entityType)
+        .append(" entity, int fieldIndex) {\n")
+        .append("    switch (fieldIndex) {\n");
+    for (int i = 0; i < description.fields.size(); i++) {
+      source.append("      case ").append(i).append(":\n")
+          .append("        return entity.").append(description.fields.get(i).getSimpleName())
+          .append(";\n");
+    }
+    source.append("      default:\n")
+        .append("        throw new IndexOutOfBoundsException(\"Field index: \" + fieldIndex);\n")
+        .append("    }\n")
+        .append("  }\n\n");
+
+    source.append("  @Override\n")
+        .append("  @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+        .append("  public Object newCompositeId(Object[] args) {\n");
+    if (description.compositeId != null) {
+      source.append("    return new ").append(description.compositeId.getQualifiedName())
+          .append("(\n")
+          .append(castArgs(description.compositeIdFieldTypes))
+          .append("    );\n");
+    } else {
+      source.append("    throw new IllegalStateException(\"Entity has no composite id\");\n");
+    }
+    source.append("  }\n\n");
+
+    source.append("  @Override\n")
+        .append("  public Object getCompositeIdComponentValue(")
+        .append("Object compositeId, int componentIndex) {\n");
+    if (description.compositeId != null) {
+      source.append("    ").append(description.compositeId.getQualifiedName()).append(" id = (")
+          .append(description.compositeId.getQualifiedName()).append(") compositeId;\n")
+          .append("    switch (componentIndex) {\n");
+      for (int i = 0; i < description.compositeIdFields.size(); i++) {
+        source.append("      case ").append(i).append(":\n")
+            .append("        return id.")
+            .append(description.compositeIdFields.get(i).getSimpleName()).append(";\n");
+      }
+      source.append("      default:\n")
+          .append("        throw new IndexOutOfBoundsException(")
+          .append("\"Component index: \" + componentIndex);\n")
+          .append("    }\n");
+    } else {
+      source.append("    throw new IllegalStateException(\"Entity has no composite id\");\n");
+    }
+    source.append("  }\n\n");
+
+    source.append("  @Override\n")
+        .append("  public List<String> columnNames() {\n")
+        .append("    return COLUMN_NAMES;\n")
+        .append("  }\n\n");
+
+    source.append("  @Override\n")
+        .append("  public List<ColumnDefinition> columnDefinitions() {\n")
+        .append("    return COLUMN_DEFINITIONS;\n")
+        .append("  }\n")
+        .append("}\n");
+
+    JavaFileObject file = processingEnv.getFiler().createSourceFile(mapperQualifiedName, entity);
+    try (Writer writer = file.openWriter()) {
+      writer.write(source.toString());
+    }
+    return mapperQualifiedName;
+  }
+
+  /**
+   * Keeps mappers registered by previous compilation into the same output, as only changed
+   * entities may be processed
+   */
+  private void writeServicesFile() {
+    Set<String> services = new TreeSet<>(mapperNames);
+    try {
+      FileObject existing = processingEnv.getFiler()
+          .getResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_FILE);
+      try (BufferedReader reader = new BufferedReader(existing.openReader(true))) {
+        reader.lines().map(String::trim).filter(l -> !l.isEmpty()).forEach(services::add);
+      }
+    } catch (IOException e) {
+      //no services file yet
+    }
+    try {
+      FileObject file = processingEnv.getFiler()
+          .createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_FILE);
+      try (Writer writer = file.openWriter()) {
+        for (String service : services) {
+          writer.write(service);
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(
+          Diagnostic.Kind.ERROR,
+          "Couldn't write " + SERVICES_FILE + ": " + e.getMessage()
+      );
+    }
+  }
+
+  private String idMetadata(VariableElement field) {
+    DbSideId dbSideId = field.getAnnotation(DbSideId.class);
+    if (dbSideId == null) {
+      return "new IdMetadata(false, false, null, null, 1)";
+    }
+    TypeMirror sequenceValueType;
+    try {
+      dbSideId.sequenceValueType();
+      throw new IllegalStateException("Class value of annotation must not be loaded");
+    } catch (MirroredTypeException e) {
+      sequenceValueType = e.getTypeMirror();
+    }
+    return "new IdMetadata(true, false, " + literal(dbSideId.sequenceName()) + ", "
+        + classLiteral(sequenceValueType) + ", " + dbSideId.allocationSize() + ")";
+  }
+
+  private String enumMetadata(VariableElement field) {
+    Enumerated enumerated = field.getAnnotation(Enumerated.class);
+    if (enumerated == null) {
+      return "null";
+    }
+    return "new EnumMetadata("
+        + optionalLiteral(enumerated.accessorField()) + ", "
+        + optionalLiteral(enumerated.accessorMethod()) + ", "
+        + optionalLiteral(enumerated.builderMethod()) + ", "
+        + classLiteral(field.asType()) + ")";
+  }
+
+  private String classLiteral(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return type.toString() + ".class";
+    }
+    if (type.getKind() == TypeKind.DECLARED) {
+      return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName() + ".class";
+    }
+    return processingEnv.getTypeUtils().erasure(type).toString() + ".class";
+  }
+
+  private static List<String> indent(List<String> lines, String indent) {
+    return lines.stream().map(l -> indent + l).collect(Collectors.toList());
+  }
+
+  private static String castArgs(List<String> types) {
+    StringBuilder args = new StringBuilder();
+    for (int i = 0; i < types.size(); i++) {
+      args.append("        (").append(types.get(i)).append(") args[").append(i).append(']')
+          .append(i < types.size() - 1 ? ",\n" : "\n");
+    }
+    return args.toString();
+  }
+
+  private String castType(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type)
+          .getQualifiedName()
+          .toString();
+    }
+    if (type.getKind() == TypeKind.DECLARED) {
+      return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+    }
+    return processingEnv.getTypeUtils().erasure(type).toString();
+  }
+
+  private static List<VariableElement> instanceFields(TypeElement type) {
+    return ElementFilter.fieldsIn(type.getEnclosedElements()).stream()
+        .filter(f -> !f.getModifiers().contains(Modifier.STATIC))
+        .collect(Collectors.toList());
+  }
+
+  private static void checkAccessible(TypeElement type) {
+    if (type.getModifiers().contains(Modifier.PRIVATE)) {
+      throw new SkipGeneration(type.getSimpleName() + " is private");
+    }
+    if (type.getNestingKind() == NestingKind.MEMBER
+        && !type.getModifiers().contains(Modifier.STATIC)) {
+      throw new SkipGeneration(type.getSimpleName() + " is inner class");
+    }
+    if (type.getNestingKind() == NestingKind.MEMBER) {
+      checkAccessible((TypeElement) type.getEnclosingElement());
+    }
+  }
+
+  private static void checkNotPrivate(VariableElement field) {
+    if (field.getModifiers().contains(Modifier.PRIVATE)) {
+      throw new SkipGeneration("field " + field.getSimpleName() + " is private");
+    }
+  }
+
+  private static String literal(String value) {
+    return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+  }
+
+  private static String optionalLiteral(String value) {
+    return value.isEmpty() ? "null" : literal(value);
+  }
+
+  private static class EntityDescription {
+
+    final List<VariableElement> fields;
+    final List<String> fieldTypes;
+    final List<String> columnNames;
+    //source of ColumnDefinition constructor calls
+    final List<String> columnDefinitions;
+    @Nullable
+    final TypeElement compositeId;
+    final List<VariableElement> compositeIdFields;
+    final List<String> compositeIdFieldTypes;
+
+    EntityDescription(
+        List<VariableElement> fields,
+        List<String> fieldTypes,
+        List<String> columnNames,
+        List<String> columnDefinitions,
+        @Nullable TypeElement compositeId,
+        List<VariableElement> compositeIdFields,
+        List<String> compositeIdFieldTypes
+    ) {
+      this.fields = fields;
+      this.fieldTypes = fieldTypes;
+      this.columnNames = columnNames;
+      this.columnDefinitions = columnDefinitions;
+      this.compositeId = compositeId;
+      this.compositeIdFields = compositeIdFields;
+      this.compositeIdFieldTypes = compositeIdFieldTypes;
+    }
+  }
+
+  private static class SkipGeneration extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    SkipGeneration(String reason) {
+      super(reason);
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package ru.bibarsov.jdbcstdops.processor;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.bibarsov.jdbcstdops.core.ColumnDefinition;
+import ru.bibarsov.jdbcstdops.core.GeneratedEntityMapper;
+import ru.bibarsov.jdbcstdops.core.IdMetadata;
+import ru.bibarsov.jdbcstdops.core.OffHeapEntityStore;
+import ru.bibarsov.jdbcstdops.core.StandardOperations;
+import ru.bibarsov.jdbcstdops.core.StandardOperationsConfig;
+
+public class EntityMapperProcessorTest {
+
+  private Path sourceDir;
+  private Path outputDir;
+
+  @Before
+  public void setUp() throws IOException {
+    this.sourceDir = Files.createTempDirectory("processor-src");
+    this.outputDir = Files.createTempDirectory("processor-out");
+  }
+
+  @Test
+  public void testGeneratesMapperForEntity() throws Exception {
+    writeSource("sample/Sample.java", String.join("\n",
+        "package sample;",
+        "import ru.bibarsov.jdbcstdops.annotation.*;",
+        "@Table(name = \"sample\")",
+        "public class Sample {",
+        "  @Id @Column(name = \"id\") public final long id;",
+        "  @Column(name = \"name\", nullable = true) public final String name;",
+        "  public Sample(long id, String name) { this.id = id; this.name = name; }",
+        "}"
+    ));
+    compile("sample/Sample.java");
+
+    GeneratedEntityMapper<Object> mapper = loadMapper("sample.Sample_JdbcStdOpsMapper");
+    Assert.assertEquals(List.of("id", "name"), mapper.columnNames());
+    Object entity = mapper.newEntity(new Object[]{42L, "name"});
+    Assert.assertEquals(42L, mapper.getFieldValue(entity, 0));
+    Assert.assertEquals("name", mapper.getFieldValue(entity, 1));
+  }
+
+  @Test
+  public void testGeneratesMapperForCompositeId() throws Exception {
+    writeSource("sample/Composite.java", String.join("\n",
+        "package sample;",
+        "import ru.bibarsov.jdbcstdops.annotation.*;",
+        "@Table(name = \"composite\")",
+        "public class Composite {",
+        "  @Id(compositeKey = true) public final Key id;",
+        "  @Column(name = \"name\") public final String name;",
+        "  public Composite(Key id, String name) { this.id = id; this.name = name; }",
+        "  public static class Key {",
+        "    @Column(name = \"first_part\") public final int first;",
+        "    @Column(name = \"second_part\") public final int second;",
+        "    public Key(int first, int second) { this.first = first; this.second = second; }",
+        "  }",
+        "}"
+    ));
+    compile("sample/Composite.java");
+
+    GeneratedEntityMapper<Object> mapper = loadMapper("sample.Composite_JdbcStdOpsMapper");
+    Assert.assertEquals(List.of("first_part", "second_part", "name"), mapper.columnNames());
+    Object compositeId = mapper.newCompositeId(new Object[]{1, 2});
+    Assert.assertEquals(2, mapper.getCompositeIdComponentValue(compositeId, 1));
+    Object entity = mapper.newEntity(new Object[]{compositeId, "name"});
+    Assert.assertSame(compositeId, mapper.getFieldValue(entity, 0));
+  }
+
+  @Test
+  public void testStandardOperationsUseGeneratedMetadata() throws Exception {
+    writeSource("sample/Account.java", String.join("\n",
+        "package sample;",
+        "import java.time.Instant;",
+        "import ru.bibarsov.jdbcstdops.annotation.*;",
+        "@Table(name = \"account\")",
+        "public class Account {",
+        //reflective reading of entity would reject field without @Column
+        "  public static final String TABLE = \"account\";",
+        "  @Id @DbSideId(sequenceName = \"account_seq\", sequenceValueType = Long.class,"
+            + " allocationSize = 50)",
+        "  @Column(name = \"id\") public final long id;",
+        "  @Enumerated @Column(name = \"kind\") public final Kind kind;",
+        "  @Column(name = \"note\", nullable = true) public final String note;",
+        "  @Column(name = \"created_at\") public final Instant createdAt;",
+        "  public Account(long id, Kind kind, String note, Instant createdAt) {",
+        "    this.id = id; this.kind = kind; this.note = note; this.createdAt = createdAt;",
+        "  }",
+        "  public enum Kind { PERSONAL, BUSINESS }",
+        "}"
+    ));
+    compile("sample/Account.java");
+    //stale registration of removed entity is skipped
+    Files.writeString(
+        outputDir.resolve("META-INF/services/" + GeneratedEntityMapper.class.getName()),
+        "sample.Removed_JdbcStdOpsMapper\n",
+        StandardCharsets.UTF_8,
+        StandardOpenOption.APPEND
+    );
+
+    ClassLoader classLoader = outputClassLoader();
+    @SuppressWarnings("unchecked")
+    Class<Object> entityClass = (Class<Object>) classLoader.loadClass("sample.Account");
+    GeneratedEntityMapper<Object> mapper = GeneratedEntityMapper.find(entityClass);
+    Assert.assertNotNull("Mapper is not registered as service", mapper);
+    Assert.assertEquals("account", mapper.tableName());
+    List<ColumnDefinition> definitions = mapper.columnDefinitions();
+    IdMetadata idMetadata = Objects.requireNonNull(definitions.get(0).idMetadata);
+    Assert.assertEquals("account_seq", idMetadata.sequenceName);
+    Assert.assertEquals(Long.class, idMetadata.sequenceValueType);
+    Assert.assertEquals(50, idMetadata.allocationSize);
+    Assert.assertNotNull(Objects.requireNonNull(definitions.get(1).enumMetadata).codec);
+    Assert.assertTrue(definitions.get(2).nullable);
+
+    //entity is written and read back by off-heap store, built from generated metadata only
+    StandardOperations<Object, Long> stdOps = new StandardOperations<>(
+        entityClass,
+        new NamedParameterJdbcTemplate(new DriverManagerDataSource()),
+        new StandardOperationsConfig().setOffHeapCache(1 << 16)
+    );
+    Object kind = classLoader.loadClass("sample.Account$Kind").getEnumConstants()[1];
+    Instant createdAt = Instant.ofEpochSecond(1_600_000_000L, 123_000L);
+    Object entity = mapper.newEntity(new Object[]{7L, kind, null, createdAt});
+    OffHeapEntityStore<Long, Object> store = Objects.requireNonNull(stdOps.getOffHeapStore());
+    store.putLoaded(7L, entity, store.stamp(7L), 0);
+    Object stored = Objects.requireNonNull(store.get(7L));
+    Assert.assertNotSame(entity, stored);
+    for (int i = 0; i < definitions.size(); i++) {
+      Assert.assertEquals(mapper.getFieldValue(entity, i), mapper.getFieldValue(stored, i));
+    }
+  }
+
+  @Test
+  public void testSkipsEntityWithPrivateFields() throws Exception {
+    writeSource("sample/Hidden.java", String.join("\n",
+        "package sample;",
+        "import ru.bibarsov.jdbcstdops.annotation.*;",
+        "@Table(name = \"hidden\")",
+        "public class Hidden {",
+        "  @Id @Column(name = \"id\") private final long id;",
+        "  public Hidden(long id) { this.id = id; }",
+        "}"
+    ));
+    compile("sample/Hidden.java");
+
+    Assert.assertFalse(Files.exists(outputDir.resolve("sample/Hidden_JdbcStdOpsMapper.class")));
+  }
+
+  private void writeSource(String path, String source) throws IOException {
+    Path file = sourceDir.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, source, StandardCharsets.UTF_8);
+  }
+
+  private void compile(String path) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    int result = compiler.run(
+        null,
+        null,
+        null,
+        "-classpath", System.getProperty("java.class.path"),
+        "-processor", EntityMapperProcessor.class.getName(),
+        "-d", outputDir.toString(),
+        "-s", outputDir.toString(),
+        sourceDir.resolve(path).toString()
+    );
+    Assert.assertEquals(0, result);
+  }
+
+  private ClassLoader outputClassLoader() throws IOException {
+    return new URLClassLoader(new URL[]{outputDir.toUri().toURL()}, getClass().getClassLoader());
+  }
+
+  private GeneratedEntityMapper<Object> loadMapper(String className) throws Exception {
+    @SuppressWarnings("unchecked")
+    GeneratedEntityMapper<Object> mapper = (GeneratedEntityMapper<Object>) outputClassLoader()
+        .loadClass(className)
+        .getDeclaredConstructor()
+        .newInstance();
+    return mapper;
+  }
+}
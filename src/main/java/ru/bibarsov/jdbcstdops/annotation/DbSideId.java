@@ -14,4 +14,10 @@ public @interface DbSideId {
    */
   String sequenceName();
   Class<?> sequenceValueType();
+
+  /**
+   * how many sequence values to fetch at once and keep in memory, 1 means that
+   * {@code nextval} is evaluated inside of every INSERT statement
+   */
+  int allocationSize() default 1;
 }
@@ -0,0 +1,55 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import javax.annotation.Nullable;
+
+/**
+ * Conversion between java type of column and jdbc. Codec is bound to every column once, when
+ * StandardOperations is created, see {@link ColumnCodecRegistry}.
+ *
+ * @param <T> java type of column
+ */
+public interface ColumnCodec<T> {
+
+  @Nullable
+  T read(ResultSet rs, int columnIndex) throws SQLException;
+
+  /**
+   * @return value to be passed to {@code PreparedStatement.setObject}
+   */
+  @Nullable
+  Object toDbValue(@Nullable T value);
+
+  /**
+   * Reads column value leaving expensive conversion to {@link #decode(Object)}, which may run
+   * on another thread. {@code decode(readRaw(rs, i))} must be equal to {@code read(rs, i)}.
+   */
+  @Nullable
+  default Object readRaw(ResultSet rs, int columnIndex) throws SQLException {
+    return read(rs, columnIndex);
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  default T decode(@Nullable Object rawValue) {
+    return (T) rawValue;
+  }
+
+  /**
+   * Binary form of values for off-heap cache, which has built-in formats only for types of
+   * the default registry and enums. Columns of other types can be stored off-heap only if their
+   * codec returns a serializer.
+   */
+  @Nullable
+  default Serializer<T> serializer() {
+    return null;
+  }
+
+  interface Serializer<T> {
+
+    byte[] serialize(T value);
+
+    T deserialize(byte[] bytes);
+  }
+}
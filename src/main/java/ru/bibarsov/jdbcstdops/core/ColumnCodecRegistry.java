@@ -0,0 +1,80 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import ru.bibarsov.jdbcstdops.util.ReflectionTools;
+
+/**
+ * Codecs by java type of column. Lookup happens once per column, when StandardOperations is
+ * created, so registering codecs afterwards doesn't affect existing instances.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class ColumnCodecRegistry {
+
+  private final Map<Class<?>, ColumnCodec<?>> codecs = new ConcurrentHashMap<>();
+
+  /**
+   * @return new registry with built-in codecs, see {@link ColumnCodecs}
+   */
+  public static ColumnCodecRegistry createDefault() {
+    return new ColumnCodecRegistry()
+        .register(Integer.class, ColumnCodecs.INTEGER)
+        .register(Long.class, ColumnCodecs.LONG)
+        .register(Short.class, ColumnCodecs.SHORT)
+        .register(Byte.class, ColumnCodecs.BYTE)
+        .register(Double.class, ColumnCodecs.DOUBLE)
+        .register(Float.class, ColumnCodecs.FLOAT)
+        .register(Boolean.class, ColumnCodecs.BOOLEAN)
+        .register(String.class, ColumnCodecs.STRING)
+        .register(BigDecimal.class, ColumnCodecs.BIG_DECIMAL)
+        .register(byte[].class, ColumnCodecs.BYTES)
+        .register(UUID.class, ColumnCodecs.UUID_CODEC)
+        .register(LocalDate.class, ColumnCodecs.LOCAL_DATE)
+        .register(LocalTime.class, ColumnCodecs.LOCAL_TIME)
+        .register(LocalDateTime.class, ColumnCodecs.LOCAL_DATE_TIME)
+        .register(OffsetDateTime.class, ColumnCodecs.OFFSET_DATE_TIME)
+        .register(Instant.class, ColumnCodecs.INSTANT);
+  }
+
+  /**
+   * Registers codec for exact java type, replacing previous one
+   */
+  public <T> ColumnCodecRegistry register(Class<T> valueClass, ColumnCodec<T> codec) {
+    codecs.put(valueClass, codec);
+    return this;
+  }
+
+  /**
+   * @return codec for column, falls back to {@code getObject(columnIndex, valueClass)} for
+   * unknown types
+   */
+  public ColumnCodec<?> resolve(
+      Class<?> valueClass,
+      @Nullable IdMetadata idMetadata,
+      @Nullable EnumMetadata enumMetadata
+  ) {
+    if (idMetadata != null && idMetadata.isDbSideGenerated) {
+      return ColumnCodecs.DEFERRED_ID;
+    }
+    Class<?> wrapperClass = ReflectionTools.primitiveToWrapper(valueClass);
+    ColumnCodec<?> codec = codecs.get(wrapperClass);
+    if (codec != null) {
+      return codec;
+    }
+    if (enumMetadata != null && enumMetadata.codec != null) {
+      return ColumnCodecs.forEnum(enumMetadata.codec);
+    }
+    return ColumnCodecs.object(wrapperClass);
+  }
+}
@@ -0,0 +1,154 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import ru.bibarsov.jdbcstdops.value.DeferredId;
+
+/**
+ * Built-in codecs
+ */
+@ParametersAreNonnullByDefault
+public final class ColumnCodecs {
+
+  public static final ColumnCodec<Integer> INTEGER = of((rs, i) -> {
+    int value = rs.getInt(i);
+    return rs.wasNull() ? null : value;
+  });
+  public static final ColumnCodec<Long> LONG = of((rs, i) -> {
+    long value = rs.getLong(i);
+    return rs.wasNull() ? null : value;
+  });
+  public static final ColumnCodec<Short> SHORT = of((rs, i) -> {
+    short value = rs.getShort(i);
+    return rs.wasNull() ? null : value;
+  });
+  public static final ColumnCodec<Byte> BYTE = of((rs, i) -> {
+    byte value = rs.getByte(i);
+    return rs.wasNull() ? null : value;
+  });
+  public static final ColumnCodec<Double> DOUBLE = of((rs, i) -> {
+    double value = rs.getDouble(i);
+    return rs.wasNull() ? null : value;
+  });
+  public static final ColumnCodec<Float> FLOAT = of((rs, i) -> {
+    float value = rs.getFloat(i);
+    return rs.wasNull() ? null : value;
+  });
+  public static final ColumnCodec<Boolean> BOOLEAN = of((rs, i) -> {
+    boolean value = rs.getBoolean(i);
+    return rs.wasNull() ? null : value;
+  });
+  public static final ColumnCodec<String> STRING = of(ResultSet::getString);
+  public static final ColumnCodec<BigDecimal> BIG_DECIMAL = of(ResultSet::getBigDecimal);
+  public static final ColumnCodec<byte[]> BYTES = of(ResultSet::getBytes);
+  public static final ColumnCodec<UUID> UUID_CODEC = object(UUID.class);
+  public static final ColumnCodec<LocalDate> LOCAL_DATE = object(LocalDate.class);
+  public static final ColumnCodec<LocalTime> LOCAL_TIME = object(LocalTime.class);
+  public static final ColumnCodec<LocalDateTime> LOCAL_DATE_TIME = object(LocalDateTime.class);
+  public static final ColumnCodec<OffsetDateTime> OFFSET_DATE_TIME = object(OffsetDateTime.class);
+  //through Timestamp to keep semantics of timestamp columns, but without truncation to millis
+  public static final ColumnCodec<Instant> INSTANT = of(
+      (rs, i) -> {
+        Timestamp timestamp = rs.getTimestamp(i);
+        return timestamp != null ? timestamp.toInstant() : null;
+      },
+      Timestamp::from
+  );
+  //accepts both DeferredId and raw id value, the latter is passed to findOne and deleteOne
+  public static final ColumnCodec<Object> DEFERRED_ID = new ColumnCodec<>() {
+    @Override
+    public Object read(ResultSet rs, int columnIndex) throws SQLException {
+      DeferredId<Object> deferredId = new DeferredId<>();
+      deferredId.value = rs.getObject(columnIndex);
+      return deferredId;
+    }
+
+    @Nullable
+    @Override
+    public Object toDbValue(@Nullable Object value) {
+      return value instanceof DeferredId<?> ? ((DeferredId<?>) value).value : value;
+    }
+  };
+
+  private ColumnCodecs() {
+  }
+
+  public static ColumnCodec<Object> forEnum(EnumCodec enumCodec) {
+    return new ColumnCodec<>() {
+      @Nullable
+      @Override
+      public Object read(ResultSet rs, int columnIndex) throws SQLException {
+        return decode(rs.getObject(columnIndex));
+      }
+
+      @Nullable
+      @Override
+      public Object toDbValue(@Nullable Object value) {
+        return value != null ? enumCodec.toRawValue((Enum<?>) value) : null;
+      }
+
+      @Nullable
+      @Override
+      public Object readRaw(ResultSet rs, int columnIndex) throws SQLException {
+        return rs.getObject(columnIndex);
+      }
+
+      @Nullable
+      @Override
+      public Object decode(@Nullable Object rawValue) {
+        return rawValue != null ? enumCodec.fromRawValue(rawValue) : null;
+      }
+    };
+  }
+
+  /**
+   * Codec relying on driver conversion of {@code getObject(columnIndex, valueClass)}
+   */
+  public static <T> ColumnCodec<T> object(Class<T> valueClass) {
+    return of((rs, i) -> rs.getObject(i, valueClass));
+  }
+
+  /**
+   * Codec writing value as is
+   */
+  public static <T> ColumnCodec<T> of(Reader<T> reader) {
+    return of(reader, value -> value);
+  }
+
+  /**
+   * @param writer converter of non-null values
+   */
+  public static <T> ColumnCodec<T> of(Reader<T> reader, Function<T, Object> writer) {
+    return new ColumnCodec<>() {
+      @Nullable
+      @Override
+      public T read(ResultSet rs, int columnIndex) throws SQLException {
+        return reader.read(rs, columnIndex);
+      }
+
+      @Nullable
+      @Override
+      public Object toDbValue(@Nullable T value) {
+        return value != null ? writer.apply(value) : null;
+      }
+    };
+  }
+
+  @FunctionalInterface
+  public interface Reader<T> {
+
+    @Nullable
+    T read(ResultSet rs, int columnIndex) throws SQLException;
+  }
+}
@@ -1,5 +1,7 @@
 package ru.bibarsov.jdbcstdops.core;
 
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkNotNull;
+
 import java.lang.reflect.Field;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.Nullable;
@@ -7,12 +9,17 @@ import javax.annotation.Nullable;
 @ParametersAreNonnullByDefault
 public class ColumnComponentDefinition {
 
+  //null if declared by generated code
+  @Nullable
   public final Field javaReflectionField;
+  public final String fieldName;
   public final String columnName;
   public final Class<?> valueClass;
   @Nullable
   public final EnumMetadata enumMetadata;
   public final boolean nullable;
+  @Nullable
+  public final ColumnCodec<?> codec;
 
   public ColumnComponentDefinition(
       Field javaReflectionField,
@@ -20,13 +27,60 @@ public class ColumnComponentDefinition {
       Class<?> valueClass,
       @Nullable EnumMetadata enumMetadata,
       boolean nullable
+  ) {
+    this(javaReflectionField, columnName, valueClass, enumMetadata, nullable, null);
+  }
+
+  public ColumnComponentDefinition(
+      Field javaReflectionField,
+      String columnName,
+      Class<?> valueClass,
+      @Nullable EnumMetadata enumMetadata,
+      boolean nullable,
+      @Nullable ColumnCodec<?> codec
+  ) {
+    this(
+        javaReflectionField,
+        javaReflectionField.getName(),
+        columnName,
+        valueClass,
+        enumMetadata,
+        nullable,
+        codec
+    );
+    javaReflectionField.setAccessible(true);
+  }
+
+  /**
+   * Definition declared by generated code, without reflection data
+   */
+  public ColumnComponentDefinition(
+      String fieldName,
+      String columnName,
+      Class<?> valueClass,
+      @Nullable EnumMetadata enumMetadata,
+      boolean nullable,
+      @Nullable ColumnCodec<?> codec
+  ) {
+    this(null, fieldName, columnName, valueClass, enumMetadata, nullable, codec);
+  }
+
+  private ColumnComponentDefinition(
+      @Nullable Field javaReflectionField,
+      String fieldName,
+      String columnName,
+      Class<?> valueClass,
+      @Nullable EnumMetadata enumMetadata,
+      boolean nullable,
+      @Nullable ColumnCodec<?> codec
   ) {
     this.javaReflectionField = javaReflectionField;
-    this.javaReflectionField.setAccessible(true);
+    this.fieldName = fieldName;
     this.columnName = columnName;
     this.valueClass = valueClass;
     this.enumMetadata = enumMetadata;
     this.nullable = nullable;
+    this.codec = codec;
   }
 
   public Object readValue(@Nullable Object owner) {
@@ -34,7 +88,7 @@ public class ColumnComponentDefinition {
       return null;
     }
     try {
-      return javaReflectionField.get(owner);
+      return checkNotNull(javaReflectionField, "No reflection data of " + fieldName).get(owner);
     } catch (IllegalAccessException e) {
       throw new RuntimeException(e);
     }
@@ -10,7 +10,10 @@ import javax.annotation.ParametersAreNonnullByDefault;
 @ParametersAreNonnullByDefault
 public class ColumnDefinition {
 
+  //null if declared by generated code
+  @Nullable
   public final Field javaReflectionField;
+  public final String fieldName;
   @Nullable
   public final String columnName;
   public final Class<?> valueClass;
@@ -22,6 +25,9 @@ public class ColumnDefinition {
   public final List<ColumnComponentDefinition> compositeComponents;
   @Nullable
   public final Constructor<?> compositeConstructor;
+  //null for composite columns, components have their own codecs
+  @Nullable
+  public final ColumnCodec<?> codec;
 
   public ColumnDefinition(
       Field javaReflectionField,
@@ -32,8 +38,86 @@ public class ColumnDefinition {
       boolean nullable,
       List<ColumnComponentDefinition> compositeComponents,
       @Nullable Constructor<?> compositeConstructor
+  ) {
+    this(
+        javaReflectionField,
+        columnName,
+        valueClass,
+        idMetadata,
+        enumMetadata,
+        nullable,
+        compositeComponents,
+        compositeConstructor,
+        null
+    );
+  }
+
+  public ColumnDefinition(
+      Field javaReflectionField,
+      @Nullable String columnName,
+      Class<?> valueClass,
+      @Nullable IdMetadata idMetadata,
+      @Nullable EnumMetadata enumMetadata,
+      boolean nullable,
+      List<ColumnComponentDefinition> compositeComponents,
+      @Nullable Constructor<?> compositeConstructor,
+      @Nullable ColumnCodec<?> codec
+  ) {
+    this(
+        javaReflectionField,
+        javaReflectionField.getName(),
+        columnName,
+        valueClass,
+        idMetadata,
+        enumMetadata,
+        nullable,
+        compositeComponents,
+        compositeConstructor,
+        codec
+    );
+  }
+
+  /**
+   * Definition declared by generated code, without reflection data
+   */
+  public ColumnDefinition(
+      String fieldName,
+      @Nullable String columnName,
+      Class<?> valueClass,
+      @Nullable IdMetadata idMetadata,
+      @Nullable EnumMetadata enumMetadata,
+      boolean nullable,
+      List<ColumnComponentDefinition> compositeComponents,
+      @Nullable ColumnCodec<?> codec
+  ) {
+    this(
+        null,
+        fieldName,
+        columnName,
+        valueClass,
+        idMetadata,
+        enumMetadata,
+        nullable,
+        compositeComponents,
+        null,
+        codec
+    );
+  }
+
+  private ColumnDefinition(
+      @Nullable Field javaReflectionField,
+      String fieldName,
+      @Nullable String columnName,
+      Class<?> valueClass,
+      @Nullable IdMetadata idMetadata,
+      @Nullable EnumMetadata enumMetadata,
+      boolean nullable,
+      List<ColumnComponentDefinition> compositeComponents,
+      @Nullable Constructor<?> compositeConstructor,
+      @Nullable ColumnCodec<?> codec
   ) {
     this.javaReflectionField = javaReflectionField;
+    this.fieldName = fieldName;
     this.columnName = columnName;
     this.valueClass = valueClass;
     this.idMetadata = idMetadata;
@@ -41,6 +125,7 @@ public class ColumnDefinition {
     this.nullable = nullable;
     this.compositeComponents = compositeComponents;
     this.compositeConstructor = compositeConstructor;
+    this.codec = codec;
   }
 
   public ColumnDefinition(
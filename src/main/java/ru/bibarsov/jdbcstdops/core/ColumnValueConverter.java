@@ -2,6 +2,7 @@ package ru.bibarsov.jdbcstdops.core;
 
 import static ru.bibarsov.jdbcstdops.util.Preconditions.checkNotNull;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -25,11 +26,17 @@ public class ColumnValueConverter {
     if (javaValue == null) {
       return null;
     }
+    if (queryColDef.codec != null) {
+      return toDbValue(queryColDef.codec, javaValue);
+    }
     if (javaValue instanceof Enum) {
       EnumMetadata metadata = checkNotNull(
           queryColDef.enumMetadata,
           "No enumMetadata is provided for class " + javaValue.getClass()
       );
+      if (metadata.codec != null) {
+        return metadata.codec.toRawValue((Enum<?>) javaValue);
+      }
       if (metadata.accessorField != null) {
         return toRawValueViaField((Enum<?>) javaValue, metadata.accessorField);
       } else if (metadata.accessorMethod != null) {
@@ -42,52 +49,110 @@ public class ColumnValueConverter {
       return ((DeferredId<?>) javaValue).value;
     }
     if (javaValue instanceof Instant) {
-      return new Timestamp(((Instant) javaValue).toEpochMilli());
+      return Timestamp.from((Instant) javaValue);
     }
     return javaValue;
   }
 
+  /**
+   * Same as {@link #toDbTypeValue(Object, QueryColDef)}, but values are converted by column
+   * codec, or enum values by {@link EnumCodec}, without instanceof chain
+   */
+  public DbTypeConverter dbTypeConverter(QueryColDef queryColDef) {
+    ColumnCodec<?> columnCodec = queryColDef.codec;
+    if (columnCodec != null) {
+      return javaValue -> toDbValue(columnCodec, javaValue);
+    }
+    EnumMetadata metadata = queryColDef.enumMetadata;
+    EnumCodec codec = metadata != null ? metadata.codec : null;
+    if (codec == null) {
+      return javaValue -> toDbTypeValue(javaValue, queryColDef);
+    }
+    return javaValue -> javaValue instanceof Enum
+        ? codec.toRawValue((Enum<?>) javaValue)
+        : toDbTypeValue(javaValue, queryColDef);
+  }
+
+  /**
+   * Converts values and puts them into an array typed by the first value class, so the
+   * driver can pick matching sql array type, e.g. Long[] -> int8[]
+   */
+  public Object[] toDbTypeArray(List<?> javaValues, QueryColDef queryColDef) {
+    Object[] dbTypeValues = new Object[javaValues.size()];
+    Class<?> elementClass = null;
+    for (int i = 0; i < javaValues.size(); i++) {
+      Object dbTypeValue = checkNotNull(
+          toDbTypeValue(javaValues.get(i), queryColDef),
+          "Array values must not be null"
+      );
+      if (elementClass == null) {
+        elementClass = dbTypeValue.getClass();
+      }
+      dbTypeValues[i] = dbTypeValue;
+    }
+    if (elementClass == null) {
+      return dbTypeValues;
+    }
+    Object[] array = (Object[]) Array.newInstance(elementClass, dbTypeValues.length);
+    System.arraycopy(dbTypeValues, 0, array, 0, dbTypeValues.length);
+    return array;
+  }
+
   @Nullable
   public Object toJavaTypeValue(
       ResultSet rs,
       String columnName,
       Class<?> clazz,
       @Nullable EnumMetadata enumMetadata
+  ) throws SQLException {
+    return toJavaTypeValue(rs, rs.findColumn(columnName), clazz, enumMetadata);
+  }
+
+  /**
+   * Same as {@link #toJavaTypeValue(ResultSet, String, Class, EnumMetadata)}, but reads column by
+   * 1-based index, which avoids column name lookup on every call
+   */
+  @Nullable
+  public Object toJavaTypeValue(
+      ResultSet rs,
+      int columnIndex,
+      Class<?> clazz,
+      @Nullable EnumMetadata enumMetadata
   ) throws SQLException {
     if (clazz.equals(Instant.class)) {
       Timestamp timestamp = rs.getObject(
-          columnName,
+          columnIndex,
           Timestamp.class
       );
       return Instant.ofEpochMilli(timestamp.getTime());
     }
     if (clazz.equals(DeferredId.class)) {
       DeferredId<Object> deferredId = new DeferredId<>();
-      deferredId.value = rs.getObject(columnName);
+      deferredId.value = rs.getObject(columnIndex);
       return deferredId;
     }
     if (clazz.equals(Integer.class)) {
-      int value = rs.getInt(columnName);
+      int value = rs.getInt(columnIndex);
       return rs.wasNull() ? null : value;
     }
     if (clazz.equals(Long.class)) {
-      long value = rs.getLong(columnName);
+      long value = rs.getLong(columnIndex);
       return rs.wasNull() ? null : value;
     }
     if (clazz.equals(Short.class)) {
-      short value = rs.getShort(columnName);
+      short value = rs.getShort(columnIndex);
       return rs.wasNull() ? null : value;
     }
     if (clazz.equals(Byte.class)) {
-      byte value = rs.getByte(columnName);
+      byte value = rs.getByte(columnIndex);
       return rs.wasNull() ? null : value;
     }
     if (clazz.equals(Double.class)) {
-      double value = rs.getDouble(columnName);
+      double value = rs.getDouble(columnIndex);
       return rs.wasNull() ? null : value;
     }
     if (clazz.equals(Float.class)) {
-      float value = rs.getFloat(columnName);
+      float value = rs.getFloat(columnIndex);
       return rs.wasNull() ? null : value;
     }
     if (clazz.isEnum()) {
@@ -95,10 +160,13 @@ public class ColumnValueConverter {
           enumMetadata,
           "No enumMetadata is provided for class " + clazz
       );
-      Object object = rs.getObject(columnName);
+      Object object = rs.getObject(columnIndex);
       if (object == null) {
         return null;
       }
+      if (safeEnumMetadata.codec != null) {
+        return safeEnumMetadata.codec.fromRawValue(object);
+      }
       if (safeEnumMetadata.builderMethod != null) {
         return createInstanceViaBuilder(clazz, safeEnumMetadata.builderMethod, object);
       }
@@ -108,11 +176,18 @@ public class ColumnValueConverter {
     }
 
     return rs.getObject(
-        columnName,
+        columnIndex,
         clazz
     );
   }
 
+  @Nullable
+  private static Object toDbValue(ColumnCodec<?> codec, @Nullable Object javaValue) {
+    @SuppressWarnings("unchecked")
+    ColumnCodec<Object> objectCodec = (ColumnCodec<Object>) codec;
+    return objectCodec.toDbValue(javaValue);
+  }
+
   private static Object createInstanceViaBuilder(Class<?> clazz, String methodName, Object object) {
     List<Method> methods = Arrays.stream(clazz.getDeclaredMethods())
         .filter(m -> m.getName().equals(methodName))
@@ -0,0 +1,13 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import javax.annotation.Nullable;
+
+/**
+ * Conversion of java value to db value, resolved once per column
+ */
+@FunctionalInterface
+public interface DbTypeConverter {
+
+  @Nullable
+  Object toDbTypeValue(@Nullable Object javaValue);
+}
@@ -0,0 +1,253 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkArgument;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Entities by id, bounded by size with LRU eviction and optionally by time since load. Keys are
+ * spread over independently locked segments, so threads contend only when ids share a segment.
+ * <p>
+ * Loaded entity is put with the stamp taken before loading, and is dropped if the segment was
+ * invalidated meanwhile, so a concurrent write can't be overwritten by a stale read.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class EntityCache<ID, E> {
+
+  private static final int MAX_SEGMENTS = 64;
+
+  private final Segment[] segments;
+  private final int segmentMask;
+  //0 if entries don't expire
+  private final long ttlNanos;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder loadNanos = new LongAdder();
+
+  /**
+   * @param maximumSize upper bound of cached entities, enforced per segment
+   * @param ttl time after load when entity is evicted, null to keep until evicted by size
+   */
+  @SuppressWarnings("unchecked")
+  public EntityCache(int maximumSize, @Nullable Duration ttl) {
+    checkArgument(maximumSize > 0);
+    checkArgument(ttl == null || !ttl.isNegative() && !ttl.isZero());
+    int segmentCount = Integer.highestOneBit(Math.min(
+        MAX_SEGMENTS,
+        Math.min(maximumSize, 4 * Runtime.getRuntime().availableProcessors())
+    ));
+    int segmentCapacity = (maximumSize + segmentCount - 1) / segmentCount;
+    this.segments = (Segment[]) new EntityCache<?, ?>.Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(segmentCapacity);
+    }
+    this.segmentMask = segmentCount - 1;
+    this.ttlNanos = ttl != null ? ttl.toNanos() : 0;
+  }
+
+  @Nullable
+  public E get(ID id) {
+    E entity = segmentFor(id).get(id, System.nanoTime());
+    if (entity != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return entity;
+  }
+
+  /**
+   * @return stamp to pass to {@link #putLoaded(Object, Object, long, long)}, taken before
+   * loading
+   */
+  public long stamp(ID id) {
+    return segmentFor(id).stamp();
+  }
+
+  /**
+   * Puts entity loaded from database unless its segment was invalidated since {@code stamp}
+   */
+  public void putLoaded(ID id, E entity, long stamp, long loadNanos) {
+    loads.increment();
+    this.loadNanos.add(loadNanos);
+    put(id, entity, stamp);
+  }
+
+  /**
+   * Same as {@link #putLoaded(Object, Object, long, long)}, but for entity taken from another
+   * cache tier, so it isn't counted as load
+   */
+  public void put(ID id, E entity, long stamp) {
+    long nowNanos = System.nanoTime();
+    long expireAtNanos = ttlNanos > 0 ? nowNanos + ttlNanos : 0;
+    segmentFor(id).putIfNotInvalidated(id, entity, stamp, expireAtNanos);
+  }
+
+  public void invalidate(ID id) {
+    segmentFor(id).invalidate(id);
+  }
+
+  public void invalidateAll() {
+    for (Segment segment : segments) {
+      segment.invalidateAll();
+    }
+  }
+
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  public Stats stats() {
+    return new Stats(hits.sum(), misses.sum(), evictions.sum(), loads.sum(), loadNanos.sum());
+  }
+
+  private Segment segmentFor(ID id) {
+    int hash = id.hashCode();
+    return segments[(hash ^ (hash >>> 16)) & segmentMask];
+  }
+
+  @Immutable
+  @ParametersAreNonnullByDefault
+  public static class Stats {
+
+    public final long hitCount;
+    public final long missCount;
+    //by size or expiration
+    public final long evictionCount;
+    public final long loadCount;
+    public final long totalLoadNanos;
+
+    public Stats(
+        long hitCount,
+        long missCount,
+        long evictionCount,
+        long loadCount,
+        long totalLoadNanos
+    ) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.loadCount = loadCount;
+      this.totalLoadNanos = totalLoadNanos;
+    }
+
+    public double hitRate() {
+      long requests = hitCount + missCount;
+      return requests == 0 ? 1 : (double) hitCount / requests;
+    }
+
+    public long averageLoadNanos() {
+      return loadCount == 0 ? 0 : totalLoadNanos / loadCount;
+    }
+
+    @Override
+    public String toString() {
+      return "Stats{" +
+          "hitCount=" + hitCount +
+          ", missCount=" + missCount +
+          ", evictionCount=" + evictionCount +
+          ", loadCount=" + loadCount +
+          ", totalLoadNanos=" + totalLoadNanos +
+          '}';
+    }
+  }
+
+  private static class Entry<E> {
+
+    private final E entity;
+    //0 if entry doesn't expire
+    private final long expireAtNanos;
+
+    private Entry(E entity, long expireAtNanos) {
+      this.entity = entity;
+      this.expireAtNanos = expireAtNanos;
+    }
+
+    private boolean isExpired(long nowNanos) {
+      return expireAtNanos != 0 && nowNanos - expireAtNanos >= 0;
+    }
+  }
+
+  private class Segment {
+
+    private final int capacity;
+    //access order, so the eldest entry is the least recently used
+    @GuardedBy("this")
+    private final LinkedHashMap<ID, Entry<E>> entries;
+    //incremented by every invalidation
+    @GuardedBy("this")
+    private long invalidations = 0;
+
+    private Segment(int capacity) {
+      this.capacity = capacity;
+      this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Nullable
+    private synchronized E get(ID key, long nowNanos) {
+      Entry<E> entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.isExpired(nowNanos)) {
+        entries.remove(key);
+        evictions.increment();
+        return null;
+      }
+      return entry.entity;
+    }
+
+    private synchronized long stamp() {
+      return invalidations;
+    }
+
+    private synchronized void putIfNotInvalidated(
+        ID key,
+        E entity,
+        long stamp,
+        long expireAtNanos
+    ) {
+      if (invalidations != stamp) {
+        return;
+      }
+      entries.put(key, new Entry<>(entity, expireAtNanos));
+      Iterator<Map.Entry<ID, Entry<E>>> eldest = entries.entrySet().iterator();
+      while (entries.size() > capacity) {
+        eldest.next();
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+
+    private synchronized void invalidate(ID key) {
+      invalidations++;
+      entries.remove(key);
+    }
+
+    private synchronized void invalidateAll() {
+      invalidations++;
+      entries.clear();
+    }
+
+    private synchronized int size() {
+      return entries.size();
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Construction of entities and access to their fields. Field indexes follow declaration order
+ * of entity fields, i.e. order of constructor parameters; component indexes follow declaration
+ * order of {@code @Column} fields of composite id.
+ */
+@ParametersAreNonnullByDefault
+public interface EntityMapper<E> {
+
+  /**
+   * @param args values of all entity fields, composite id is already constructed
+   */
+  E newEntity(Object[] args);
+
+  @Nullable
+  Object getFieldValue(E entity, int fieldIndex);
+
+  /**
+   * @param args values of composite id components
+   */
+  Object newCompositeId(Object[] args);
+
+  @Nullable
+  Object getCompositeIdComponentValue(Object compositeId, int componentIndex);
+}
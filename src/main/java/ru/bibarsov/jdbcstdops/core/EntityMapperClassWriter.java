@@ -0,0 +1,460 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Defines a hidden class implementing {@link EntityMapper} of one entity. Its methods are plain
+ * {@code new}, {@code getfield} and boxing bytecode, the same code the annotation processor
+ * generates, so JIT inlines constructors and field reads into callers. The class is a nestmate
+ * of the entity, which gives it access to private fields and constructors.
+ * <p>
+ * Class file version 49 is written, it is verified without stack map frames.
+ */
+@ParametersAreNonnullByDefault
+final class EntityMapperClassWriter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EntityMapperClassWriter.class);
+
+  private static final String OBJECT = "java/lang/Object";
+  private static final String ARRAY_ACCESSOR_TYPE = "([Ljava/lang/Object;)Ljava/lang/Object;";
+  private static final String GETTER_TYPE = "(Ljava/lang/Object;I)Ljava/lang/Object;";
+  private static final Map<Class<?>, Class<?>> WRAPPERS = Map.of(
+      boolean.class, Boolean.class,
+      byte.class, Byte.class,
+      char.class, Character.class,
+      short.class, Short.class,
+      int.class, Integer.class,
+      long.class, Long.class,
+      float.class, Float.class,
+      double.class, Double.class
+  );
+
+  private final ConstantPool constantPool = new ConstantPool();
+
+  private EntityMapperClassWriter() {
+  }
+
+  /**
+   * @return mapper, or null if entity members can't be accessed by a hidden class, e.g. fields
+   *     are inherited or entity is in a module not open to this library
+   */
+  @Nullable
+  static <E> EntityMapper<E> define(Class<E> entityClazz, List<ColumnDefinition> columns) {
+    Constructor<?> constructor = entityClazz.getConstructors()[0];
+    List<Field> fields = new ArrayList<>(columns.size());
+    Constructor<?> compositeConstructor = null;
+    List<Field> compositeFields = new ArrayList<>();
+    for (ColumnDefinition column : columns) {
+      fields.add(column.javaReflectionField);
+      if (column.isComposite()) {
+        compositeConstructor = column.compositeConstructor;
+        for (ColumnComponentDefinition component : column.compositeComponents) {
+          compositeFields.add(component.javaReflectionField);
+        }
+      }
+    }
+    if (!isAccessible(entityClazz, constructor)
+        || !areAccessible(entityClazz, fields)
+        || compositeConstructor != null && !isAccessible(entityClazz, compositeConstructor)
+        || !areAccessible(entityClazz, compositeFields)) {
+      return null;
+    }
+    byte[] bytes = new EntityMapperClassWriter().write(
+        internalName(entityClazz) + "$$JdbcStdOpsMapper",
+        constructor,
+        fields,
+        compositeConstructor,
+        compositeFields
+    );
+    try {
+      Class<?> mapperClazz = MethodHandles.privateLookupIn(entityClazz, MethodHandles.lookup())
+          .defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE)
+          .lookupClass();
+      @SuppressWarnings("unchecked")
+      EntityMapper<E> mapper = (EntityMapper<E>) mapperClazz.getConstructor().newInstance();
+      return mapper;
+    } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+      LOGGER.debug("Can't define mapper of " + entityClazz.getName(), e);
+      return null;
+    }
+  }
+
+  private byte[] write(
+      String className,
+      Constructor<?> constructor,
+      List<Field> fields,
+      @Nullable Constructor<?> compositeConstructor,
+      List<Field> compositeFields
+  ) {
+    List<byte[]> methods = List.of(
+        method("<init>", "()V", 1, 1, initCode()),
+        method("newEntity", ARRAY_ACCESSOR_TYPE, maxStack(constructor), 2,
+            newInstanceCode(constructor)),
+        method("getFieldValue", GETTER_TYPE, 2, 3, getterCode(fields)),
+        compositeConstructor != null
+            ? method("newCompositeId", ARRAY_ACCESSOR_TYPE, maxStack(compositeConstructor), 2,
+                newInstanceCode(compositeConstructor))
+            : method("newCompositeId", ARRAY_ACCESSOR_TYPE, 3, 2, noCompositeIdCode()),
+        compositeConstructor != null
+            ? method("getCompositeIdComponentValue", GETTER_TYPE, 2, 3,
+                getterCode(compositeFields))
+            : method("getCompositeIdComponentValue", GETTER_TYPE, 3, 3, noCompositeIdCode())
+    );
+    int thisClass = constantPool.classRef(className);
+    int superClass = constantPool.classRef(OBJECT);
+    int entityMapper = constantPool.classRef(internalName(EntityMapper.class));
+    Bytes classFile = new Bytes();
+    classFile.u4(0xCAFEBABE).u2(0).u2(49);
+    classFile.u2(constantPool.count).bytes(constantPool.bytes);
+    classFile.u2(0x0001 | 0x0010 | 0x0020); //public final super
+    classFile.u2(thisClass).u2(superClass);
+    classFile.u2(1).u2(entityMapper);
+    classFile.u2(0); //fields
+    classFile.u2(methods.size());
+    methods.forEach(classFile::bytes);
+    classFile.u2(0); //attributes
+    return classFile.toByteArray();
+  }
+
+  private byte[] method(String name, String type, int maxStack, int maxLocals, Bytes code) {
+    return new Bytes()
+        .u2(0x0001) //public
+        .u2(constantPool.utf8(name))
+        .u2(constantPool.utf8(type))
+        .u2(1)
+        .u2(constantPool.utf8("Code"))
+        .u4(12 + code.length)
+        .u2(maxStack)
+        .u2(maxLocals)
+        .u4(code.length)
+        .bytes(code)
+        .u2(0) //exception table
+        .u2(0) //attributes
+        .toByteArray();
+  }
+
+  private Bytes initCode() {
+    return new Bytes()
+        .u1(0x2A) //aload_0
+        .u1(0xB7).u2(constantPool.methodRef(OBJECT, "<init>", "()V")) //invokespecial
+        .u1(0xB1); //return
+  }
+
+  /**
+   * {@code return new T((P0) args[0], (P1) args[1], ...)}, primitives are unboxed
+   */
+  private Bytes newInstanceCode(Constructor<?> constructor) {
+    String owner = internalName(constructor.getDeclaringClass());
+    Bytes code = new Bytes();
+    code.u1(0xBB).u2(constantPool.classRef(owner)); //new
+    code.u1(0x59); //dup
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      code.u1(0x2B); //aload_1
+      pushInt(code, i);
+      code.u1(0x32); //aaload
+      unbox(code, parameterTypes[i]);
+    }
+    code.u1(0xB7).u2(constantPool.methodRef( //invokespecial
+        owner,
+        "<init>",
+        methodDescriptor(void.class, parameterTypes)
+    ));
+    return code.u1(0xB0); //areturn
+  }
+
+  /**
+   * {@code switch (index) { case i: return ((T) object).field_i; }}, primitives are boxed
+   */
+  private Bytes getterCode(List<Field> fields) {
+    Bytes code = new Bytes();
+    code.u1(0x1C); //iload_2
+    int switchStart = code.length;
+    code.u1(0xAA); //tableswitch
+    while (code.length % 4 != 0) {
+      code.u1(0);
+    }
+    int defaultOffset = code.length;
+    code.u4(0).u4(0).u4(fields.size() - 1);
+    int caseOffsets = code.length;
+    for (int i = 0; i < fields.size(); i++) {
+      code.u4(0);
+    }
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      String owner = internalName(field.getDeclaringClass());
+      code.patchU4(caseOffsets + i * 4, code.length - switchStart);
+      code.u1(0x2B); //aload_1
+      code.u1(0xC0).u2(constantPool.classRef(owner)); //checkcast
+      code.u1(0xB4).u2(constantPool.fieldRef( //getfield
+          owner,
+          field.getName(),
+          descriptor(field.getType())
+      ));
+      box(code, field.getType());
+      code.u1(0xB0); //areturn
+    }
+    code.patchU4(defaultOffset, code.length - switchStart);
+    return throwNew(code, "java/lang/IndexOutOfBoundsException", null);
+  }
+
+  private Bytes noCompositeIdCode() {
+    return throwNew(new Bytes(), "java/lang/IllegalStateException", "Entity has no composite id");
+  }
+
+  private Bytes throwNew(Bytes code, String exceptionClass, @Nullable String message) {
+    code.u1(0xBB).u2(constantPool.classRef(exceptionClass)); //new
+    code.u1(0x59); //dup
+    if (message != null) {
+      code.u1(0x13).u2(constantPool.string(message)); //ldc_w
+    }
+    code.u1(0xB7).u2(constantPool.methodRef( //invokespecial
+        exceptionClass,
+        "<init>",
+        message != null ? "(Ljava/lang/String;)V" : "()V"
+    ));
+    return code.u1(0xBF); //athrow
+  }
+
+  private void unbox(Bytes code, Class<?> type) {
+    if (!type.isPrimitive()) {
+      if (!type.equals(Object.class)) {
+        code.u1(0xC0).u2(constantPool.classRef(internalName(type))); //checkcast
+      }
+      return;
+    }
+    String wrapper = internalName(WRAPPERS.get(type));
+    code.u1(0xC0).u2(constantPool.classRef(wrapper)); //checkcast
+    code.u1(0xB6).u2(constantPool.methodRef( //invokevirtual
+        wrapper,
+        type.getName() + "Value",
+        methodDescriptor(type)
+    ));
+  }
+
+  private void box(Bytes code, Class<?> type) {
+    if (!type.isPrimitive()) {
+      return;
+    }
+    Class<?> wrapper = WRAPPERS.get(type);
+    code.u1(0xB8).u2(constantPool.methodRef( //invokestatic
+        internalName(wrapper),
+        "valueOf",
+        methodDescriptor(wrapper, type)
+    ));
+  }
+
+  private void pushInt(Bytes code, int value) {
+    if (value <= 5) {
+      code.u1(0x03 + value); //iconst_<value>
+    } else if (value <= Byte.MAX_VALUE) {
+      code.u1(0x10).u1(value); //bipush
+    } else {
+      code.u1(0x11).u2(value); //sipush
+    }
+  }
+
+  //new, dup, loaded arguments and array with index of the next one
+  private static int maxStack(Constructor<?> constructor) {
+    int slots = 4;
+    for (Class<?> type : constructor.getParameterTypes()) {
+      slots += type.equals(long.class) || type.equals(double.class) ? 2 : 1;
+    }
+    return slots;
+  }
+
+  private static boolean areAccessible(Class<?> entityClazz, List<Field> fields) {
+    for (Field field : fields) {
+      if (field == null
+          || !isAccessible(entityClazz, field)
+          || Modifier.isStatic(field.getModifiers())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hidden nestmate of entity accesses private members of the entity nest, everything else is
+   * checked like for a class of entity package
+   */
+  private static boolean isAccessible(Class<?> entityClazz, Member member) {
+    Class<?> declaringClass = member.getDeclaringClass();
+    if (!isAccessible(entityClazz, declaringClass)) {
+      return false;
+    }
+    if (member instanceof Constructor<?>
+        && !Arrays.stream(((Constructor<?>) member).getParameterTypes())
+            .allMatch(type -> isAccessible(entityClazz, type))) {
+      return false;
+    }
+    int modifiers = member.getModifiers();
+    if (Modifier.isPrivate(modifiers)) {
+      return declaringClass.getNestHost() == entityClazz.getNestHost();
+    }
+    return Modifier.isPublic(modifiers) || isSamePackage(entityClazz, declaringClass);
+  }
+
+  private static boolean isAccessible(Class<?> entityClazz, Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isPrimitive() || isSamePackage(entityClazz, type)) {
+      return true;
+    }
+    return Modifier.isPublic(type.getModifiers())
+        && type.getModule().isExported(type.getPackageName(), entityClazz.getModule());
+  }
+
+  private static boolean isSamePackage(Class<?> entityClazz, Class<?> type) {
+    return entityClazz.getClassLoader() == type.getClassLoader()
+        && entityClazz.getPackageName().equals(type.getPackageName());
+  }
+
+  private static String internalName(Class<?> clazz) {
+    return clazz.getName().replace('.', '/');
+  }
+
+  private static String descriptor(Class<?> type) {
+    return type.descriptorString();
+  }
+
+  private static String methodDescriptor(Class<?> returnType, Class<?>... parameterTypes) {
+    StringBuilder descriptor = new StringBuilder("(");
+    for (Class<?> parameterType : parameterTypes) {
+      descriptor.append(descriptor(parameterType));
+    }
+    return descriptor.append(')').append(descriptor(returnType)).toString();
+  }
+
+  private static final class ConstantPool {
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final Bytes bytes = new Bytes();
+    //index of the next entry, entries are numbered from 1
+    private int count = 1;
+
+    int utf8(String value) {
+      return entry("U" + value, () -> bytes.u1(1).utf8(value));
+    }
+
+    int classRef(String internalName) {
+      int name = utf8(internalName);
+      return entry("C" + internalName, () -> bytes.u1(7).u2(name));
+    }
+
+    int string(String value) {
+      int utf8 = utf8(value);
+      return entry("S" + value, () -> bytes.u1(8).u2(utf8));
+    }
+
+    int fieldRef(String owner, String name, String type) {
+      return memberRef(9, owner, name, type);
+    }
+
+    int methodRef(String owner, String name, String type) {
+      return memberRef(10, owner, name, type);
+    }
+
+    private int memberRef(int tag, String owner, String name, String type) {
+      int ownerClass = classRef(owner);
+      int nameIndex = utf8(name);
+      int typeIndex = utf8(type);
+      int nameAndType = entry(
+          "N" + name + ":" + type,
+          () -> bytes.u1(12).u2(nameIndex).u2(typeIndex)
+      );
+      return entry(
+          tag + owner + "." + name + ":" + type,
+          () -> bytes.u1(tag).u2(ownerClass).u2(nameAndType)
+      );
+    }
+
+    private int entry(String key, Runnable writer) {
+      Integer index = indexes.get(key);
+      if (index != null) {
+        return index;
+      }
+      writer.run();
+      indexes.put(key, count);
+      return count++;
+    }
+  }
+
+  private static final class Bytes {
+
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    Bytes u1(int value) {
+      ensureCapacity(1);
+      buffer[length++] = (byte) value;
+      return this;
+    }
+
+    Bytes u2(int value) {
+      return u1(value >>> 8).u1(value);
+    }
+
+    Bytes u4(int value) {
+      return u2(value >>> 16).u2(value);
+    }
+
+    void patchU4(int position, int value) {
+      buffer[position] = (byte) (value >>> 24);
+      buffer[position + 1] = (byte) (value >>> 16);
+      buffer[position + 2] = (byte) (value >>> 8);
+      buffer[position + 3] = (byte) value;
+    }
+
+    Bytes bytes(byte[] value) {
+      ensureCapacity(value.length);
+      System.arraycopy(value, 0, buffer, length, value.length);
+      length += value.length;
+      return this;
+    }
+
+    Bytes bytes(Bytes value) {
+      return bytes(value.toByteArray());
+    }
+
+    //modified UTF-8 of class files, the same as DataOutput.writeUTF
+    Bytes utf8(String value) {
+      Bytes encoded = new Bytes();
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c >= 0x0001 && c <= 0x007F) {
+          encoded.u1(c);
+        } else if (c <= 0x07FF) {
+          encoded.u1(0xC0 | (c >> 6)).u1(0x80 | (c & 0x3F));
+        } else {
+          encoded.u1(0xE0 | (c >> 12)).u1(0x80 | ((c >> 6) & 0x3F)).u1(0x80 | (c & 0x3F));
+        }
+      }
+      return u2(encoded.length).bytes(encoded);
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, length);
+    }
+
+    private void ensureCapacity(int extra) {
+      if (length + extra > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+      }
+    }
+  }
+}
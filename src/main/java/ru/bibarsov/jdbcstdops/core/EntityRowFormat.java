@@ -0,0 +1,485 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import ru.bibarsov.jdbcstdops.util.ReflectionTools;
+import ru.bibarsov.jdbcstdops.value.DeferredId;
+
+/**
+ * Compact binary form of entity, laid out by its column definitions: id first, then the other
+ * fields in declaration order without names or type tags. Nullable values are prefixed with a
+ * presence byte.
+ * <p>
+ * Supports field types of the default codec registry and enums, fields of other types are
+ * written by {@link ColumnCodec#serializer()} of their codec or rejected at construction.
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+final class EntityRowFormat<E> {
+
+  private final EntityMapper<E> entityMapper;
+  private final int idFieldIndex;
+  private final boolean isDeferredId;
+  private final ValueFormat idFormat;
+  //null at idFieldIndex, id is read from key
+  private final ValueFormat[] fieldFormats;
+
+  EntityRowFormat(
+      List<ColumnDefinition> columnDefinitions,
+      int idFieldIndex,
+      EntityMapper<E> entityMapper
+  ) {
+    this.entityMapper = entityMapper;
+    this.idFieldIndex = idFieldIndex;
+    ColumnDefinition idColumn = columnDefinitions.get(idFieldIndex);
+    this.isDeferredId = DeferredId.class.equals(idColumn.valueClass);
+    this.idFormat = isDeferredId
+        ? formatOf(idColumn, ReflectionTools.primitiveToWrapper(
+            idColumn.idMetadata != null ? idColumn.idMetadata.sequenceValueType : null))
+        : formatOf(idColumn, idColumn.valueClass);
+    this.fieldFormats = new ValueFormat[columnDefinitions.size()];
+    for (int i = 0; i < fieldFormats.length; i++) {
+      if (i != idFieldIndex) {
+        ColumnDefinition columnDefinition = columnDefinitions.get(i);
+        ValueFormat format = formatOf(columnDefinition, columnDefinition.valueClass);
+        fieldFormats[i] = columnDefinition.valueClass.isPrimitive() ? format : nullable(format);
+      }
+    }
+  }
+
+  /**
+   * @param id id in the same form as it's passed to findOne
+   */
+  void writeKey(Object id, RowOutput out) {
+    idFormat.write(id, out);
+  }
+
+  /**
+   * Writes entity without id, which is expected to be written by {@link #writeKey}
+   */
+  void writeRow(E entity, RowOutput out) {
+    for (int i = 0; i < fieldFormats.length; i++) {
+      if (i != idFieldIndex) {
+        fieldFormats[i].write(entityMapper.getFieldValue(entity, i), out);
+      }
+    }
+  }
+
+  /**
+   * @param in key followed by row
+   */
+  E read(ByteBuffer in) {
+    Object[] args = new Object[fieldFormats.length];
+    Object id = idFormat.read(in);
+    args[idFieldIndex] = isDeferredId ? DeferredId.ofImmediateId(id) : id;
+    for (int i = 0; i < fieldFormats.length; i++) {
+      if (i != idFieldIndex) {
+        args[i] = fieldFormats[i].read(in);
+      }
+    }
+    return entityMapper.newEntity(args);
+  }
+
+  private ValueFormat formatOf(ColumnDefinition columnDefinition, @Nullable Class<?> valueClass) {
+    if (!columnDefinition.isComposite()) {
+      return formatOf(valueClass, columnDefinition.codec, columnDefinition.fieldName);
+    }
+    List<ColumnComponentDefinition> components = columnDefinition.compositeComponents;
+    ValueFormat[] componentFormats = new ValueFormat[components.size()];
+    for (int i = 0; i < componentFormats.length; i++) {
+      ColumnComponentDefinition component = components.get(i);
+      ValueFormat format = formatOf(component.valueClass, component.codec, component.fieldName);
+      componentFormats[i] = component.valueClass.isPrimitive() ? format : nullable(format);
+    }
+    return new ValueFormat() {
+      @Override
+      public void write(@Nullable Object value, RowOutput out) {
+        for (int i = 0; i < componentFormats.length; i++) {
+          componentFormats[i].write(
+              entityMapper.getCompositeIdComponentValue(checkNotNullValue(value), i),
+              out
+          );
+        }
+      }
+
+      @Override
+      public Object read(ByteBuffer in) {
+        Object[] args = new Object[componentFormats.length];
+        for (int i = 0; i < args.length; i++) {
+          args[i] = componentFormats[i].read(in);
+        }
+        return entityMapper.newCompositeId(args);
+      }
+    };
+  }
+
+  private static ValueFormat formatOf(
+      @Nullable Class<?> clazz,
+      @Nullable ColumnCodec<?> codec,
+      String fieldName
+  ) {
+    Class<?> valueClass = ReflectionTools.primitiveToWrapper(clazz);
+    if (Long.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          out.ensureRemaining(Long.BYTES).putLong((Long) checkNotNullValue(value));
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return in.getLong();
+        }
+      };
+    }
+    if (Integer.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          out.ensureRemaining(Integer.BYTES).putInt((Integer) checkNotNullValue(value));
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return in.getInt();
+        }
+      };
+    }
+    if (Short.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          out.ensureRemaining(Short.BYTES).putShort((Short) checkNotNullValue(value));
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return in.getShort();
+        }
+      };
+    }
+    if (Byte.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          out.ensureRemaining(Byte.BYTES).put((Byte) checkNotNullValue(value));
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return in.get();
+        }
+      };
+    }
+    if (Double.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          out.ensureRemaining(Double.BYTES).putDouble((Double) checkNotNullValue(value));
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return in.getDouble();
+        }
+      };
+    }
+    if (Float.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          out.ensureRemaining(Float.BYTES).putFloat((Float) checkNotNullValue(value));
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return in.getFloat();
+        }
+      };
+    }
+    if (Boolean.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          out.ensureRemaining(1).put((byte) ((Boolean) checkNotNullValue(value) ? 1 : 0));
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return in.get() != 0;
+        }
+      };
+    }
+    if (String.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          writeBytes(((String) checkNotNullValue(value)).getBytes(StandardCharsets.UTF_8), out);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return new String(readBytes(in), StandardCharsets.UTF_8);
+        }
+      };
+    }
+    if (byte[].class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          writeBytes((byte[]) checkNotNullValue(value), out);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return readBytes(in);
+        }
+      };
+    }
+    if (BigDecimal.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          BigDecimal decimal = (BigDecimal) checkNotNullValue(value);
+          out.ensureRemaining(Integer.BYTES).putInt(decimal.scale());
+          writeBytes(decimal.unscaledValue().toByteArray(), out);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          int scale = in.getInt();
+          return new BigDecimal(new BigInteger(readBytes(in)), scale);
+        }
+      };
+    }
+    if (UUID.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          UUID uuid = (UUID) checkNotNullValue(value);
+          out.ensureRemaining(2 * Long.BYTES)
+              .putLong(uuid.getMostSignificantBits())
+              .putLong(uuid.getLeastSignificantBits());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return new UUID(in.getLong(), in.getLong());
+        }
+      };
+    }
+    if (Instant.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          Instant instant = (Instant) checkNotNullValue(value);
+          out.ensureRemaining(Long.BYTES + Integer.BYTES)
+              .putLong(instant.getEpochSecond())
+              .putInt(instant.getNano());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return Instant.ofEpochSecond(in.getLong(), in.getInt());
+        }
+      };
+    }
+    if (LocalDate.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          out.ensureRemaining(Long.BYTES)
+              .putLong(((LocalDate) checkNotNullValue(value)).toEpochDay());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return LocalDate.ofEpochDay(in.getLong());
+        }
+      };
+    }
+    if (LocalTime.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          out.ensureRemaining(Long.BYTES)
+              .putLong(((LocalTime) checkNotNullValue(value)).toNanoOfDay());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return LocalTime.ofNanoOfDay(in.getLong());
+        }
+      };
+    }
+    if (LocalDateTime.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          writeLocalDateTime((LocalDateTime) checkNotNullValue(value), out);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return readLocalDateTime(in);
+        }
+      };
+    }
+    if (OffsetDateTime.class.equals(valueClass)) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          OffsetDateTime dateTime = (OffsetDateTime) checkNotNullValue(value);
+          writeLocalDateTime(dateTime.toLocalDateTime(), out);
+          out.ensureRemaining(Integer.BYTES).putInt(dateTime.getOffset().getTotalSeconds());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          LocalDateTime dateTime = readLocalDateTime(in);
+          return OffsetDateTime.of(dateTime, ZoneOffset.ofTotalSeconds(in.getInt()));
+        }
+      };
+    }
+    if (valueClass != null && valueClass.isEnum()) {
+      Object[] constants = valueClass.getEnumConstants();
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          out.ensureRemaining(Integer.BYTES).putInt(((Enum<?>) checkNotNullValue(value)).ordinal());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return constants[in.getInt()];
+        }
+      };
+    }
+    @SuppressWarnings("unchecked")
+    ColumnCodec.Serializer<Object> serializer = codec != null
+        ? (ColumnCodec.Serializer<Object>) codec.serializer()
+        : null;
+    if (serializer != null) {
+      return new ValueFormat() {
+        @Override
+        public void write(@Nullable Object value, RowOutput out) {
+          writeBytes(serializer.serialize(checkNotNullValue(value)), out);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+          return serializer.deserialize(readBytes(in));
+        }
+      };
+    }
+    throw new IllegalStateException(
+        "Type " + valueClass + " of field " + fieldName + " can't be stored off-heap,"
+            + " its codec has no serializer"
+    );
+  }
+
+  private static ValueFormat nullable(ValueFormat format) {
+    return new ValueFormat() {
+      @Override
+      public void write(@Nullable Object value, RowOutput out) {
+        out.ensureRemaining(1).put((byte) (value != null ? 1 : 0));
+        if (value != null) {
+          format.write(value, out);
+        }
+      }
+
+      @Nullable
+      @Override
+      public Object read(ByteBuffer in) {
+        return in.get() != 0 ? format.read(in) : null;
+      }
+    };
+  }
+
+  private static Object checkNotNullValue(@Nullable Object value) {
+    if (value == null) {
+      throw new IllegalStateException("Value of not nullable field is null");
+    }
+    return value;
+  }
+
+  private static void writeBytes(byte[] bytes, RowOutput out) {
+    out.ensureRemaining(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes);
+  }
+
+  private static byte[] readBytes(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return bytes;
+  }
+
+  private static void writeLocalDateTime(LocalDateTime dateTime, RowOutput out) {
+    out.ensureRemaining(2 * Long.BYTES)
+        .putLong(dateTime.toLocalDate().toEpochDay())
+        .putLong(dateTime.toLocalTime().toNanoOfDay());
+  }
+
+  private static LocalDateTime readLocalDateTime(ByteBuffer in) {
+    return LocalDateTime.of(
+        LocalDate.ofEpochDay(in.getLong()),
+        LocalTime.ofNanoOfDay(in.getLong())
+    );
+  }
+
+  private interface ValueFormat {
+
+    void write(@Nullable Object value, RowOutput out);
+
+    @Nullable
+    Object read(ByteBuffer in);
+  }
+
+  /**
+   * Growable heap buffer, reused between writes by a single thread
+   */
+  @NotThreadSafe
+  static final class RowOutput {
+
+    private ByteBuffer buffer;
+
+    RowOutput(int initialCapacity) {
+      this.buffer = ByteBuffer.allocate(initialCapacity);
+    }
+
+    ByteBuffer ensureRemaining(int bytes) {
+      if (buffer.remaining() < bytes) {
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        grown.put(buffer.flip());
+        this.buffer = grown;
+      }
+      return buffer;
+    }
+
+    int position() {
+      return buffer.position();
+    }
+
+    byte[] array() {
+      return buffer.array();
+    }
+
+    void clear() {
+      buffer.clear();
+    }
+  }
+}
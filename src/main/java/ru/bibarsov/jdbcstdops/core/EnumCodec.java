@@ -0,0 +1,131 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkNotNull;
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkState;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Conversion tables of enum resolved once from {@link EnumMetadata}: raw values indexed by
+ * ordinal for writes and constants by raw value for reads
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public class EnumCodec {
+
+  private final Class<?> enumClass;
+  private final Object[] rawValuesByOrdinal;
+  private final Map<Object, Enum<?>> constantsByRawValue;
+  //used only for raw values which are absent in the table, e.g. legacy spellings
+  @Nullable
+  private final Method builderMethod;
+
+  private EnumCodec(
+      Class<?> enumClass,
+      Object[] rawValuesByOrdinal,
+      Map<Object, Enum<?>> constantsByRawValue,
+      @Nullable Method builderMethod
+  ) {
+    this.enumClass = enumClass;
+    this.rawValuesByOrdinal = rawValuesByOrdinal;
+    this.constantsByRawValue = constantsByRawValue;
+    this.builderMethod = builderMethod;
+  }
+
+  public static EnumCodec create(
+      Class<?> enumClass,
+      @Nullable String accessorField,
+      @Nullable String accessorMethod,
+      @Nullable String builderMethod
+  ) {
+    checkState(enumClass.isEnum(), enumClass + " is not enum");
+    Enum<?>[] constants = (Enum<?>[]) enumClass.getEnumConstants();
+    Object[] rawValuesByOrdinal = new Object[constants.length];
+    Map<Object, Enum<?>> constantsByRawValue = new HashMap<>(constants.length * 2);
+    try {
+      Field field = null;
+      Method method = null;
+      if (accessorField != null) {
+        field = enumClass.getDeclaredField(accessorField);
+        field.setAccessible(true);
+      } else if (accessorMethod != null) {
+        method = enumClass.getDeclaredMethod(accessorMethod);
+        method.setAccessible(true);
+      }
+      for (Enum<?> constant : constants) {
+        Object rawValue;
+        if (field != null) {
+          rawValue = field.get(constant);
+        } else if (method != null) {
+          rawValue = method.invoke(constant);
+        } else {
+          rawValue = constant.name();
+        }
+        checkNotNull(rawValue, "accessorMethod should return non-null value for class "
+            + enumClass);
+        rawValuesByOrdinal[constant.ordinal()] = rawValue;
+        checkState(
+            constantsByRawValue.put(rawValue, constant) == null,
+            "Raw value " + rawValue + " is used by several constants of " + enumClass
+        );
+      }
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+    return new EnumCodec(
+        enumClass,
+        rawValuesByOrdinal,
+        constantsByRawValue,
+        builderMethod != null ? findBuilderMethod(enumClass, builderMethod) : null
+    );
+  }
+
+  public Object toRawValue(Enum<?> value) {
+    return rawValuesByOrdinal[value.ordinal()];
+  }
+
+  public Object fromRawValue(Object rawValue) {
+    Enum<?> constant = constantsByRawValue.get(rawValue);
+    if (constant != null) {
+      return constant;
+    }
+    if (builderMethod == null) {
+      throw new IllegalArgumentException(
+          "No enum constant " + enumClass.getName() + " for raw value " + rawValue
+      );
+    }
+    try {
+      return checkNotNull(
+          builderMethod.invoke(null, rawValue),
+          "builder method should return only non-null value, class: " + enumClass
+      );
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static Method findBuilderMethod(Class<?> enumClass, String methodName) {
+    List<Method> methods = Arrays.stream(enumClass.getDeclaredMethods())
+        .filter(m -> m.getName().equals(methodName))
+        .collect(Collectors.toList());
+    if (methods.size() > 1) {
+      throw new IllegalStateException(
+          "There should be only one builder method in Enum class: " + enumClass);
+    }
+    if (methods.size() == 0) {
+      throw new IllegalStateException("Couldn't find builder method in Enum class: " + enumClass);
+    }
+    Method method = methods.get(0);
+    method.setAccessible(true);
+    return method;
+  }
+}
@@ -12,15 +12,29 @@ public class EnumMetadata {
   public final String accessorMethod;
   @Nullable
   public final String builderMethod;
+  //null if enum class is unknown, then values are converted reflectively
+  @Nullable
+  public final EnumCodec codec;
 
   public EnumMetadata(
       @Nullable String accessorField,
       @Nullable String accessorMethod,
       @Nullable String builderMethod
+  ) {
+    this(accessorField, accessorMethod, builderMethod, null);
+  }
+
+  public EnumMetadata(
+      @Nullable String accessorField,
+      @Nullable String accessorMethod,
+      @Nullable String builderMethod,
+      @Nullable Class<?> enumClass
   ) {
     this.accessorField = accessorField;
     this.accessorMethod = accessorMethod;
     this.builderMethod = builderMethod;
+    this.codec = enumClass != null
+        ? EnumCodec.create(enumClass, accessorField, accessorMethod, builderMethod)
+        : null;
   }
 }
-
@@ -0,0 +1,47 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.util.List;
+import java.util.ServiceLoader;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * {@link EntityMapper} generated at compile time by jdbc-std-ops-processor, together with
+ * metadata of entity, so StandardOperations doesn't read entity class reflectively. Generated
+ * class is placed into the package of entity and named by binary name of entity with '$' replaced
+ * by '_' plus {@link #CLASS_NAME_SUFFIX}, e.g. {@code Outer_Inner_JdbcStdOpsMapper}. It's
+ * registered in {@code META-INF/services}, so it's found by {@link ServiceLoader} without
+ * reflection config of native image.
+ */
+@ParametersAreNonnullByDefault
+public interface GeneratedEntityMapper<E> extends EntityMapper<E> {
+
+  String CLASS_NAME_SUFFIX = "_JdbcStdOpsMapper";
+
+  Class<E> entityClass();
+
+  String tableName();
+
+  /**
+   * @return flattened column names in order of entity fields
+   */
+  List<String> columnNames();
+
+  /**
+   * @return columns in order of entity fields, without codecs, which depend on registry of
+   * StandardOperations
+   */
+  List<ColumnDefinition> columnDefinitions();
+
+  /**
+   * @return mapper generated for {@code entityClazz} and registered in class loader of entity,
+   * or null if there is none
+   */
+  @Nullable
+  static <E> GeneratedEntityMapper<E> find(Class<E> entityClazz) {
+    @SuppressWarnings("unchecked")
+    GeneratedEntityMapper<E> mapper =
+        (GeneratedEntityMapper<E>) GeneratedMapperRegistry.find(entityClazz);
+    return mapper;
+  }
+}
@@ -0,0 +1,60 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Mappers registered in {@code META-INF/services}, loaded once per class loader and indexed by
+ * entity class. Providers which fail to load are skipped with a warning.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+final class GeneratedMapperRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(GeneratedMapperRegistry.class);
+  private static final Map<ClassLoader, Map<Class<?>, GeneratedEntityMapper<?>>> MAPPERS =
+      new ConcurrentHashMap<>();
+
+  private GeneratedMapperRegistry() {
+  }
+
+  @Nullable
+  static GeneratedEntityMapper<?> find(Class<?> entityClazz) {
+    ClassLoader classLoader = entityClazz.getClassLoader();
+    if (classLoader == null) {
+      return null;
+    }
+    return MAPPERS.computeIfAbsent(classLoader, GeneratedMapperRegistry::load).get(entityClazz);
+  }
+
+  private static Map<Class<?>, GeneratedEntityMapper<?>> load(ClassLoader classLoader) {
+    Map<Class<?>, GeneratedEntityMapper<?>> mappers = new HashMap<>();
+    @SuppressWarnings("rawtypes")
+    Iterator<GeneratedEntityMapper> providers =
+        ServiceLoader.load(GeneratedEntityMapper.class, classLoader).iterator();
+    while (true) {
+      GeneratedEntityMapper<?> mapper;
+      try {
+        if (!providers.hasNext()) {
+          break;
+        }
+        mapper = providers.next();
+      } catch (ServiceConfigurationError e) {
+        //iterator goes on with the next provider
+        LOGGER.warn("Skipping generated mapper which can't be loaded", e);
+        continue;
+      }
+      mappers.put(mapper.entityClass(), mapper);
+    }
+    return Map.copyOf(mappers);
+  }
+}
@@ -10,10 +10,29 @@ public class IdMetadata {
   public final boolean isCompositeKey;
   @Nullable
   public final String sequenceName;
+  @Nullable
+  public final Class<?> sequenceValueType;
+  public final int allocationSize;
+
+  public IdMetadata(
+      boolean isDbSideGenerated,
+      boolean isCompositeKey,
+      @Nullable String sequenceName
+  ) {
+    this(isDbSideGenerated, isCompositeKey, sequenceName, null, 1);
+  }
 
-  public IdMetadata(boolean isDbSideGenerated, boolean isCompositeKey, @Nullable String sequenceName) {
+  public IdMetadata(
+      boolean isDbSideGenerated,
+      boolean isCompositeKey,
+      @Nullable String sequenceName,
+      @Nullable Class<?> sequenceValueType,
+      int allocationSize
+  ) {
     this.isDbSideGenerated = isDbSideGenerated;
     this.isCompositeKey = isCompositeKey;
     this.sequenceName = sequenceName;
+    this.sequenceValueType = sequenceValueType;
+    this.allocationSize = allocationSize;
   }
 }
@@ -0,0 +1,94 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Buckets are log-linear like in
+ * HdrHistogram: every power of two is split into 32 sub-buckets, so percentiles are
+ * reported within ~3% of recorded values. Counters are LongAdders, which are striped
+ * under contention.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+  //about 18 minutes, longer durations are counted in the last bucket
+  private static final long MAX_TRACKABLE_NANOS = (1L << 40) - 1;
+
+  private final LongAdder[] buckets = new LongAdder[bucketIndex(MAX_TRACKABLE_NANOS) + 1];
+  private final LongAdder count = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    buckets[bucketIndex(Math.min(value, MAX_TRACKABLE_NANOS))].increment();
+    count.increment();
+    max.accumulate(value);
+  }
+
+  public long count() {
+    return count.sum();
+  }
+
+  public long maxNanos() {
+    return max.get();
+  }
+
+  /**
+   * @param percentile from 0 to 100
+   * @return upper bound of bucket holding the percentile, 0 if nothing was recorded
+   */
+  public long percentileNanos(double percentile) {
+    checkArgument(percentile >= 0 && percentile <= 100);
+    long[] counts = new long[buckets.length];
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(bucketUpperBound(i), maxNanos());
+      }
+    }
+    return maxNanos();
+  }
+
+  private static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    //value keeps SUB_BUCKET_BITS highest bits, shift is the number of dropped bits
+    int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+  }
+
+  private static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+    long subBucket = index % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,101 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import ru.bibarsov.jdbcstdops.value.OperationType;
+
+/**
+ * Records total duration of statements into {@link LatencyHistogram} per operation type and
+ * table. Recording doesn't take locks once histogram of the pair exists.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class LatencyRecorder implements QueryListener {
+
+  //filled for every operation type up front, so recording never allocates a key
+  private final Map<OperationType, Map<String, LatencyHistogram>> histograms =
+      new EnumMap<>(OperationType.class);
+
+  public LatencyRecorder() {
+    for (OperationType operationType : OperationType.values()) {
+      histograms.put(operationType, new ConcurrentHashMap<>());
+    }
+  }
+
+  @Override
+  public void onQuery(QueryExecution execution) {
+    Map<String, LatencyHistogram> byTable = histograms.get(execution.operationType);
+    LatencyHistogram histogram = byTable.get(execution.tableName);
+    if (histogram == null) {
+      histogram = byTable.computeIfAbsent(execution.tableName, t -> new LatencyHistogram());
+    }
+    histogram.record(execution.totalNanos());
+  }
+
+  @Nullable
+  public LatencyHistogram getHistogram(OperationType operationType, String tableName) {
+    return histograms.get(operationType).get(tableName);
+  }
+
+  public List<Snapshot> snapshot() {
+    List<Snapshot> result = new ArrayList<>();
+    histograms.forEach((operationType, byTable) -> byTable.forEach(
+        (tableName, histogram) -> result.add(new Snapshot(
+            operationType,
+            tableName,
+            histogram.count(),
+            histogram.percentileNanos(50),
+            histogram.percentileNanos(99),
+            histogram.maxNanos()
+        ))
+    ));
+    return result;
+  }
+
+  @Immutable
+  @ParametersAreNonnullByDefault
+  public static class Snapshot {
+
+    public final OperationType operationType;
+    public final String tableName;
+    public final long count;
+    public final long p50Nanos;
+    public final long p99Nanos;
+    public final long maxNanos;
+
+    public Snapshot(
+        OperationType operationType,
+        String tableName,
+        long count,
+        long p50Nanos,
+        long p99Nanos,
+        long maxNanos
+    ) {
+      this.operationType = operationType;
+      this.tableName = tableName;
+      this.count = count;
+      this.p50Nanos = p50Nanos;
+      this.p99Nanos = p99Nanos;
+      this.maxNanos = maxNanos;
+    }
+
+    @Override
+    public String toString() {
+      return "Snapshot{" +
+          "operationType=" + operationType +
+          ", tableName='" + tableName + '\'' +
+          ", count=" + count +
+          ", p50Nanos=" + p50Nanos +
+          ", p99Nanos=" + p99Nanos +
+          ", maxNanos=" + maxNanos +
+          '}';
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs sampled statements at DEBUG level. Nothing is rendered unless DEBUG is enabled and
+ * the statement is sampled.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class LoggingQueryListener implements QueryListener {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoggingQueryListener.class);
+
+  private final double sampleRate;
+
+  /**
+   * Listener of every statement if DEBUG is enabled at the moment of call, otherwise
+   * {@link QueryListener#NOOP}
+   */
+  public static QueryListener createDefault() {
+    return LOGGER.isDebugEnabled() ? new LoggingQueryListener(1) : QueryListener.NOOP;
+  }
+
+  /**
+   * @param sampleRate share of statements to log, from 0 exclusive to 1 inclusive
+   */
+  public LoggingQueryListener(double sampleRate) {
+    checkArgument(sampleRate > 0 && sampleRate <= 1);
+    this.sampleRate = sampleRate;
+  }
+
+  @Override
+  public void onQuery(QueryExecution execution) {
+    if (!LOGGER.isDebugEnabled()) {
+      return;
+    }
+    if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      return;
+    }
+    LOGGER.debug(
+        "Executed {} on {} in {} us, rows: {}, query: {}, params: {}",
+        execution.operationType,
+        execution.tableName,
+        TimeUnit.NANOSECONDS.toMicros(execution.totalNanos()),
+        execution.rowCount,
+        execution.sqlQuery,
+        execution.values != null ? Arrays.toString(execution.values) : "batch"
+    );
+  }
+}
@@ -0,0 +1,146 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkNotNull;
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkState;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * {@link EntityMapper} on top of method handles resolved once from entity metadata. Unlike
+ * Constructor.newInstance and Field.get, invocations skip access checks and argument copying.
+ * Handles are held in instance fields and arrays, which JIT doesn't treat as constants, so calls
+ * are not inlined. It's a fallback for entities which can't be mapped by a hidden class of
+ * {@link EntityMapperClassWriter} or by code generated by the annotation processor.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class MethodHandleEntityMapper<E> implements EntityMapper<E> {
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType CONSTRUCTOR_TYPE =
+      MethodType.methodType(Object.class, Object[].class);
+
+  private final MethodHandle constructor;
+  private final MethodHandle[] getters;
+  @Nullable
+  private final MethodHandle compositeIdConstructor;
+  private final MethodHandle[] compositeIdGetters;
+
+  public MethodHandleEntityMapper(Class<E> entityClazz, List<ColumnDefinition> columnDefinitions) {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    Constructor<?> entityConstructor = entityClazz.getConstructors()[0];
+    checkState(
+        entityConstructor.getParameterCount() == columnDefinitions.size(),
+        "Constructor of " + entityClazz.getName() + " must accept all fields"
+    );
+    this.constructor = spreadConstructor(lookup, entityConstructor);
+    this.getters = new MethodHandle[columnDefinitions.size()];
+    MethodHandle compositeIdConstructor = null;
+    MethodHandle[] compositeIdGetters = new MethodHandle[0];
+    for (int i = 0; i < columnDefinitions.size(); i++) {
+      ColumnDefinition columnDefinition = columnDefinitions.get(i);
+      getters[i] = getter(lookup, checkNotNull(columnDefinition.javaReflectionField));
+      if (columnDefinition.isComposite()) {
+        compositeIdConstructor = spreadConstructor(
+            lookup,
+            checkNotNull(columnDefinition.compositeConstructor)
+        );
+        compositeIdGetters = new MethodHandle[columnDefinition.compositeComponents.size()];
+        for (int j = 0; j < compositeIdGetters.length; j++) {
+          compositeIdGetters[j] = getter(
+              lookup,
+              checkNotNull(columnDefinition.compositeComponents.get(j).javaReflectionField)
+          );
+        }
+      }
+    }
+    this.compositeIdConstructor = compositeIdConstructor;
+    this.compositeIdGetters = compositeIdGetters;
+  }
+
+  @Override
+  public E newEntity(Object[] args) {
+    try {
+      @SuppressWarnings("unchecked")
+      E instance = (E) (Object) constructor.invokeExact(args);
+      return instance;
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  @Nullable
+  @Override
+  public Object getFieldValue(E entity, int fieldIndex) {
+    try {
+      return (Object) getters[fieldIndex].invokeExact((Object) entity);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  @Override
+  public Object newCompositeId(Object[] args) {
+    MethodHandle compositeIdConstructor = checkNotNull(
+        this.compositeIdConstructor,
+        "Entity has no composite id"
+    );
+    try {
+      return (Object) compositeIdConstructor.invokeExact(args);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  @Nullable
+  @Override
+  public Object getCompositeIdComponentValue(Object compositeId, int componentIndex) {
+    try {
+      return (Object) compositeIdGetters[componentIndex].invokeExact(compositeId);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  private static MethodHandle spreadConstructor(
+      MethodHandles.Lookup lookup,
+      Constructor<?> constructor
+  ) {
+    try {
+      constructor.setAccessible(true);
+      return lookup.unreflectConstructor(constructor)
+          .asType(MethodType.genericMethodType(constructor.getParameterCount()))
+          .asSpreader(Object[].class, constructor.getParameterCount())
+          .asType(CONSTRUCTOR_TYPE);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static MethodHandle getter(MethodHandles.Lookup lookup, Field field) {
+    try {
+      field.setAccessible(true);
+      return lookup.unreflectGetter(field).asType(GETTER_TYPE);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable e) {
+    if (e instanceof RuntimeException) {
+      return (RuntimeException) e;
+    }
+    if (e instanceof Error) {
+      throw (Error) e;
+    }
+    return new RuntimeException(e);
+  }
+}
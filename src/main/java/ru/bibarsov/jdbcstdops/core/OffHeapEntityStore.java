@@ -0,0 +1,415 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import ru.bibarsov.jdbcstdops.core.EntityRowFormat.RowOutput;
+
+/**
+ * Entities by id, serialized by {@link EntityRowFormat} into direct byte buffers, so a hot set
+ * much larger than heap is kept without GC cost: heap holds only a primitive hash index, and
+ * entity is deserialized on every hit.
+ * <p>
+ * Keys are spread over independently locked segments. Each segment appends records to a ring of
+ * slabs, when the ring wraps around, the oldest slab is dropped with all its records, i.e.
+ * eviction is FIFO by write time. Record which doesn't fit into a slab isn't stored.
+ * <p>
+ * Loaded entity is put with the stamp taken before loading, and is dropped if the segment was
+ * invalidated meanwhile, the same way as in {@link EntityCache}.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class OffHeapEntityStore<ID, E> {
+
+  private static final int MAX_SEGMENTS = 64;
+  private static final int SLABS_PER_SEGMENT = 8;
+  private static final int MIN_SLAB_BYTES = 4 * 1024;
+  private static final int MAX_SLAB_BYTES = 1 << 30;
+  //key length and row length
+  private static final int HEADER_BYTES = 2 * Integer.BYTES;
+  private static final int INITIAL_INDEX_CAPACITY = 64;
+
+  private final EntityRowFormat<E> rowFormat;
+  private final Segment[] segments;
+  private final int segmentShift;
+  private final ThreadLocal<RowOutput> outputs = ThreadLocal.withInitial(() -> new RowOutput(256));
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder loadNanos = new LongAdder();
+
+  /**
+   * @param maximumBytes upper bound of allocated direct memory, slabs are allocated on demand
+   */
+  @SuppressWarnings("unchecked")
+  OffHeapEntityStore(EntityRowFormat<E> rowFormat, long maximumBytes) {
+    checkArgument(maximumBytes >= (long) SLABS_PER_SEGMENT * MIN_SLAB_BYTES);
+    this.rowFormat = rowFormat;
+    int segmentCount = Integer.highestOneBit((int) Math.min(
+        Math.min(MAX_SEGMENTS, 4 * Runtime.getRuntime().availableProcessors()),
+        maximumBytes / ((long) SLABS_PER_SEGMENT * MIN_SLAB_BYTES)
+    ));
+    long segmentBytes = maximumBytes / segmentCount;
+    int slabCount = (int) Math.max(
+        SLABS_PER_SEGMENT,
+        (segmentBytes + MAX_SLAB_BYTES - 1) / MAX_SLAB_BYTES
+    );
+    int slabBytes = (int) (segmentBytes / slabCount);
+    this.segments = (Segment[]) new OffHeapEntityStore<?, ?>.Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(slabCount, slabBytes);
+    }
+    //high bits select segment, low bits select index slot
+    this.segmentShift = Integer.SIZE - Integer.numberOfTrailingZeros(segmentCount);
+  }
+
+  @Nullable
+  public E get(ID id) {
+    RowOutput out = keyOf(id);
+    int hash = hash(out.array(), out.position());
+    byte[] record = segmentFor(hash).read(hash, out.array(), out.position());
+    if (record == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    //outside of segment lock
+    return rowFormat.read(ByteBuffer.wrap(record));
+  }
+
+  /**
+   * @return stamp to pass to {@link #putLoaded(Object, Object, long, long)}, taken before
+   * loading
+   */
+  public long stamp(ID id) {
+    RowOutput out = keyOf(id);
+    return segmentFor(hash(out.array(), out.position())).stamp();
+  }
+
+  /**
+   * Puts entity loaded from database unless its segment was invalidated since {@code stamp}
+   */
+  public void putLoaded(ID id, E entity, long stamp, long loadNanos) {
+    loads.increment();
+    this.loadNanos.add(loadNanos);
+    RowOutput out = keyOf(id);
+    int keyLength = out.position();
+    int hash = hash(out.array(), keyLength);
+    rowFormat.writeRow(entity, out);
+    segmentFor(hash).putIfNotInvalidated(hash, out.array(), keyLength, out.position(), stamp);
+  }
+
+  public void invalidate(ID id) {
+    RowOutput out = keyOf(id);
+    int hash = hash(out.array(), out.position());
+    segmentFor(hash).invalidate(hash, out.array(), out.position());
+  }
+
+  public void invalidateAll() {
+    for (Segment segment : segments) {
+      segment.invalidateAll();
+    }
+  }
+
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return bytes of records reachable by id, excluding replaced and invalidated ones
+   */
+  public long usedBytes() {
+    long usedBytes = 0;
+    for (Segment segment : segments) {
+      usedBytes += segment.usedBytes();
+    }
+    return usedBytes;
+  }
+
+  /**
+   * @return direct memory allocated by slabs, never shrinks
+   */
+  public long allocatedBytes() {
+    long allocatedBytes = 0;
+    for (Segment segment : segments) {
+      allocatedBytes += segment.allocatedBytes();
+    }
+    return allocatedBytes;
+  }
+
+  /**
+   * @return stats, where evictions are records dropped with their slab
+   */
+  public EntityCache.Stats stats() {
+    return new EntityCache.Stats(
+        hits.sum(),
+        misses.sum(),
+        evictions.sum(),
+        loads.sum(),
+        loadNanos.sum()
+    );
+  }
+
+  private RowOutput keyOf(ID id) {
+    RowOutput out = outputs.get();
+    out.clear();
+    rowFormat.writeKey(id, out);
+    return out;
+  }
+
+  private Segment segmentFor(int hash) {
+    return segments[(int) ((hash & 0xFFFFFFFFL) >>> segmentShift)];
+  }
+
+  private static int hash(byte[] bytes, int length) {
+    int hash = 1;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    //murmur3 finalizer, spreads the polynomial hash over high bits too
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+
+  private class Segment {
+
+    private final int slabBytes;
+    //allocated on first write
+    @GuardedBy("this")
+    private final ByteBuffer[] slabs;
+    @GuardedBy("this")
+    private int writeSlab = 0;
+    @GuardedBy("this")
+    private int writeOffset = 0;
+    //open addressing with linear probing, slot is empty if its address is 0
+    @GuardedBy("this")
+    private int[] hashes = new int[INITIAL_INDEX_CAPACITY];
+    //slab index in high bits, offset in low bits, plus one
+    @GuardedBy("this")
+    private long[] addresses = new long[INITIAL_INDEX_CAPACITY];
+    @GuardedBy("this")
+    private int count = 0;
+    @GuardedBy("this")
+    private long usedBytes = 0;
+    //incremented by every invalidation
+    @GuardedBy("this")
+    private long invalidations = 0;
+
+    private Segment(int slabCount, int slabBytes) {
+      this.slabs = new ByteBuffer[slabCount];
+      this.slabBytes = slabBytes;
+    }
+
+    /**
+     * @return copy of key and row bytes
+     */
+    @Nullable
+    private synchronized byte[] read(int hash, byte[] key, int keyLength) {
+      int slot = find(hash, key, keyLength);
+      if (slot < 0) {
+        return null;
+      }
+      long address = addresses[slot] - 1;
+      ByteBuffer slab = slabs[(int) (address >>> 32)];
+      int offset = (int) address;
+      byte[] record = new byte[keyLength + slab.getInt(offset + Integer.BYTES)];
+      slab.get(offset + HEADER_BYTES, record);
+      return record;
+    }
+
+    private synchronized long stamp() {
+      return invalidations;
+    }
+
+    private synchronized void putIfNotInvalidated(
+        int hash,
+        byte[] record,
+        int keyLength,
+        int length,
+        long stamp
+    ) {
+      if (invalidations != stamp || HEADER_BYTES + length > slabBytes) {
+        return;
+      }
+      int slot = find(hash, record, keyLength);
+      if (slot >= 0) {
+        removeAt(slot);
+      }
+      if (writeOffset + HEADER_BYTES + length > slabBytes) {
+        this.writeSlab = (writeSlab + 1) % slabs.length;
+        this.writeOffset = 0;
+        if (slabs[writeSlab] != null) {
+          dropSlab(writeSlab);
+        }
+      }
+      ByteBuffer slab = slabs[writeSlab];
+      if (slab == null) {
+        slab = ByteBuffer.allocateDirect(slabBytes);
+        slabs[writeSlab] = slab;
+      }
+      slab.putInt(writeOffset, keyLength);
+      slab.putInt(writeOffset + Integer.BYTES, length - keyLength);
+      slab.put(writeOffset + HEADER_BYTES, record, 0, length);
+      if (2 * (count + 1) > addresses.length) {
+        rehash(addresses.length * 2, -1);
+      }
+      insert(hash, ((long) writeSlab << 32 | writeOffset) + 1);
+      this.writeOffset += HEADER_BYTES + length;
+      this.usedBytes += HEADER_BYTES + length;
+    }
+
+    private synchronized void invalidate(int hash, byte[] key, int keyLength) {
+      invalidations++;
+      int slot = find(hash, key, keyLength);
+      if (slot >= 0) {
+        removeAt(slot);
+      }
+    }
+
+    private synchronized void invalidateAll() {
+      invalidations++;
+      Arrays.fill(hashes, 0);
+      Arrays.fill(addresses, 0);
+      this.count = 0;
+      this.usedBytes = 0;
+      //allocated slabs are reused
+      this.writeSlab = 0;
+      this.writeOffset = 0;
+    }
+
+    private synchronized int size() {
+      return count;
+    }
+
+    private synchronized long usedBytes() {
+      return usedBytes;
+    }
+
+    private synchronized long allocatedBytes() {
+      long allocatedBytes = 0;
+      for (ByteBuffer slab : slabs) {
+        if (slab != null) {
+          allocatedBytes += slabBytes;
+        }
+      }
+      return allocatedBytes;
+    }
+
+    @GuardedBy("this")
+    private int find(int hash, byte[] key, int keyLength) {
+      int mask = addresses.length - 1;
+      for (int slot = hash & mask; addresses[slot] != 0; slot = (slot + 1) & mask) {
+        if (hashes[slot] == hash && keyEquals(addresses[slot] - 1, key, keyLength)) {
+          return slot;
+        }
+      }
+      return -1;
+    }
+
+    @GuardedBy("this")
+    private boolean keyEquals(long address, byte[] key, int keyLength) {
+      ByteBuffer slab = slabs[(int) (address >>> 32)];
+      int offset = (int) address;
+      if (slab.getInt(offset) != keyLength) {
+        return false;
+      }
+      int keyOffset = offset + HEADER_BYTES;
+      for (int i = 0; i < keyLength; i++) {
+        if (slab.get(keyOffset + i) != key[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @GuardedBy("this")
+    private void insert(int hash, long address) {
+      int mask = addresses.length - 1;
+      int slot = hash & mask;
+      while (addresses[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      hashes[slot] = hash;
+      addresses[slot] = address;
+      count++;
+    }
+
+    /**
+     * Backward shift deletion, keeps probe sequences without tombstones
+     */
+    @GuardedBy("this")
+    private void removeAt(int slot) {
+      usedBytes -= recordLength(addresses[slot] - 1);
+      int mask = addresses.length - 1;
+      int hole = slot;
+      for (int i = (slot + 1) & mask; addresses[i] != 0; i = (i + 1) & mask) {
+        int home = hashes[i] & mask;
+        //entry may move back only if the hole is between its home slot and current slot
+        if (((i - home) & mask) >= ((i - hole) & mask)) {
+          hashes[hole] = hashes[i];
+          addresses[hole] = addresses[i];
+          hole = i;
+        }
+      }
+      hashes[hole] = 0;
+      addresses[hole] = 0;
+      count--;
+    }
+
+    /**
+     * Removes all records of the slab which is about to be overwritten
+     */
+    @GuardedBy("this")
+    private void dropSlab(int slab) {
+      int countBefore = count;
+      rehash(addresses.length, slab);
+      evictions.add(countBefore - count);
+    }
+
+    /**
+     * @param skippedSlab slab, records of which aren't copied to new index, -1 to copy all
+     */
+    @GuardedBy("this")
+    private void rehash(int capacity, int skippedSlab) {
+      int[] oldHashes = hashes;
+      long[] oldAddresses = addresses;
+      this.hashes = new int[capacity];
+      this.addresses = new long[capacity];
+      this.count = 0;
+      for (int i = 0; i < oldAddresses.length; i++) {
+        long address = oldAddresses[i];
+        if (address == 0) {
+          continue;
+        }
+        if ((int) ((address - 1) >>> 32) == skippedSlab) {
+          usedBytes -= recordLength(address - 1);
+        } else {
+          insert(oldHashes[i], address);
+        }
+      }
+    }
+
+    @GuardedBy("this")
+    private int recordLength(long address) {
+      ByteBuffer slab = slabs[(int) (address >>> 32)];
+      int offset = (int) address;
+      return HEADER_BYTES + slab.getInt(offset) + slab.getInt(offset + Integer.BYTES);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkNotNull;
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkState;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Streams rows into a table with {@code COPY ... FROM STDIN} using text format.
+ * All pgjdbc specific code is kept here, so the driver is needed only if COPY is used.
+ */
+@ParametersAreNonnullByDefault
+public class PgCopyLoader {
+
+  private static final int FLUSH_THRESHOLD_CHARS = 64 * 1024;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  //explicit offset, so timestamptz doesn't depend on session TimeZone
+  private static final DateTimeFormatter OFFSET_DATE_TIME = new DateTimeFormatterBuilder()
+      .append(DateTimeFormatter.ISO_LOCAL_DATE)
+      .appendLiteral(' ')
+      .append(DateTimeFormatter.ISO_LOCAL_TIME)
+      .appendOffset("+HH:MM:ss", "+00:00")
+      .toFormatter();
+
+  private final ColumnValueConverter columnValueConverter;
+
+  public PgCopyLoader(ColumnValueConverter columnValueConverter) {
+    this.columnValueConverter = columnValueConverter;
+  }
+
+  /**
+   * @param columns   columns to copy, in order of row values
+   * @param rowWriter fills array of java values having exactly {@code columns} positions,
+   *                  the array is reused between rows
+   * @return number of copied rows
+   */
+  public <T> long copyIn(
+      Connection connection,
+      String tableName,
+      List<QueryColDef> columns,
+      Iterator<T> rows,
+      BiConsumer<T, Object[]> rowWriter
+  ) throws SQLException {
+    StringBuilder columnNames = new StringBuilder();
+    DbTypeConverter[] converters = new DbTypeConverter[columns.size()];
+    for (int i = 0; i < columns.size(); i++) {
+      QueryColDef column = columns.get(i);
+      if (i > 0) {
+        columnNames.append(',');
+      }
+      columnNames.append(checkNotNull(column.columnName));
+      converters[i] = columnValueConverter.dbTypeConverter(column);
+    }
+    String copyQuery = String.format("COPY %s (%s) FROM STDIN", tableName, columnNames);
+    CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copyQuery);
+    try {
+      StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD_CHARS + 1024);
+      Object[] values = new Object[converters.length];
+      while (rows.hasNext()) {
+        rowWriter.accept(rows.next(), values);
+        for (int i = 0; i < values.length; i++) {
+          if (i > 0) {
+            buffer.append('\t');
+          }
+          appendValue(buffer, converters[i].toDbTypeValue(values[i]));
+          values[i] = null;
+        }
+        buffer.append('\n');
+        if (buffer.length() >= FLUSH_THRESHOLD_CHARS) {
+          flush(copyIn, buffer);
+        }
+      }
+      flush(copyIn, buffer);
+      return copyIn.endCopy();
+    } finally {
+      if (copyIn.isActive()) {
+        copyIn.cancelCopy();
+      }
+    }
+  }
+
+  private static void flush(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+    if (buffer.length() == 0) {
+      return;
+    }
+    byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+    copyIn.writeToCopy(bytes, 0, bytes.length);
+    buffer.setLength(0);
+  }
+
+  private static void appendValue(StringBuilder buffer, @Nullable Object dbValue) {
+    if (dbValue == null) {
+      buffer.append("\\N");
+      return;
+    }
+    if (dbValue instanceof Boolean) {
+      buffer.append((Boolean) dbValue ? 't' : 'f');
+      return;
+    }
+    if (dbValue instanceof byte[]) {
+      //bytea hex format, leading backslash is escaped for text COPY
+      buffer.append("\\\\x");
+      for (byte b : (byte[]) dbValue) {
+        buffer.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+      }
+      return;
+    }
+    String text;
+    if (dbValue instanceof Timestamp) {
+      //Timestamp holds wall clock of jvm zone, which is what setTimestamp() sends for timestamp
+      Instant instant = ((Timestamp) dbValue).toInstant();
+      text = OFFSET_DATE_TIME.format(instant.atZone(ZoneId.systemDefault()));
+    } else if (dbValue instanceof OffsetDateTime) {
+      text = OFFSET_DATE_TIME.format((OffsetDateTime) dbValue);
+    } else if (dbValue instanceof Instant) {
+      text = OFFSET_DATE_TIME.format(((Instant) dbValue).atOffset(ZoneOffset.UTC));
+    } else {
+      text = dbValue.toString();
+    }
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '\\':
+          buffer.append("\\\\");
+          break;
+        case '\t':
+          buffer.append("\\t");
+          break;
+        case '\n':
+          buffer.append("\\n");
+          break;
+        case '\r':
+          buffer.append("\\r");
+          break;
+        default:
+          buffer.append(c);
+      }
+    }
+  }
+}
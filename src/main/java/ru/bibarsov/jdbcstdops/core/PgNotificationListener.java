@@ -0,0 +1,133 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkArgument;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Runs postgres {@code LISTEN} on a daemon thread and passes payloads of notifications to
+ * handler, batched by arrival. Holds one connection of {@code dataSource} until closed, so a
+ * non-pooled data source fits best. On connection failure it reconnects and calls
+ * {@link Handler#onListenStarted()} again, as notifications sent meanwhile are lost.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class PgNotificationListener implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PgNotificationListener.class);
+  private static final Pattern CHANNEL_PATTERN = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+  private static final int POLL_TIMEOUT_MILLIS = 500;
+  private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+  public interface Handler {
+
+    /**
+     * Called on the listener thread once LISTEN is executed, after start and every reconnect
+     */
+    void onListenStarted();
+
+    /**
+     * Called on the listener thread with payloads of notifications received together
+     */
+    void onNotifications(List<String> payloads);
+  }
+
+  private final DataSource dataSource;
+  private final String channel;
+  private final Handler handler;
+  private final Thread thread;
+
+  private volatile boolean closed = false;
+
+  /**
+   * @param channel channel name, unquoted identifier
+   */
+  public PgNotificationListener(DataSource dataSource, String channel, Handler handler) {
+    checkArgument(CHANNEL_PATTERN.matcher(channel).matches());
+    this.dataSource = dataSource;
+    this.channel = channel;
+    this.handler = handler;
+    this.thread = new Thread(this::run, "pg-listen-" + channel);
+    thread.setDaemon(true);
+  }
+
+  public PgNotificationListener start() {
+    thread.start();
+    return this;
+  }
+
+  /**
+   * Stops listening, waits for the current handler call to finish unless interrupted
+   */
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run() {
+    while (!closed) {
+      Connection connection = null;
+      try {
+        connection = dataSource.getConnection();
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        //LISTEN takes effect on commit, pooled connection may come without autocommit
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("LISTEN " + channel);
+        }
+        handler.onListenStarted();
+        while (!closed) {
+          PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+          List<String> payloads = toPayloads(notifications);
+          if (!payloads.isEmpty()) {
+            handler.onNotifications(payloads);
+          }
+        }
+      } catch (SQLException | RuntimeException e) {
+        LOGGER.warn("Listening to channel {} failed, reconnecting", channel, e);
+        sleepBeforeReconnect();
+      } finally {
+        JdbcUtils.closeConnection(connection);
+      }
+    }
+  }
+
+  private static List<String> toPayloads(@Nullable PGNotification[] notifications) {
+    if (notifications == null) {
+      return List.of();
+    }
+    List<String> payloads = new ArrayList<>(notifications.length);
+    for (PGNotification notification : notifications) {
+      payloads.add(notification.getParameter());
+    }
+    return payloads;
+  }
+
+  private void sleepBeforeReconnect() {
+    try {
+      Thread.sleep(RECONNECT_DELAY_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkArgument;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import ru.bibarsov.jdbcstdops.value.KeysetPage;
+
+/**
+ * Iterates keyset pages, while the caller processes page N, pages N+1.. are fetched by a task
+ * running on {@code executor}. At most {@code pagesInFlight} fetched pages wait for the caller,
+ * then fetching task blocks.
+ * <p>
+ * Must be closed if not iterated till the end, otherwise fetching task stays blocked.
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public class PrefetchingPageIterator<E, ID> implements Iterator<E>, AutoCloseable {
+
+  private static final long WAIT_TIMEOUT_MILLIS = 100;
+
+  //loads page following given last id, null for the first page
+  private final Function<ID, KeysetPage<E, ID>> pageLoader;
+  private final BlockingQueue<List<E>> pages;
+
+  private volatile boolean closed = false;
+  //set by fetching task when it's finished, successfully or not
+  private volatile boolean fetched = false;
+  @Nullable
+  private volatile Throwable failure;
+
+  private Iterator<E> currentPage = Collections.emptyIterator();
+  private boolean finished = false;
+
+  public PrefetchingPageIterator(
+      Function<ID, KeysetPage<E, ID>> pageLoader,
+      int pagesInFlight,
+      Executor executor
+  ) {
+    checkArgument(pagesInFlight > 0);
+    this.pageLoader = pageLoader;
+    this.pages = new ArrayBlockingQueue<>(pagesInFlight);
+    executor.execute(this::fetchPages);
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!currentPage.hasNext()) {
+      if (finished) {
+        return false;
+      }
+      List<E> page = takePage();
+      if (page == null) {
+        finished = true;
+        Throwable failure = this.failure;
+        if (failure != null) {
+          throw failure instanceof RuntimeException
+              ? (RuntimeException) failure
+              : new RuntimeException("Couldn't fetch page", failure);
+        }
+        return false;
+      }
+      currentPage = page.iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public E next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return currentPage.next();
+  }
+
+  /**
+   * Stops fetching task and drops prefetched pages
+   */
+  @Override
+  public void close() {
+    closed = true;
+    finished = true;
+    currentPage = Collections.emptyIterator();
+    pages.clear();
+  }
+
+  /**
+   * @return the next page or null if there are no more pages
+   */
+  @Nullable
+  private List<E> takePage() {
+    try {
+      while (true) {
+        //flag is read before polling, so pages offered before it was set are not missed
+        boolean fetched = this.fetched;
+        List<E> page = fetched
+            ? pages.poll()
+            : pages.poll(WAIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        if (page != null || fetched) {
+          return page;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new IllegalStateException("Interrupted while waiting for page", e);
+    }
+  }
+
+  private void fetchPages() {
+    try {
+      ID lastId = null;
+      while (!closed) {
+        KeysetPage<E, ID> page = pageLoader.apply(lastId);
+        if (!page.entities.isEmpty() && !offer(page.entities)) {
+          return;
+        }
+        if (!page.hasNext) {
+          return;
+        }
+        lastId = page.lastId;
+      }
+    } catch (Throwable e) {
+      failure = e;
+    } finally {
+      fetched = true;
+    }
+  }
+
+  /**
+   * @return false if iterator was closed while waiting for free space
+   */
+  private boolean offer(List<E> page) throws InterruptedException {
+    while (!pages.offer(page, WAIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+      if (closed) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -3,21 +3,23 @@ package ru.bibarsov.jdbcstdops.core;
 import static ru.bibarsov.jdbcstdops.util.Preconditions.checkNotNull;
 import static ru.bibarsov.jdbcstdops.util.Preconditions.checkState;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import ru.bibarsov.jdbcstdops.util.Pair;
 import ru.bibarsov.jdbcstdops.value.QueryType;
 
 @ParametersAreNonnullByDefault
 public class QueryBuilder {
 
+  private static final QueryColDef OFFSET_COLUMN = new QueryColDef("offset", null, null);
+  private static final QueryColDef LIMIT_COLUMN = new QueryColDef("limit", null, null);
+
   private final ColumnValueConverter columnValueConverter;
 
   private QueryType queryType;
@@ -26,6 +28,8 @@ public class QueryBuilder {
   private boolean built = false;
   //Map<ColumnName, Pair<ColumnDefinition, JavaReflectionFieldValue>>
   private Map<String, Pair<QueryColDef, Object>> conditions;
+  //Map<ColumnName, Pair<ColumnDefinition, JavaReflectionFieldValues>>
+  private Map<String, Pair<QueryColDef, List<?>>> inConditions;
   private List<String> columnsToSelect;
   //Map<ColumnName, Pair<ColumnDefinition, JavaReflectionFieldValue>>
   private Map<String, Pair<QueryColDef, Object>> columnsToInsert;
@@ -33,6 +37,14 @@ public class QueryBuilder {
   private boolean generateAndReturnId = false; //false by default
   private int offset = 0;
   private int limit = Integer.MAX_VALUE;
+  private boolean paged = false;
+  private List<QueryColDef> orderColumns = Collections.emptyList();
+  //SELECT continues after the row with values of these columns bound as parameters
+  private List<QueryColDef> keysetColumns = Collections.emptyList();
+  //SELECT is restricted to rows between bounds of these columns, inclusive
+  private List<QueryColDef> rangeColumns = Collections.emptyList();
+  //rows of INSERT or UPSERT with generated ids rendered by compile()
+  private int rowCount = 1;
 
   public QueryBuilder(ColumnValueConverter columnValueConverter) {
     this.columnValueConverter = columnValueConverter;
@@ -73,6 +85,17 @@ public class QueryBuilder {
     return this;
   }
 
+  /**
+   * Declares columns to insert without values, for {@link #compile()}
+   */
+  public QueryBuilder setColumnsToInsert(List<QueryColDef> columns) {
+    LinkedHashMap<String, Pair<QueryColDef, Object>> columnsToInsert = new LinkedHashMap<>();
+    for (QueryColDef column : columns) {
+      columnsToInsert.put(column.columnName, Pair.of(column, null));
+    }
+    return setColumnsToInsert(columnsToInsert);
+  }
+
   public QueryBuilder setGenerateAndReturnId(boolean generateAndReturnId) {
     this.generateAndReturnId = generateAndReturnId;
     return this;
@@ -81,146 +104,339 @@ public class QueryBuilder {
   public QueryBuilder setCondition(QueryColDef column, @Nullable Object value) {
     checkNotNull(column.columnName, "Column name must not be null");
     if (conditions == null) {
-      this.conditions = new HashMap<>();
+      this.conditions = new LinkedHashMap<>();
     }
     this.conditions.put(column.columnName, Pair.of(column, value));
     return this;
   }
 
+  /**
+   * Declares equality conditions without values, for {@link #compile()}
+   */
+  public QueryBuilder setConditionColumns(List<QueryColDef> columns) {
+    for (QueryColDef column : columns) {
+      setCondition(column, null);
+    }
+    return this;
+  }
 
-  public QueryBuilder setOffset(int offset) {
-    this.offset = offset;
+  /**
+   * Restricts column to one of values, bound as a single array parameter. Values lists of
+   * several in-conditions are matched by position, like rows of a composite key.
+   */
+  public QueryBuilder setInCondition(QueryColDef column, List<?> values) {
+    checkNotNull(column.columnName, "Column name must not be null");
+    checkState(!values.isEmpty(), "Values of in-condition must not be empty");
+    if (inConditions == null) {
+      this.inConditions = new LinkedHashMap<>();
+    } else {
+      checkState(
+          checkNotNull(inConditions.values().iterator().next().right).size() == values.size(),
+          "All in-conditions must have the same number of values"
+      );
+    }
+    this.inConditions.put(column.columnName, Pair.of(column, values));
     return this;
   }
 
+  /**
+   * Declares in-conditions without values, for {@link #compile()}
+   */
+  public QueryBuilder setInConditionColumns(List<QueryColDef> columns) {
+    if (inConditions == null) {
+      this.inConditions = new LinkedHashMap<>();
+    }
+    for (QueryColDef column : columns) {
+      this.inConditions.put(column.columnName, Pair.of(column, Collections.emptyList()));
+    }
+    return this;
+  }
 
+  public QueryBuilder setOffset(int offset) {
+    this.offset = offset;
+    return this;
+  }
 
   public QueryBuilder setLimit(int limit) {
     this.limit = limit;
     return this;
   }
 
+  /**
+   * Makes {@link #compile()} render offset and limit of SELECT as parameters
+   */
+  public QueryBuilder setPaged(boolean paged) {
+    this.paged = paged;
+    return this;
+  }
+
+  /**
+   * Orders SELECT by columns, ascending
+   */
+  public QueryBuilder setOrderBy(List<QueryColDef> columns) {
+    this.orderColumns = Collections.unmodifiableList(columns);
+    return this;
+  }
+
+  /**
+   * Makes {@link #compile()} render keyset (seek) SELECT, which continues after the row with
+   * given values of key columns: {@code WHERE (key columns) > (:last_...) ORDER BY key columns}.
+   * Unlike OFFSET, every page is a range scan of the key index.
+   */
+  public QueryBuilder setKeyset(List<QueryColDef> keyColumns) {
+    checkState(!keyColumns.isEmpty(), "Key columns must not be empty");
+    this.keysetColumns = Collections.unmodifiableList(keyColumns);
+    return setOrderBy(keyColumns);
+  }
+
+  /**
+   * Makes {@link #compile()} render SELECT of key range, inclusive on both ends:
+   * {@code WHERE (key columns) >= (:from_...) AND (key columns) <= (:to_...)}
+   */
+  public QueryBuilder setRange(List<QueryColDef> keyColumns) {
+    checkState(!keyColumns.isEmpty(), "Key columns must not be empty");
+    this.rangeColumns = Collections.unmodifiableList(keyColumns);
+    return this;
+  }
+
+  /**
+   * Makes {@link #compile()} render INSERT or UPSERT of {@code rowCount} rows as one statement
+   * returning generated ids in order of rows. Values of row {@code i} are bound at indexes
+   * starting from {@code i * columnsToInsert.size()}.
+   */
+  public QueryBuilder setRowCount(int rowCount) {
+    checkState(rowCount > 0, "Row count must be positive");
+    this.rowCount = rowCount;
+    return this;
+  }
 
   public Query build() {
+    checkState(!built);
+    checkState(tableName != null);
+    checkState(queryType != null);
+    checkState(keysetColumns.isEmpty(), "Keyset query must be compiled");
+    checkState(rangeColumns.isEmpty(), "Range query must be compiled");
+    built = true;
+    QueryPlan plan = render(false);
+    return new Query(
+        plan.sqlQuery,
+        plan.bind(declaredValues()),
+        plan.hasReturningStatement
+    );
+  }
+
+  /**
+   * Renders query text once, leaving all values (including offset and limit) to be bound
+   * later, in order of declaration: columns to insert, conditions, in-conditions, keyset
+   * values, range lower and upper bounds, offset and limit
+   */
+  public QueryPlan compile() {
     checkState(!built);
     checkState(tableName != null);
     checkState(queryType != null);
     built = true;
+    return render(true);
+  }
+
+  private QueryPlan render(boolean compiled) {
+    List<QueryPlan.Parameter> parameters = new ArrayList<>();
+    String query;
     switch (queryType) {
       case INSERT:
-        return buildInsertQuery();
+        query = rowCount > 1
+            ? renderMultiRowInsertQuery(parameters, rowCount)
+            : renderInsertQuery(parameters);
+        break;
       case UPSERT:
-        return buildUpsertQuery();
+        query = rowCount > 1
+            ? renderMultiRowInsertQuery(parameters, rowCount)
+            : renderUpsertQuery(parameters);
+        break;
       case SELECT:
-        return buildSelectQuery();
+        query = renderSelectQuery(parameters, compiled);
+        break;
       case DELETE:
-        return buildDeleteQuery();
+        query = renderDeleteQuery(parameters);
+        break;
       default:
         throw new IllegalStateException("Unexpected QueryType: " + queryType);
     }
+    return new QueryPlan(query, parameters, generateAndReturnId, columnValueConverter);
   }
 
-  private Query buildInsertQuery() {
+  /**
+   * Renders INSERT (or UPSERT) of several rows, which returns generated ids ordered by rows.
+   * Postgres doesn't define order of rows returned by {@code INSERT ... RETURNING}, so ids are
+   * drawn from the sequence into a CTE numbered by row, rows of values are joined to their id
+   * by number and the statement returns the CTE ordered by number:
+   * <pre>
+   * WITH generated_ids AS (SELECT nextval('seq') AS id, ord FROM generate_series(1, 2) AS ord),
+   * inserted AS (INSERT INTO t (id,name) SELECT g.id,v.name FROM (VALUES
+   *     (0,(NULL::t).name),(1,:name_0),(2,:name_1)) v(ord,name)
+   *     JOIN generated_ids g USING (ord))
+   * SELECT id FROM generated_ids ORDER BY ord
+   * </pre>
+   * Row 0 has no id and is never inserted, it only gives columns of VALUES the types of table
+   * columns, otherwise untyped parameters would be resolved as text. CTE with a volatile
+   * function is evaluated once, so both references see the same ids.
+   */
+  private String renderMultiRowInsertQuery(List<QueryPlan.Parameter> parameters, int rows) {
+    checkState(isInsertion(), "Generated ids can be returned only for INSERT and UPSERT");
     checkState(
         columnsToInsert != null && !columnsToInsert.isEmpty(),
         "Columns to insert must be provided"
     );
-    StringBuilder queryString = new StringBuilder();
-    QueryColDef generatedIdColumn = findGeneratedIdColumn();
-    if (generateAndReturnId) {
-      checkState(
-          generatedIdColumn != null,
-          "generateAndReturnId requires a generated id column"
-      );
+    QueryColDef generatedIdColumn = checkNotNull(
+        generateAndReturnId ? findGeneratedIdColumn() : null,
+        "Multi-row insert requires generateAndReturnId and a generated id column"
+    );
+    int columnCount = columnsToInsert.size();
+    List<String> selected = new ArrayList<>(columnCount);
+    List<String> valueColumns = new ArrayList<>(columnCount);
+    valueColumns.add("ord");
+    StringBuilder values = new StringBuilder("(0");
+    for (String columnName : columnsToInsert.keySet()) {
+      if (columnName.equals(generatedIdColumn.columnName)) {
+        selected.add("g.id");
+      } else {
+        selected.add("v." + columnName);
+        valueColumns.add(columnName);
+        values.append(",(NULL::").append(tableName).append(").").append(columnName);
+      }
+    }
+    values.append(')');
+    for (int row = 0; row < rows; row++) {
+      values.append(",(").append(row + 1);
+      int columnIndex = 0;
+      for (var columnToVal : columnsToInsert.entrySet()) {
+        String columnName = columnToVal.getKey();
+        if (!columnName.equals(generatedIdColumn.columnName)) {
+          String paramName = columnName + "_" + row;
+          values.append(",:").append(paramName);
+          parameters.add(new QueryPlan.Parameter(
+              paramName,
+              checkNotNull(columnToVal.getValue().left),
+              row * columnCount + columnIndex,
+              false
+          ));
+        }
+        columnIndex++;
+      }
+      values.append(')');
+    }
+    StringBuilder insert = new StringBuilder();
+    insert.append(String.format(
+        "INSERT INTO %s (%s) SELECT %s FROM (VALUES %s) v(%s)"
+            + " JOIN generated_ids g USING (ord)",
+        tableName,
+        String.join(",", columnsToInsert.keySet()),
+        String.join(",", selected),
+        values,
+        String.join(",", valueColumns)
+    ));
+    if (queryType == QueryType.UPSERT) {
+      checkState(!idColumns.isEmpty(), "UPSERT requires id columns");
+      List<String> idColumnNames = idColumnNames();
+      insert.append(String.format(
+          " ON CONFLICT (%s) DO UPDATE SET %s",
+          String.join(",", idColumnNames),
+          columnsToInsert.keySet().stream()
+              .filter(c -> !idColumnNames.contains(c))
+              .map(c -> c + " = EXCLUDED." + c)
+              .collect(Collectors.joining(","))
+      ));
     }
+    return String.format(
+        "WITH generated_ids AS (SELECT %s AS id, ord FROM generate_series(1, %d) AS ord), "
+            + "inserted AS (%s) SELECT id FROM generated_ids ORDER BY ord",
+        renderNextval(generatedIdColumn),
+        rows,
+        insert
+    );
+  }
+
+  private String renderInsertQuery(List<QueryPlan.Parameter> parameters) {
+    checkState(
+        columnsToInsert != null && !columnsToInsert.isEmpty(),
+        "Columns to insert must be provided"
+    );
+    StringBuilder queryString = new StringBuilder();
+    QueryColDef generatedIdColumn = findReturnedIdColumn();
     queryString.append(String.format(
         "INSERT INTO %s (%s) VALUES (%s)",
         tableName,
         String.join(",", columnsToInsert.keySet()),
-        columnsToInsert.keySet().stream()
-            .map(c -> {
-              if (generateAndReturnId && generatedIdColumn != null
-                  && c.equals(generatedIdColumn.columnName)) {
-                return String.format(
-                    "nextval('%s')", //db dialect dependant!
-                    checkNotNull(checkNotNull(generatedIdColumn.idMetadata).sequenceName)
-                );
-              }
-              return ":" + c;
-            })
-            .collect(Collectors.joining(","))
+        renderInsertValues(parameters, generatedIdColumn)
     ));
-    if (generateAndReturnId && generatedIdColumn != null) {
+    if (generatedIdColumn != null) {
       queryString.append(" RETURNING ").append(generatedIdColumn.columnName);
     }
-    String query = queryString.toString();
-    MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-    for (var columnToVal : columnsToInsert.entrySet()) {
-      addValue(
-          parameterSource,
-          columnToVal.getKey(),
-          checkNotNull(columnToVal.getValue().left),
-          columnToVal.getValue().right
-      );
-    }
-    return new Query(query, parameterSource, generateAndReturnId);
+    return queryString.toString();
   }
 
-  private Query buildUpsertQuery() {
+  private String renderUpsertQuery(List<QueryPlan.Parameter> parameters) {
     checkState(columnsToInsert != null && !columnsToInsert.isEmpty());
     checkState(!idColumns.isEmpty(), "UPSERT requires id columns");
-    QueryColDef generatedIdColumn = findGeneratedIdColumn();
-    if (generateAndReturnId) {
-      checkState(
-          generatedIdColumn != null,
-          "generateAndReturnId requires a generated id column"
-      );
-    }
-    List<String> idColumnNames = idColumns.stream()
-        .map(c -> checkNotNull(c.columnName))
-        .collect(Collectors.toList());
+    QueryColDef generatedIdColumn = findReturnedIdColumn();
+    List<String> idColumnNames = idColumnNames();
     StringBuilder queryString = new StringBuilder();
     queryString.append(String.format(
-        "INSERT INTO %s (%s) VALUES (%s) ON CONFLICT (%s) DO UPDATE SET %s",
+        "INSERT INTO %s (%s) VALUES (%s) ON CONFLICT (%s) DO UPDATE SET ",
         tableName,
         String.join(",", columnsToInsert.keySet()),
-        columnsToInsert.keySet().stream()
-            .map(c -> {
-              if (generateAndReturnId && generatedIdColumn != null
-                  && c.equals(generatedIdColumn.columnName)) {
-                return String.format(
-                    "nextval('%s')", //db dialect dependant!
-                    checkNotNull(checkNotNull(generatedIdColumn.idMetadata).sequenceName)
-                );
-              }
-              return ":" + c;
-            })
-            .collect(Collectors.joining(","))
-        ,
-        String.join(",", idColumnNames),
-        columnsToInsert.keySet().stream()
-            .filter(c -> !idColumnNames.contains(c))
-            .map(c -> c + " = " + ":" + c)
-            .collect(Collectors.joining(","))
+        renderInsertValues(parameters, generatedIdColumn),
+        String.join(",", idColumnNames)
     ));
-    if (generateAndReturnId && generatedIdColumn != null) {
+    int valueIndex = 0;
+    boolean first = true;
+    for (var columnToVal : columnsToInsert.entrySet()) {
+      String columnName = columnToVal.getKey();
+      if (!idColumnNames.contains(columnName)) {
+        if (!first) {
+          queryString.append(',');
+        }
+        first = false;
+        queryString.append(columnName).append(" = :").append(columnName);
+        parameters.add(new QueryPlan.Parameter(
+            columnName,
+            checkNotNull(columnToVal.getValue().left),
+            valueIndex,
+            false
+        ));
+      }
+      valueIndex++;
+    }
+    if (generatedIdColumn != null) {
       queryString.append(" RETURNING ").append(generatedIdColumn.columnName);
     }
-    String query = queryString.toString();
-    MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+    return queryString.toString();
+  }
+
+  private String renderInsertValues(
+      List<QueryPlan.Parameter> parameters,
+      @Nullable QueryColDef generatedIdColumn
+  ) {
+    List<String> values = new ArrayList<>(columnsToInsert.size());
+    int valueIndex = 0;
     for (var columnToVal : columnsToInsert.entrySet()) {
-      addValue(
-          parameterSource,
-          columnToVal.getKey(),
-          checkNotNull(columnToVal.getValue().left),
-          columnToVal.getValue().right
-      );
+      String columnName = columnToVal.getKey();
+      if (generatedIdColumn != null && columnName.equals(generatedIdColumn.columnName)) {
+        values.add(renderNextval(generatedIdColumn));
+      } else {
+        values.add(":" + columnName);
+        parameters.add(new QueryPlan.Parameter(
+            columnName,
+            checkNotNull(columnToVal.getValue().left),
+            valueIndex,
+            false
+        ));
+      }
+      valueIndex++;
     }
-    return new Query(query, parameterSource, generateAndReturnId);
-
+    return String.join(",", values);
   }
 
-  private Query buildSelectQuery() {
+  private String renderSelectQuery(List<QueryPlan.Parameter> parameters, boolean compiled) {
     checkState(
         columnsToSelect != null && !columnsToSelect.isEmpty(),
         "Columns to select must be provided"
@@ -231,74 +447,178 @@ public class QueryBuilder {
         String.join(",", columnsToSelect),
         tableName
     ));
-    MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-    if (conditions != null && !conditions.isEmpty()) {
-      queryString.append(" WHERE ")
-          .append(conditions.entrySet().stream()
-              .map(
-                  e -> {
-                    if (e.getValue() == null) {
-                      return e.getKey() + " IS NULL ";
-                    }
-                    return e.getKey() + " = :" + e.getKey();
-                  }
-              )
-              .collect(Collectors.joining(" AND ")));
-      for (var columnToVal : conditions.entrySet()) {
-        addValue(
-            parameterSource,
-            columnToVal.getKey(),
-            checkNotNull(columnToVal.getValue().left),
-            columnToVal.getValue().right
-        );
-      }
+    queryString.append(renderWhere(parameters));
+    if (!orderColumns.isEmpty()) {
+      queryString.append(" ORDER BY ").append(
+          orderColumns.stream().map(c -> c.columnName).collect(Collectors.joining(","))
+      );
     }
-    queryString.append(" OFFSET " + offset + " LIMIT " + limit);
-    return new Query(queryString.toString(), parameterSource, generateAndReturnId);
+    if (!compiled) {
+      queryString.append(" OFFSET " + offset + " LIMIT " + limit);
+    } else if (paged && !keysetColumns.isEmpty()) {
+      //keyset query seeks to the first row, offset value is ignored
+      queryString.append(" LIMIT :limit");
+      parameters.add(new QueryPlan.Parameter(
+          "limit",
+          LIMIT_COLUMN,
+          declaredValuesCount() - 1,
+          false
+      ));
+    } else if (paged) {
+      int offsetIndex = declaredValuesCount() - 2;
+      queryString.append(" OFFSET :offset LIMIT :limit");
+      parameters.add(new QueryPlan.Parameter("offset", OFFSET_COLUMN, offsetIndex, false));
+      parameters.add(new QueryPlan.Parameter("limit", LIMIT_COLUMN, offsetIndex + 1, false));
+    }
+    return queryString.toString();
   }
 
-  private Query buildDeleteQuery() {
-    StringBuilder queryBuilder = new StringBuilder();
-    queryBuilder.append(String.format(
+  private String renderDeleteQuery(List<QueryPlan.Parameter> parameters) {
+    return String.format(
         "DELETE FROM %s",
         tableName
-    ));
-    MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-    if (conditions != null && !conditions.isEmpty()) {
-      queryBuilder.append(" WHERE ")
-          .append(conditions.entrySet().stream()
-              .map(
-                  e -> {
-                    if (e.getValue() == null) {
-                      return e.getKey() + " IS NULL ";
-                    }
-                    return e.getKey() + " = :" + e.getKey();
-                  }
-              )
-              .collect(Collectors.joining(" AND ")));
+    ) + renderWhere(parameters);
+  }
+
+  private String renderWhere(List<QueryPlan.Parameter> parameters) {
+    List<String> predicates = new ArrayList<>();
+    int valueIndex = columnsToInsert != null ? columnsToInsert.size() : 0;
+    if (conditions != null) {
       for (var columnToVal : conditions.entrySet()) {
-        addValue(
-            parameterSource,
-            columnToVal.getKey(),
+        String columnName = columnToVal.getKey();
+        predicates.add(columnName + " = :" + columnName);
+        parameters.add(new QueryPlan.Parameter(
+            columnName,
             checkNotNull(columnToVal.getValue().left),
-            columnToVal.getValue().right
-        );
+            valueIndex++,
+            false
+        ));
       }
     }
-    return new Query(queryBuilder.toString(), parameterSource, generateAndReturnId);
+    if (inConditions != null && !inConditions.isEmpty()) {
+      if (inConditions.size() == 1) {
+        String columnName = inConditions.keySet().iterator().next();
+        predicates.add(columnName + " = ANY(:" + columnName + ")");
+      } else {
+        //row-value match against arrays zipped by unnest
+        predicates.add(String.format(
+            "(%s) IN (SELECT * FROM unnest(%s))",
+            String.join(",", inConditions.keySet()),
+            inConditions.keySet().stream()
+                .map(c -> ":" + c)
+                .collect(Collectors.joining(","))
+        ));
+      }
+      for (var columnToVals : inConditions.entrySet()) {
+        parameters.add(new QueryPlan.Parameter(
+            columnToVals.getKey(),
+            checkNotNull(columnToVals.getValue().left),
+            valueIndex++,
+            true
+        ));
+      }
+    }
+    if (!keysetColumns.isEmpty()) {
+      predicates.add(renderKeyComparison(keysetColumns, ">", "last_", valueIndex, parameters));
+      valueIndex += keysetColumns.size();
+    }
+    if (!rangeColumns.isEmpty()) {
+      predicates.add(renderKeyComparison(rangeColumns, ">=", "from_", valueIndex, parameters));
+      valueIndex += rangeColumns.size();
+      predicates.add(renderKeyComparison(rangeColumns, "<=", "to_", valueIndex, parameters));
+    }
+    if (predicates.isEmpty()) {
+      return "";
+    }
+    return " WHERE " + String.join(" AND ", predicates);
   }
 
-  private void addValue(
-      MapSqlParameterSource mapSqlParameterSource,
-      String paramName,
-      QueryColDef queryColDef,
-      @Nullable Object value
+  /**
+   * Renders row-value comparison, so composite keys are matched by their index as well
+   */
+  private static String renderKeyComparison(
+      List<QueryColDef> keyColumns,
+      String operator,
+      String paramPrefix,
+      int firstValueIndex,
+      List<QueryPlan.Parameter> parameters
   ) {
-    @Nullable Object dbTypeValue = columnValueConverter.toDbTypeValue(
-        value,
-        queryColDef
+    List<String> keyNames = new ArrayList<>(keyColumns.size());
+    List<String> keyParams = new ArrayList<>(keyColumns.size());
+    int valueIndex = firstValueIndex;
+    for (QueryColDef keyColumn : keyColumns) {
+      String paramName = paramPrefix + keyColumn.columnName;
+      keyNames.add(keyColumn.columnName);
+      keyParams.add(":" + paramName);
+      parameters.add(new QueryPlan.Parameter(paramName, keyColumn, valueIndex++, false));
+    }
+    if (keyColumns.size() == 1) {
+      return keyNames.get(0) + " " + operator + " " + keyParams.get(0);
+    }
+    return "(" + String.join(",", keyNames) + ") " + operator
+        + " (" + String.join(",", keyParams) + ")";
+  }
+
+  private int declaredValuesCount() {
+    return (columnsToInsert != null ? columnsToInsert.size() : 0)
+        + (conditions != null ? conditions.size() : 0)
+        + (inConditions != null ? inConditions.size() : 0)
+        + keysetColumns.size()
+        + rangeColumns.size() * 2
+        + 2; //offset and limit
+  }
+
+  private Object[] declaredValues() {
+    Object[] values = new Object[declaredValuesCount()];
+    int valueIndex = 0;
+    if (columnsToInsert != null) {
+      for (Pair<QueryColDef, Object> columnToVal : columnsToInsert.values()) {
+        values[valueIndex++] = columnToVal.right;
+      }
+    }
+    if (conditions != null) {
+      for (Pair<QueryColDef, Object> columnToVal : conditions.values()) {
+        values[valueIndex++] = columnToVal.right;
+      }
+    }
+    if (inConditions != null) {
+      for (Pair<QueryColDef, List<?>> columnToVals : inConditions.values()) {
+        values[valueIndex++] = columnToVals.right;
+      }
+    }
+    values[valueIndex++] = offset;
+    values[valueIndex] = limit;
+    return values;
+  }
+
+  private boolean isInsertion() {
+    return queryType == QueryType.INSERT || queryType == QueryType.UPSERT;
+  }
+
+  private List<String> idColumnNames() {
+    return idColumns.stream()
+        .map(c -> checkNotNull(c.columnName))
+        .collect(Collectors.toList());
+  }
+
+  @Nullable
+  private QueryColDef findReturnedIdColumn() {
+    if (!generateAndReturnId) {
+      return null;
+    }
+    QueryColDef generatedIdColumn = findGeneratedIdColumn();
+    checkState(
+        generatedIdColumn != null,
+        "generateAndReturnId requires a generated id column"
+    );
+    return generatedIdColumn;
+  }
+
+  private static String renderNextval(QueryColDef generatedIdColumn) {
+    return String.format(
+        "nextval('%s')", //db dialect dependant!
+        checkNotNull(checkNotNull(generatedIdColumn.idMetadata).sequenceName)
     );
-    mapSqlParameterSource.addValue(paramName, dbTypeValue);
   }
 
   @Nullable
@@ -11,14 +11,27 @@ public class QueryColDef {
   public final IdMetadata idMetadata;
   @Nullable
   public final EnumMetadata enumMetadata;
+  //resolved codec of column, values are converted by metadata when it's absent
+  @Nullable
+  public final ColumnCodec<?> codec;
 
   public QueryColDef(
       String columnName,
       @Nullable IdMetadata idMetadata,
       @Nullable EnumMetadata enumMetadata
+  ) {
+    this(columnName, idMetadata, enumMetadata, null);
+  }
+
+  public QueryColDef(
+      String columnName,
+      @Nullable IdMetadata idMetadata,
+      @Nullable EnumMetadata enumMetadata,
+      @Nullable ColumnCodec<?> codec
   ) {
     this.columnName = columnName;
     this.idMetadata = idMetadata;
     this.enumMetadata = enumMetadata;
+    this.codec = codec;
   }
 }
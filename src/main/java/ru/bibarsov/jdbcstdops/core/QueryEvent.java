@@ -0,0 +1,101 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of an executed statement. Disabled by default, enabled by
+ * {@code jfr/jdbc-std-ops.jfc} settings or {@code Recording.enable(QueryEvent.NAME)}.
+ * <p>
+ * Event is committed when statement is finished, durations of its phases are in fields.
+ */
+@Name(QueryEvent.NAME)
+@Label("Standard Operation")
+@Category({"jdbc-std-ops"})
+@Description("Statement executed by StandardOperations")
+@Enabled(false)
+@StackTrace(false)
+@ParametersAreNonnullByDefault
+public class QueryEvent extends Event {
+
+  public static final String NAME = "ru.bibarsov.jdbcstdops.Query";
+
+  private static final EventType EVENT_TYPE = EventType.getEventType(QueryEvent.class);
+
+  @Label("Entity Class")
+  @Nullable
+  Class<?> entityClass;
+
+  @Label("Operation Type")
+  @Nullable
+  String operationType;
+
+  @Label("Table Name")
+  @Nullable
+  String tableName;
+
+  @Label("SQL")
+  @Nullable
+  String sqlQuery;
+
+  @Label("Row Count")
+  int rowCount;
+
+  @Label("Bound Bytes")
+  @DataAmount
+  long boundBytes;
+
+  @Label("Build Duration")
+  @Timespan
+  long buildNanos;
+
+  @Label("Execute Duration")
+  @Timespan
+  long executeNanos;
+
+  @Label("Map Duration")
+  @Timespan
+  long mapNanos;
+
+  @Label("Total Duration")
+  @Timespan
+  long totalNanos;
+
+  /**
+   * @return true if event is enabled in any running recording
+   */
+  static boolean isRecorded() {
+    return EVENT_TYPE.isEnabled();
+  }
+
+  /**
+   * Commits event if it's enabled in any running recording, otherwise does nothing
+   */
+  static void emit(Class<?> entityClass, QueryExecution execution) {
+    QueryEvent event = new QueryEvent();
+    if (!event.isEnabled()) {
+      return;
+    }
+    event.entityClass = entityClass;
+    event.operationType = execution.operationType.name();
+    event.tableName = execution.tableName;
+    event.sqlQuery = execution.sqlQuery;
+    event.rowCount = execution.rowCount;
+    event.boundBytes = execution.boundBytes;
+    event.buildNanos = execution.buildNanos;
+    event.executeNanos = execution.executeNanos;
+    event.mapNanos = execution.mapNanos;
+    event.totalNanos = execution.totalNanos();
+    event.commit();
+  }
+}
@@ -0,0 +1,105 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.util.Collection;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import ru.bibarsov.jdbcstdops.value.OperationType;
+
+/**
+ * Successfully executed statement, passed to {@link QueryListener}
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public class QueryExecution {
+
+  public final OperationType operationType;
+  public final String tableName;
+  public final String sqlQuery;
+  //java values of a single-row statement, null for batches; not copied, must not be modified
+  @Nullable
+  public final Object[] values;
+  //rows affected, returned or copied
+  public final int rowCount;
+  //estimated size of bound values
+  public final long boundBytes;
+  //preparing of values to bind, e.g. reading entity fields
+  public final long buildNanos;
+  //statement execution till results are available
+  public final long executeNanos;
+  //reading and mapping of results, for streams includes time spent by consumer
+  public final long mapNanos;
+
+  public QueryExecution(
+      OperationType operationType,
+      String tableName,
+      String sqlQuery,
+      @Nullable Object[] values,
+      int rowCount,
+      long boundBytes,
+      long buildNanos,
+      long executeNanos,
+      long mapNanos
+  ) {
+    this.operationType = operationType;
+    this.tableName = tableName;
+    this.sqlQuery = sqlQuery;
+    this.values = values;
+    this.rowCount = rowCount;
+    this.boundBytes = boundBytes;
+    this.buildNanos = buildNanos;
+    this.executeNanos = executeNanos;
+    this.mapNanos = mapNanos;
+  }
+
+  public long totalNanos() {
+    return buildNanos + executeNanos + mapNanos;
+  }
+
+  /**
+   * @return rough size of values in wire format, strings are counted as one byte per char
+   */
+  public static long estimateBytes(Object[] values) {
+    long bytes = 0;
+    for (Object value : values) {
+      bytes += estimateBytes(value);
+    }
+    return bytes;
+  }
+
+  private static long estimateBytes(@Nullable Object value) {
+    if (value == null) {
+      return 0;
+    }
+    if (value instanceof CharSequence) {
+      return ((CharSequence) value).length();
+    }
+    if (value instanceof byte[]) {
+      return ((byte[]) value).length;
+    }
+    if (value instanceof Collection<?>) {
+      long bytes = 0;
+      for (Object element : (Collection<?>) value) {
+        bytes += estimateBytes(element);
+      }
+      return bytes;
+    }
+    if (value instanceof Integer || value instanceof Short || value instanceof Float) {
+      return 4;
+    }
+    return 8;
+  }
+
+  @Override
+  public String toString() {
+    return "QueryExecution{" +
+        "operationType=" + operationType +
+        ", tableName='" + tableName + '\'' +
+        ", rowCount=" + rowCount +
+        ", boundBytes=" + boundBytes +
+        ", buildNanos=" + buildNanos +
+        ", executeNanos=" + executeNanos +
+        ", mapNanos=" + mapNanos +
+        '}';
+  }
+}
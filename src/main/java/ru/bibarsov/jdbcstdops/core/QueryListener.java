@@ -0,0 +1,27 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.util.List;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Receives every statement executed by StandardOperations, on the calling thread, so
+ * implementations must be cheap and thread-safe
+ */
+@FunctionalInterface
+@ParametersAreNonnullByDefault
+public interface QueryListener {
+
+  QueryListener NOOP = execution -> {
+  };
+
+  void onQuery(QueryExecution execution);
+
+  static QueryListener composite(QueryListener... listeners) {
+    List<QueryListener> copy = List.of(listeners);
+    return execution -> {
+      for (QueryListener listener : copy) {
+        listener.onQuery(execution);
+      }
+    };
+  }
+}
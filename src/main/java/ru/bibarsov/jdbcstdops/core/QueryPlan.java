@@ -0,0 +1,116 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+
+/**
+ * Query text rendered once from entity metadata plus ordered parameter slots, so running
+ * the query only requires binding of values
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public class QueryPlan {
+
+  public final String sqlQuery;
+  //the same query with '?' placeholders, slot i is bound to parameter index i + 1
+  public final String positionalSqlQuery;
+  public final boolean hasReturningStatement;
+  //slots in order of appearance in query text, the same value may be bound to several slots
+  public final List<Parameter> parameters;
+
+  private final ColumnValueConverter columnValueConverter;
+  //converters of slots, resolved once
+  private final DbTypeConverter[] converters;
+
+  public QueryPlan(
+      String sqlQuery,
+      List<Parameter> parameters,
+      boolean hasReturningStatement,
+      ColumnValueConverter columnValueConverter
+  ) {
+    this.sqlQuery = sqlQuery;
+    this.positionalSqlQuery = NamedParameterUtils.parseSqlStatementIntoString(sqlQuery);
+    this.parameters = Collections.unmodifiableList(parameters);
+    this.hasReturningStatement = hasReturningStatement;
+    this.columnValueConverter = columnValueConverter;
+    this.converters = new DbTypeConverter[parameters.size()];
+    for (int i = 0; i < parameters.size(); i++) {
+      converters[i] = columnValueConverter.dbTypeConverter(parameters.get(i).column);
+    }
+  }
+
+  /**
+   * @param values java values indexed by {@link Parameter#valueIndex}
+   */
+  public MapSqlParameterSource bind(Object[] values) {
+    MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+    for (int i = 0; i < converters.length; i++) {
+      Parameter parameter = parameters.get(i);
+      parameterSource.addValue(parameter.name, toDbTypeValue(i, values[parameter.valueIndex]));
+    }
+    return parameterSource;
+  }
+
+  /**
+   * Binds values straight into statement prepared from {@link #positionalSqlQuery}, without
+   * intermediate parameter maps
+   *
+   * @param values java values indexed by {@link Parameter#valueIndex}
+   */
+  public void setValues(PreparedStatement ps, Object[] values) throws SQLException {
+    for (int i = 0; i < converters.length; i++) {
+      StatementCreatorUtils.setParameterValue(
+          ps,
+          i + 1,
+          SqlTypeValue.TYPE_UNKNOWN,
+          toDbTypeValue(i, values[parameters.get(i).valueIndex])
+      );
+    }
+  }
+
+  @Nullable
+  private Object toDbTypeValue(int slot, @Nullable Object value) {
+    Parameter parameter = parameters.get(slot);
+    return parameter.isArray
+        ? columnValueConverter.toDbTypeArray((List<?>) value, parameter.column)
+        : converters[slot].toDbTypeValue(value);
+  }
+
+  @Override
+  public String toString() {
+    return "QueryPlan{" +
+        "sqlQuery='" + sqlQuery + '\'' +
+        ", parameters=" + parameters.size() +
+        ", hasReturningStatement=" + hasReturningStatement +
+        '}';
+  }
+
+  @Immutable
+  @ParametersAreNonnullByDefault
+  public static class Parameter {
+
+    public final String name;
+    public final QueryColDef column;
+    //position of value in declaration order: columns to insert, conditions, in-conditions,
+    //keyset values, range bounds, offset and limit
+    public final int valueIndex;
+    //whole list of values is bound as one array parameter
+    public final boolean isArray;
+
+    public Parameter(String name, QueryColDef column, int valueIndex, boolean isArray) {
+      this.name = name;
+      this.column = column;
+      this.valueIndex = valueIndex;
+      this.isArray = isArray;
+    }
+  }
+}
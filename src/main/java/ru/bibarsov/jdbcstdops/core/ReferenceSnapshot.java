@@ -0,0 +1,239 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * All rows of a small table held in memory, indexed by id and optionally by chosen columns.
+ * Reads don't touch database, refresh builds a new immutable index and swaps it atomically.
+ * <p>
+ * Created by {@link StandardOperations#createSnapshot(String...)}, kept up to date by
+ * {@link #listen(DataSource, String, Function)} or explicit refresh calls.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class ReferenceSnapshot<ID, E> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceSnapshot.class);
+
+  private final StandardOperations<E, ID> stdOps;
+  private final Function<E, ID> idExtractor;
+  //column name -> field value of entity
+  private final Map<String, Function<E, Object>> indexedColumns;
+
+  private volatile Index<ID, E> index;
+
+  public ReferenceSnapshot(
+      StandardOperations<E, ID> stdOps,
+      Function<E, ID> idExtractor,
+      Map<String, Function<E, Object>> indexedColumns
+  ) {
+    this.stdOps = stdOps;
+    this.idExtractor = idExtractor;
+    this.indexedColumns = Collections.unmodifiableMap(new LinkedHashMap<>(indexedColumns));
+    this.index = buildIndex(Map.of());
+  }
+
+  @Nullable
+  public E get(ID id) {
+    return index.byId.get(id);
+  }
+
+  public Collection<E> getAll() {
+    return index.byId.values();
+  }
+
+  /**
+   * @return entities with given value of indexed column, in no particular order
+   */
+  public List<E> findBy(String columnName, Object value) {
+    Map<Object, List<E>> columnIndex = index.byColumn.get(columnName);
+    if (columnIndex == null) {
+      throw new IllegalArgumentException("Column " + columnName + " is not indexed");
+    }
+    return columnIndex.getOrDefault(value, List.of());
+  }
+
+  public int size() {
+    return index.byId.size();
+  }
+
+  /**
+   * Reloads the whole table
+   */
+  public synchronized void refreshAll() {
+    Map<ID, E> byId = new HashMap<>();
+    for (E entity : stdOps.getAll()) {
+      byId.put(idExtractor.apply(entity), entity);
+    }
+    this.index = buildIndex(byId);
+  }
+
+  /**
+   * Reloads rows of given ids, ids without rows are removed. Only buckets of column indexes
+   * holding old or new values of these rows are copied, the rest are shared with the previous
+   * index.
+   */
+  public synchronized void refresh(Collection<ID> ids) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    Map<ID, E> found = stdOps.findAllByIdAsMap(ids);
+    Index<ID, E> current = index;
+    Map<ID, E> byId = new HashMap<>(current.byId);
+    List<E> removed = new ArrayList<>();
+    List<E> added = new ArrayList<>();
+    for (ID id : ids) {
+      E entity = found.get(id);
+      E previous = entity != null ? byId.put(id, entity) : byId.remove(id);
+      if (previous != null) {
+        removed.add(previous);
+      }
+      if (entity != null) {
+        added.add(entity);
+      }
+    }
+    Map<String, Map<Object, List<E>>> byColumn = new HashMap<>();
+    indexedColumns.forEach((columnName, valueExtractor) -> byColumn.put(
+        columnName,
+        updateColumnIndex(current.byColumn.get(columnName), valueExtractor, removed, added)
+    ));
+    this.index = new Index<>(
+        Collections.unmodifiableMap(byId),
+        Collections.unmodifiableMap(byColumn)
+    );
+  }
+
+  /**
+   * Refreshes snapshot on notifications of {@code channel}. Payload is parsed as id of changed
+   * row, empty or unparseable payload reloads the whole table, as does every (re)connect.
+   * <p>
+   * Expected trigger, for example:
+   * <pre>
+   * CREATE FUNCTION notify_currency() RETURNS trigger AS $$
+   * BEGIN
+   *   PERFORM pg_notify('currency_changed', COALESCE(NEW.id, OLD.id)::text);
+   *   RETURN NULL;
+   * END $$ LANGUAGE plpgsql;
+   * CREATE TRIGGER currency_changed AFTER INSERT OR UPDATE OR DELETE ON currency
+   *   FOR EACH ROW EXECUTE FUNCTION notify_currency();
+   * </pre>
+   *
+   * @return started listener, holding one connection of {@code dataSource} until closed
+   */
+  public PgNotificationListener listen(
+      DataSource dataSource,
+      String channel,
+      Function<String, ID> payloadParser
+  ) {
+    return new PgNotificationListener(dataSource, channel, new PgNotificationListener.Handler() {
+      @Override
+      public void onListenStarted() {
+        refreshAll();
+      }
+
+      @Override
+      public void onNotifications(List<String> payloads) {
+        Set<ID> ids = new LinkedHashSet<>();
+        for (String payload : payloads) {
+          ID id = parseId(payloadParser, payload);
+          if (id == null) {
+            refreshAll();
+            return;
+          }
+          ids.add(id);
+        }
+        refresh(ids);
+      }
+    }).start();
+  }
+
+  @Nullable
+  private static <ID> ID parseId(Function<String, ID> payloadParser, String payload) {
+    if (payload.isEmpty()) {
+      return null;
+    }
+    try {
+      return payloadParser.apply(payload);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Can't parse notification payload '{}', reloading all rows", payload, e);
+      return null;
+    }
+  }
+
+  private Index<ID, E> buildIndex(Map<ID, E> byId) {
+    Map<String, Map<Object, List<E>>> byColumn = new HashMap<>();
+    indexedColumns.forEach((columnName, valueExtractor) -> {
+      Map<Object, List<E>> columnIndex = new HashMap<>();
+      for (E entity : byId.values()) {
+        Object value = valueExtractor.apply(entity);
+        if (value != null) {
+          columnIndex.computeIfAbsent(value, v -> new ArrayList<>()).add(entity);
+        }
+      }
+      columnIndex.replaceAll((value, entities) -> Collections.unmodifiableList(entities));
+      byColumn.put(columnName, Collections.unmodifiableMap(columnIndex));
+    });
+    return new Index<>(Collections.unmodifiableMap(byId), Collections.unmodifiableMap(byColumn));
+  }
+
+  private static <E> Map<Object, List<E>> updateColumnIndex(
+      Map<Object, List<E>> columnIndex,
+      Function<E, Object> valueExtractor,
+      List<E> removed,
+      List<E> added
+  ) {
+    //copies of buckets touched by refresh
+    Map<Object, List<E>> changed = new HashMap<>();
+    Function<Object, List<E>> copyBucket =
+        value -> new ArrayList<>(columnIndex.getOrDefault(value, List.of()));
+    for (E entity : removed) {
+      Object value = valueExtractor.apply(entity);
+      if (value != null) {
+        changed.computeIfAbsent(value, copyBucket).removeIf(e -> e == entity);
+      }
+    }
+    for (E entity : added) {
+      Object value = valueExtractor.apply(entity);
+      if (value != null) {
+        changed.computeIfAbsent(value, copyBucket).add(entity);
+      }
+    }
+    Map<Object, List<E>> result = new HashMap<>(columnIndex);
+    changed.forEach((value, entities) -> {
+      if (entities.isEmpty()) {
+        result.remove(value);
+      } else {
+        result.put(value, Collections.unmodifiableList(entities));
+      }
+    });
+    return Collections.unmodifiableMap(result);
+  }
+
+  @Immutable
+  private static class Index<ID, E> {
+
+    private final Map<ID, E> byId;
+    private final Map<String, Map<Object, List<E>>> byColumn;
+
+    private Index(Map<ID, E> byId, Map<String, Map<Object, List<E>>> byColumn) {
+      this.byId = byId;
+      this.byColumn = byColumn;
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkArgument;
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkNotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.sql.DataSource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Rows of a query read through server-side cursor, {@code fetchSize} rows at a time. Pgjdbc opens
+ * cursor only when autocommit is off, so outside of spring transaction autocommit is switched off
+ * for the lifetime of the cursor and restored on close.
+ * <p>
+ * Holds connection until closed or fully read.
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public class ResultSetCursor<T> extends Spliterators.AbstractSpliterator<T>
+    implements AutoCloseable {
+
+  private final JdbcTemplate jdbcTemplate;
+  private final DataSource dataSource;
+  private final String sqlQuery;
+  private final RowMapper<T> rowMapper;
+  private final Connection connection;
+  private final boolean restoreAutoCommit;
+  private final PreparedStatement ps;
+  private final ResultSet rs;
+
+  private int rowNum = 0;
+  private boolean closed = false;
+
+  public ResultSetCursor(
+      JdbcTemplate jdbcTemplate,
+      QueryPlan plan,
+      Object[] values,
+      int fetchSize,
+      RowMapper<T> rowMapper
+  ) {
+    super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+    checkArgument(fetchSize > 0);
+    this.jdbcTemplate = jdbcTemplate;
+    this.dataSource = checkNotNull(jdbcTemplate.getDataSource(), "No DataSource is set");
+    this.sqlQuery = plan.positionalSqlQuery;
+    this.rowMapper = rowMapper;
+    this.connection = DataSourceUtils.getConnection(dataSource);
+    boolean autoCommit = false;
+    PreparedStatement ps = null;
+    try {
+      autoCommit = connection.getAutoCommit();
+      if (autoCommit) {
+        connection.setAutoCommit(false);
+      }
+      ps = connection.prepareStatement(
+          sqlQuery,
+          ResultSet.TYPE_FORWARD_ONLY,
+          ResultSet.CONCUR_READ_ONLY
+      );
+      ps.setFetchSize(fetchSize);
+      plan.setValues(ps, values);
+      this.rs = ps.executeQuery();
+    } catch (SQLException e) {
+      JdbcUtils.closeStatement(ps);
+      try {
+        if (autoCommit) {
+          connection.rollback();
+          connection.setAutoCommit(true);
+        }
+      } catch (SQLException ignored) {
+        //the original exception is more relevant
+      } finally {
+        DataSourceUtils.releaseConnection(connection, dataSource);
+      }
+      throw translate(e);
+    }
+    this.ps = ps;
+    this.restoreAutoCommit = autoCommit;
+  }
+
+  /**
+   * @return stream closing this cursor on {@link Stream#close()}
+   */
+  public Stream<T> stream() {
+    return StreamSupport.stream(this, false).onClose(this::close);
+  }
+
+  /**
+   * @return number of rows read so far
+   */
+  public int getRowCount() {
+    return rowNum;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (closed) {
+      return false;
+    }
+    try {
+      if (!rs.next()) {
+        close();
+        return false;
+      }
+      action.accept(rowMapper.mapRow(rs, rowNum++));
+      return true;
+    } catch (SQLException e) {
+      close();
+      throw translate(e);
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    JdbcUtils.closeResultSet(rs);
+    JdbcUtils.closeStatement(ps);
+    try {
+      if (restoreAutoCommit) {
+        //query is read-only, so nothing is lost on rollback
+        connection.rollback();
+        connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      throw translate(e);
+    } finally {
+      DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+  }
+
+  private DataAccessException translate(SQLException e) {
+    DataAccessException translated = jdbcTemplate.getExceptionTranslator()
+        .translate("ResultSetCursor", sqlQuery, e);
+    return translated != null
+        ? translated
+        : new UncategorizedSQLException("ResultSetCursor", sqlQuery, e);
+  }
+}
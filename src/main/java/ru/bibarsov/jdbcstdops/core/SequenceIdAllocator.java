@@ -0,0 +1,92 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkArgument;
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkState;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Pre-allocates sequence values in blocks, so db-side ids are known before INSERT.
+ * Values are handed out from memory without locking, database is queried only when
+ * the current block is exhausted.
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class SequenceIdAllocator {
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final String blockQuery;
+  private final int allocationSize;
+  private final Class<?> valueType;
+  private final Object refillLock = new Object();
+
+  private volatile Block current = new Block(new long[0]);
+
+  public SequenceIdAllocator(
+      NamedParameterJdbcTemplate jdbcTemplate,
+      String sequenceName,
+      int allocationSize,
+      Class<?> valueType
+  ) {
+    checkArgument(allocationSize > 0);
+    checkArgument(valueType.equals(Long.class) || valueType.equals(Integer.class));
+    this.jdbcTemplate = jdbcTemplate;
+    this.blockQuery = String.format(
+        "SELECT nextval('%s') FROM generate_series(1, :allocationSize)", //db dialect dependant!
+        sequenceName
+    );
+    this.allocationSize = allocationSize;
+    this.valueType = valueType;
+  }
+
+  public Object nextId() {
+    while (true) {
+      Block block = current;
+      int index = block.cursor.getAndIncrement();
+      if (index < block.values.length) {
+        return toValueType(block.values[index]);
+      }
+      synchronized (refillLock) {
+        if (current == block) { //nobody has refilled it yet
+          current = fetchBlock();
+        }
+      }
+    }
+  }
+
+  private Block fetchBlock() {
+    List<Long> fetched = jdbcTemplate.queryForList(
+        blockQuery,
+        new MapSqlParameterSource("allocationSize", allocationSize),
+        Long.class
+    );
+    checkState(fetched.size() == allocationSize, "Sequence returned unexpected number of values");
+    long[] values = new long[fetched.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = fetched.get(i);
+    }
+    return new Block(values);
+  }
+
+  private Object toValueType(long value) {
+    if (valueType.equals(Integer.class)) {
+      return Math.toIntExact(value);
+    }
+    return value;
+  }
+
+  private static class Block {
+
+    private final long[] values;
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    private Block(long[] values) {
+      this.values = values;
+    }
+  }
+}
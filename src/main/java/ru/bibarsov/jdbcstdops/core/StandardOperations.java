@@ -6,22 +6,42 @@ import static ru.bibarsov.jdbcstdops.util.Preconditions.checkState;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.bibarsov.jdbcstdops.annotation.Column;
 import ru.bibarsov.jdbcstdops.annotation.DbSideId;
 import ru.bibarsov.jdbcstdops.annotation.Enumerated;
@@ -30,270 +50,1266 @@ import ru.bibarsov.jdbcstdops.annotation.Table;
 import ru.bibarsov.jdbcstdops.util.Pair;
 import ru.bibarsov.jdbcstdops.util.ReflectionTools;
 import ru.bibarsov.jdbcstdops.value.DeferredId;
+import ru.bibarsov.jdbcstdops.value.IdRange;
+import ru.bibarsov.jdbcstdops.value.KeysetPage;
 import ru.bibarsov.jdbcstdops.value.OperationType;
 import ru.bibarsov.jdbcstdops.value.QueryType;
 
 @ParametersAreNonnullByDefault
 public class StandardOperations<E, ID> {
-  private static final Logger LOGGER = LoggerFactory.getLogger(StandardOperations.class);
+  public static final int DEFAULT_BATCH_SIZE = 500;
+  public static final int DEFAULT_FETCH_SIZE = 1000;
+  //rows decoded by one task of forEachPipelined
+  private static final int PIPELINE_CHUNK_SIZE = 256;
+  //postgres protocol limit for bind parameters of a single statement
+  private static final int MAX_BIND_PARAMETERS = 65535;
+  private static final ResultSetExtractor<List<Object>> GENERATED_IDS_EXTRACTOR = rs -> {
+    List<Object> generatedIds = new ArrayList<>();
+    while (rs.next()) {
+      generatedIds.add(rs.getObject(1)); //getting generated id value
+    }
+    return generatedIds;
+  };
 
-  private final Map<OperationType, QueryFunction> queriesLambdas;
+  private final Class<E> entityClazz;
   private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final String tableName;
   private final List<ColumnDefinition> columnDefinitions;
   private final ColumnDefinition idColumn;
+  //index of id in columnDefinitions, i.e. field index for entityMapper
+  private final int idFieldIndex;
   private final List<QueryColDef> idColumns;
   private final List<String> selectColumns;
+  //the same columns as selectColumns, with metadata for value conversion
+  private final List<QueryColDef> insertColumns;
+  //1-based index of the first select column of every column definition
+  private final int[] columnIndexes;
+  //select columns are checked against ResultSetMetaData once, on the first mapped result
+  private volatile boolean resultSetValidated = false;
+  @Nullable
+  private final SequenceIdAllocator idAllocator;
+  private final EntityMapper<E> entityMapper;
+  //Long, Integer or Short when id range can be split by min and max values, null otherwise
+  @Nullable
+  private final Class<?> numericIdClass;
+
+  //query texts are rendered once, every call only binds values
+  private final QueryPlan insertPlan;
+  private final QueryPlan upsertPlan;
+  @Nullable
+  private final QueryPlan insertReturningPlan;
+  @Nullable
+  private final QueryPlan upsertReturningPlan;
+  private final QueryPlan findOnePlan;
+  private final QueryPlan findAllByIdPlan;
+  private final QueryPlan getAllPlan;
+  //ordered by id, serves offset paging and the first keyset page
+  private final QueryPlan getAllPagedPlan;
+  private final QueryPlan nextKeysetPagePlan;
+  private final QueryPlan idRangePlan;
+  private final QueryPlan deletePlan;
+  //multi-row INSERT and UPSERT with generated ids by number of rows
+  private final Map<Integer, QueryPlan> generatedInsertPlans = new ConcurrentHashMap<>();
+  private final Map<Integer, QueryPlan> generatedUpsertPlans = new ConcurrentHashMap<>();
 
   private final ColumnValueConverter columnValueConverter = new ColumnValueConverter();
+  private final QueryListener queryListener;
+  @Nullable
+  private final EntityCache<ID, E> cache;
+  @Nullable
+  private final OffHeapEntityStore<ID, E> offHeapStore;
 
   public StandardOperations(Class<E> entityClazz, NamedParameterJdbcTemplate jdbcTemplate) {
-    checkArgument(entityClazz.getConstructors().length == 1);
-    checkArgument(entityClazz.isAnnotationPresent(Table.class));
-    String tableName = entityClazz.getAnnotation(Table.class).name();
+    this(entityClazz, jdbcTemplate, new StandardOperationsConfig());
+  }
+
+  /**
+   * @param codecRegistry codecs of columns, resolved once by field types of entity
+   */
+  public StandardOperations(
+      Class<E> entityClazz,
+      NamedParameterJdbcTemplate jdbcTemplate,
+      ColumnCodecRegistry codecRegistry
+  ) {
+    this(
+        entityClazz,
+        jdbcTemplate,
+        new StandardOperationsConfig().setCodecRegistry(codecRegistry)
+    );
+  }
 
+  public StandardOperations(
+      Class<E> entityClazz,
+      NamedParameterJdbcTemplate jdbcTemplate,
+      StandardOperationsConfig config
+  ) {
+    //metadata of generated mapper replaces reflective reading of entity class
+    GeneratedEntityMapper<E> generatedMapper = GeneratedEntityMapper.find(entityClazz);
+    if (generatedMapper != null) {
+      this.tableName = generatedMapper.tableName();
+      this.columnDefinitions = resolveCodecs(
+          generatedMapper.columnDefinitions(),
+          config.getCodecRegistry()
+      );
+      this.selectColumns = generatedMapper.columnNames();
+      this.entityMapper = generatedMapper;
+    } else {
+      checkArgument(entityClazz.getConstructors().length == 1);
+      checkArgument(entityClazz.isAnnotationPresent(Table.class));
+      this.tableName = entityClazz.getAnnotation(Table.class).name();
+      this.columnDefinitions = getColumnsDefinitions(entityClazz, config.getCodecRegistry());
+      this.selectColumns = Collections.unmodifiableList(flattenColumnNames(columnDefinitions));
+      EntityMapper<E> hiddenClassMapper =
+          EntityMapperClassWriter.define(entityClazz, columnDefinitions);
+      this.entityMapper = hiddenClassMapper != null
+          ? hiddenClassMapper
+          : new MethodHandleEntityMapper<>(entityClazz, columnDefinitions);
+    }
+    this.entityClazz = entityClazz;
     this.jdbcTemplate = jdbcTemplate;
-    this.columnDefinitions = getColumnsDefinitions(entityClazz);
     this.idColumn = getIdColumnName(columnDefinitions);
+    this.idFieldIndex = columnDefinitions.indexOf(idColumn);
     this.idColumns = Collections.unmodifiableList(buildIdColumns(idColumn));
-    this.selectColumns = Collections.unmodifiableList(flattenColumnNames(columnDefinitions));
-    this.queriesLambdas = prepareQueriesLambdas(entityClazz, tableName);
+    this.insertColumns = Collections.unmodifiableList(flattenColumns(columnDefinitions));
+    this.columnIndexes = buildColumnIndexes(columnDefinitions);
+    this.idAllocator = createIdAllocator(idColumn, jdbcTemplate);
+    this.numericIdClass = getNumericIdClass(idColumn);
+    this.queryListener = config.getQueryListener();
+    this.cache = config.getCacheMaximumSize() > 0
+        ? new EntityCache<>(config.getCacheMaximumSize(), config.getCacheTtl())
+        : null;
+    this.offHeapStore = config.getOffHeapCacheMaximumBytes() > 0
+        ? new OffHeapEntityStore<>(
+            new EntityRowFormat<>(columnDefinitions, idFieldIndex, entityMapper),
+            config.getOffHeapCacheMaximumBytes()
+        )
+        : null;
+
+    IdMetadata idMetadata = idColumn.idMetadata;
+    boolean isDbSideGenerated = idMetadata != null && idMetadata.isDbSideGenerated;
+    this.insertPlan = newQueryBuilder(QueryType.INSERT)
+        .setColumnsToInsert(insertColumns)
+        .compile();
+    this.upsertPlan = newQueryBuilder(QueryType.UPSERT)
+        .setColumnsToInsert(insertColumns)
+        .compile();
+    this.insertReturningPlan = isDbSideGenerated
+        ? newQueryBuilder(QueryType.INSERT)
+            .setColumnsToInsert(insertColumns)
+            .setGenerateAndReturnId(true)
+            .compile()
+        : null;
+    this.upsertReturningPlan = isDbSideGenerated
+        ? newQueryBuilder(QueryType.UPSERT)
+            .setColumnsToInsert(insertColumns)
+            .setGenerateAndReturnId(true)
+            .compile()
+        : null;
+    this.findOnePlan = newQueryBuilder(QueryType.SELECT)
+        .setColumnsToSelect(selectColumns)
+        .setConditionColumns(idColumns)
+        .compile();
+    this.findAllByIdPlan = newQueryBuilder(QueryType.SELECT)
+        .setColumnsToSelect(selectColumns)
+        .setInConditionColumns(idColumns)
+        .compile();
+    this.getAllPlan = newQueryBuilder(QueryType.SELECT)
+        .setColumnsToSelect(selectColumns)
+        .compile();
+    this.getAllPagedPlan = newQueryBuilder(QueryType.SELECT)
+        .setColumnsToSelect(selectColumns)
+        .setOrderBy(idColumns)
+        .setPaged(true)
+        .compile();
+    this.nextKeysetPagePlan = newQueryBuilder(QueryType.SELECT)
+        .setColumnsToSelect(selectColumns)
+        .setKeyset(idColumns)
+        .setPaged(true)
+        .compile();
+    this.idRangePlan = newQueryBuilder(QueryType.SELECT)
+        .setColumnsToSelect(selectColumns)
+        .setRange(idColumns)
+        .compile();
+    this.deletePlan = newQueryBuilder(QueryType.DELETE)
+        .setConditionColumns(idColumns)
+        .compile();
   }
 
   public void create(E entity) {
-    QueryFunction queryFunction = queriesLambdas.get(OperationType.CREATE);
-    LinkedHashMap<String, Pair<QueryColDef, Object>> columnsToInsert
-        = generateColumnsToInsert(entity);
-
-  IdMetadata idMetadata = idColumn.idMetadata;
-  if (idMetadata != null
-    && idMetadata.isDbSideGenerated
-        && hasNoDeferredIdValue(entity)
-    ) {
-      Object idValue = checkNotNull(queryFunction.query(jdbcTemplate, (queryBuilder -> {
-        queryBuilder.setGenerateAndReturnId(true);
-        queryBuilder.setColumnsToInsert(columnsToInsert);
-      })));
-      setDeferredIdValue(entity, idValue);
-    } else {
-      //original entity keeps the same
-      queryFunction.query(
-          jdbcTemplate,
-          queryBuilder -> {
-            queryBuilder.setColumnsToInsert(columnsToInsert);
-          }
-      );
-    }
+    write(OperationType.CREATE, insertPlan, insertReturningPlan, entity);
+    invalidateCached(entity);
   }
 
   public void createOrUpdate(E entity) {
-    QueryFunction queryFunction = queriesLambdas.get(OperationType.CREATE_OR_UPDATE);
-    LinkedHashMap<String, Pair<QueryColDef, Object>> columnsToInsert
-        = generateColumnsToInsert(entity);
-
-  IdMetadata idMetadata = idColumn.idMetadata;
-  if (idMetadata != null
-    && idMetadata.isDbSideGenerated
-        && hasNoDeferredIdValue(entity)
-    ) {
-      Object idValue = checkNotNull(queryFunction.query(jdbcTemplate, (queryBuilder -> {
-        queryBuilder.setGenerateAndReturnId(true);
-        queryBuilder.setColumnsToInsert(columnsToInsert);
-      })));
-      setDeferredIdValue(entity, idValue);
-    } else {
-      //original entity keeps the same
-      queryFunction.query(
-          jdbcTemplate,
-          queryBuilder -> {
-            queryBuilder.setColumnsToInsert(columnsToInsert);
-          }
+    write(OperationType.CREATE_OR_UPDATE, upsertPlan, upsertReturningPlan, entity);
+    invalidateCached(entity);
+  }
+
+  public int[] createAll(Collection<E> entities) {
+    return createAll(entities, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Inserts entities using jdbc batches of at most {@code batchSize} rows
+   *
+   * @return update counts in the same order as passed entities
+   */
+  public int[] createAll(Collection<E> entities, int batchSize) {
+    int[] result = writeAll(OperationType.CREATE, entities, batchSize);
+    entities.forEach(this::invalidateCached);
+    return result;
+  }
+
+  public int[] createOrUpdateAll(Collection<E> entities) {
+    return createOrUpdateAll(entities, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Upserts entities using jdbc batches of at most {@code batchSize} rows
+   *
+   * @return update counts in the same order as passed entities
+   */
+  public int[] createOrUpdateAll(Collection<E> entities, int batchSize) {
+    int[] result = writeAll(OperationType.CREATE_OR_UPDATE, entities, batchSize);
+    entities.forEach(this::invalidateCached);
+    return result;
+  }
+
+  public long copyAll(Iterable<E> entities) {
+    return copyAll(entities.iterator());
+  }
+
+  /**
+   * Loads entities with postgres {@code COPY ... FROM STDIN}, which is much faster than
+   * batched INSERT for large amount of rows. Requires pgjdbc driver, entities with
+   * {@code @DbSideId} must have id value or pre-allocation enabled.
+   *
+   * @return number of copied rows
+   */
+  public long copyAll(Stream<E> entities) {
+    return copyAll(entities.iterator());
+  }
+
+  private long copyAll(Iterator<E> entities) {
+    long startNanos = System.nanoTime();
+    Long copied = jdbcTemplate.getJdbcTemplate().execute(
+        (ConnectionCallback<Long>) connection -> new PgCopyLoader(columnValueConverter).copyIn(
+            connection,
+            tableName,
+            insertColumns,
+            entities,
+            this::generateColumnsToCopy
+        )
+    );
+    long endNanos = System.nanoTime();
+    onQuery(
+        OperationType.COPY,
+        "COPY " + tableName + " FROM STDIN",
+        null,
+        (int) Math.min(Integer.MAX_VALUE, checkNotNull(copied)),
+        0,
+        startNanos,
+        startNanos,
+        endNanos,
+        endNanos
+    );
+    //ids of copied rows aren't tracked
+    invalidateAllCached();
+    return checkNotNull(copied);
+  }
+
+  /**
+   * Reads through cache if it's enabled. Inside spring transaction reads go straight to
+   * the database: the transaction may see its own uncommitted rows or an old snapshot, neither
+   * may be shared with other threads.
+   */
+  @Nullable
+  public E findOne(ID id) {
+    EntityCache<ID, E> cache = this.cache;
+    OffHeapEntityStore<ID, E> offHeapStore = this.offHeapStore;
+    if (cache == null && offHeapStore == null
+        || TransactionSynchronizationManager.isActualTransactionActive()) {
+      return querySingleEntity(
+          OperationType.FIND_ONE,
+          findOnePlan,
+          generateIdValues(id),
+          System.nanoTime()
       );
     }
+    long stamp = 0;
+    if (cache != null) {
+      E cached = cache.get(id);
+      if (cached != null) {
+        return cached;
+      }
+      stamp = cache.stamp(id);
+    }
+    long offHeapStamp = 0;
+    long startNanos = System.nanoTime();
+    if (offHeapStore != null) {
+      E stored = offHeapStore.get(id);
+      if (stored != null) {
+        if (cache != null) {
+          cache.put(id, stored, stamp);
+        }
+        return stored;
+      }
+      offHeapStamp = offHeapStore.stamp(id);
+    }
+    E entity = querySingleEntity(
+        OperationType.FIND_ONE,
+        findOnePlan,
+        generateIdValues(id),
+        startNanos
+    );
+    if (entity != null) {
+      long loadNanos = System.nanoTime() - startNanos;
+      if (offHeapStore != null) {
+        offHeapStore.putLoaded(id, entity, offHeapStamp, loadNanos);
+      }
+      if (cache != null) {
+        cache.putLoaded(id, entity, stamp, loadNanos);
+      }
+    }
+    return entity;
+  }
+
+  /**
+   * @return cache of findOne results or null if it's not enabled by
+   * {@link StandardOperationsConfig#setCache(int, java.time.Duration)}. Must be invalidated
+   * when rows are changed bypassing this instance.
+   */
+  @Nullable
+  public EntityCache<ID, E> getCache() {
+    return cache;
   }
 
+  /**
+   * @return off-heap tier of findOne cache or null if it's not enabled by
+   * {@link StandardOperationsConfig#setOffHeapCache(long)}. Must be invalidated when rows are
+   * changed bypassing this instance.
+   */
   @Nullable
-  public E findOne(ID id) {
-    QueryFunction queryFunction = queriesLambdas.get(OperationType.FIND_ONE);
+  public OffHeapEntityStore<ID, E> getOffHeapStore() {
+    return offHeapStore;
+  }
+
+  /**
+   * Loads all rows into {@link ReferenceSnapshot}, intended for small reference tables
+   *
+   * @param indexedColumns non-composite columns to build secondary indexes on
+   */
+  public ReferenceSnapshot<ID, E> createSnapshot(String... indexedColumns) {
+    Map<String, Function<E, Object>> indexes = new LinkedHashMap<>();
+    for (String columnName : indexedColumns) {
+      int fieldIndex = -1;
+      for (int i = 0; i < columnDefinitions.size(); i++) {
+        ColumnDefinition definition = columnDefinitions.get(i);
+        if (!definition.isComposite() && columnName.equals(definition.columnName)) {
+          fieldIndex = i;
+        }
+      }
+      checkState(fieldIndex >= 0, "No column " + columnName + " in table " + tableName);
+      int indexedFieldIndex = fieldIndex;
+      indexes.put(columnName, entity -> entityMapper.getFieldValue(entity, indexedFieldIndex));
+    }
     @SuppressWarnings("unchecked")
-    E result = (E) queryFunction.query(
-        jdbcTemplate,
-        queryBuilder -> applyIdConditions(queryBuilder, id)
+    ReferenceSnapshot<ID, E> snapshot = new ReferenceSnapshot<>(
+        this,
+        entity -> (ID) extractIdValue(entity),
+        indexes
     );
+    snapshot.refreshAll();
+    return snapshot;
+  }
+
+  public List<E> findAllById(Collection<ID> ids) {
+    return findAllById(ids, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Finds entities by ids, every chunk of at most {@code batchSize} ids is bound as one
+   * array parameter, so query text doesn't depend on the number of ids
+   *
+   * @return found entities in order of passed ids, missing ids are skipped
+   */
+  public List<E> findAllById(Collection<ID> ids, int batchSize) {
+    return new ArrayList<>(findAllByIdAsMap(ids, batchSize).values());
+  }
+
+  public Map<ID, E> findAllByIdAsMap(Collection<ID> ids) {
+    return findAllByIdAsMap(ids, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Same as {@link #findAllById(Collection, int)}, but keyed by id
+   */
+  public Map<ID, E> findAllByIdAsMap(Collection<ID> ids, int batchSize) {
+    checkArgument(batchSize > 0);
+    List<ID> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+    Map<Object, E> found = new HashMap<>();
+    for (int from = 0; from < distinctIds.size(); from += batchSize) {
+      long startNanos = System.nanoTime();
+      List<ID> chunk = distinctIds.subList(from, Math.min(from + batchSize, distinctIds.size()));
+      List<E> entities = queryEntities(
+          OperationType.FIND_ALL_BY_ID,
+          findAllByIdPlan,
+          generateIdValueLists(chunk),
+          startNanos
+      );
+      for (E entity : entities) {
+        found.put(extractIdValue(entity), entity);
+      }
+    }
+    Map<ID, E> result = new LinkedHashMap<>();
+    for (ID id : distinctIds) {
+      E entity = found.get(id);
+      if (entity != null) {
+        result.put(id, entity);
+      }
+    }
     return result;
   }
 
   public List<E> getAll() {
-    QueryFunction queryFunction = queriesLambdas.get(OperationType.GET_ALL);
-    @SuppressWarnings("unchecked")
-    List<E> result = (List<E>) queryFunction.query(jdbcTemplate, (ignored -> {
-    }));
-    return result;
+    return queryEntities(OperationType.GET_ALL, getAllPlan, new Object[0], System.nanoTime());
+  }
+
+  public Stream<E> streamAll() {
+    return streamAll(DEFAULT_FETCH_SIZE);
+  }
+
+  /**
+   * Reads all entities through server-side cursor, at most {@code fetchSize} rows are held in
+   * memory at a time. Returned stream holds connection and must be closed, e.g. with
+   * try-with-resources.
+   */
+  public Stream<E> streamAll(int fetchSize) {
+    return streamCursor(getAllPlan, new Object[0], fetchSize, this::mapCursorRow);
+  }
+
+  public void forEach(Consumer<? super E> consumer) {
+    forEach(consumer, DEFAULT_FETCH_SIZE);
+  }
+
+  /**
+   * Same as {@link #streamAll(int)}, but passes every entity to {@code consumer} and releases
+   * connection when done
+   */
+  public void forEach(Consumer<? super E> consumer, int fetchSize) {
+    try (Stream<E> entities = streamAll(fetchSize)) {
+      entities.forEach(consumer);
+    }
   }
 
+  /**
+   * Rows are ordered by id, so pages are stable between calls.
+   *
+   * @deprecated database reads and discards {@code offset} rows on every call, use
+   * {@link #getFirstPage(int)} and {@link #getPage(Object, int)}
+   */
+  @Deprecated
   public List<E> getAll(int offset, int limit) {
-    QueryFunction queryFunction = queriesLambdas.get(OperationType.GET_ALL);
+    return queryEntities(
+        OperationType.GET_ALL,
+        getAllPagedPlan,
+        new Object[]{offset, limit},
+        System.nanoTime()
+    );
+  }
+
+  /**
+   * Same as {@link #forEach(Consumer)}, but the cursor thread only copies raw column values,
+   * while enum conversion and construction of ids and entities run on {@code mappingExecutor}
+   * in chunks of rows, at most {@code parallelism * 2} chunks at a time.
+   *
+   * @param preserveOrder if false, entities are passed to {@code consumer} right on mapping
+   * threads, in no particular order, so consumer must be thread-safe
+   */
+  public void forEachPipelined(
+      Consumer<? super E> consumer,
+      Executor mappingExecutor,
+      int parallelism,
+      boolean preserveOrder
+  ) {
+    checkArgument(parallelism > 0);
+    Consumer<? super E> mappingConsumer = preserveOrder ? null : consumer;
+    Deque<CompletableFuture<List<E>>> inFlight = new ArrayDeque<>();
+    try (Stream<Object[]> rawRows = streamCursor(
+        getAllPlan,
+        new Object[0],
+        DEFAULT_FETCH_SIZE,
+        this::readRawRow
+    )) {
+      Iterator<Object[]> iterator = rawRows.iterator();
+      while (iterator.hasNext()) {
+        List<Object[]> chunk = new ArrayList<>(PIPELINE_CHUNK_SIZE);
+        while (chunk.size() < PIPELINE_CHUNK_SIZE && iterator.hasNext()) {
+          chunk.add(iterator.next());
+        }
+        if (inFlight.size() == parallelism * 2) {
+          join(checkNotNull(inFlight.poll())).forEach(consumer);
+        }
+        inFlight.add(CompletableFuture.supplyAsync(
+            () -> decodeRows(chunk, mappingConsumer),
+            mappingExecutor
+        ));
+      }
+      while (!inFlight.isEmpty()) {
+        join(checkNotNull(inFlight.poll())).forEach(consumer);
+      }
+    } finally {
+      inFlight.forEach(chunk -> chunk.cancel(false));
+    }
+  }
+
+  /**
+   * Iterates all entities ordered by id, page by page. Next pages are fetched on
+   * {@code executor} while the caller processes the current one, at most
+   * {@code pagesInFlight} pages are buffered. Executor must have a thread available for
+   * the whole iteration; the iterator must be closed if not read till the end.
+   */
+  public PrefetchingPageIterator<E, ID> iterateAll(
+      int pageSize,
+      int pagesInFlight,
+      Executor executor
+  ) {
+    checkArgument(pageSize > 0);
+    return new PrefetchingPageIterator<>(
+        lastId -> getPage(lastId, pageSize),
+        pagesInFlight,
+        executor
+    );
+  }
+
+  /**
+   * Same as {@link #parallelScan(List, Executor, Collector)}, but ranges are computed by
+   * splitting min..max of numeric id into {@code partitions} parts of equal width
+   */
+  public <A, R> R parallelScan(
+      int partitions,
+      Executor executor,
+      Collector<? super E, A, R> collector
+  ) {
+    checkArgument(partitions > 0);
+    return parallelScan(splitIdRange(partitions), executor, collector);
+  }
+
+  /**
+   * Reads every id range with a separate query on its own pooled connection. Ranges are read
+   * concurrently on {@code executor}, each into its own container of {@code collector}, the
+   * containers are combined in order of ranges. Order of entities within a range is not defined.
+   */
+  public <A, R> R parallelScan(
+      List<IdRange<ID>> ranges,
+      Executor executor,
+      Collector<? super E, A, R> collector
+  ) {
+    List<CompletableFuture<A>> partitions = new ArrayList<>(ranges.size());
+    for (IdRange<ID> range : ranges) {
+      partitions.add(CompletableFuture.supplyAsync(() -> scanRange(range, collector), executor));
+    }
+    join(CompletableFuture.allOf(partitions.toArray(new CompletableFuture<?>[0])));
+    A result = collector.supplier().get();
+    for (CompletableFuture<A> partition : partitions) {
+      result = collector.combiner().apply(result, partition.join());
+    }
+    return collector.finisher().apply(result);
+  }
+
+  public KeysetPage<E, ID> getFirstPage(int limit) {
+    return getPage(null, limit);
+  }
+
+  /**
+   * Keyset (seek) pagination: returns at most {@code limit} entities ordered by id, starting
+   * right after {@code lastId}, so every page is a range scan of the primary key index
+   *
+   * @param lastId {@link KeysetPage#lastId} of the previous page, null for the first page
+   */
+  public KeysetPage<E, ID> getPage(@Nullable ID lastId, int limit) {
+    checkArgument(limit > 0 && limit < Integer.MAX_VALUE);
+    //one more row tells whether the next page exists
+    long startNanos = System.nanoTime();
+    List<E> entities;
+    if (lastId == null) {
+      entities = queryEntities(
+          OperationType.GET_ALL,
+          getAllPagedPlan,
+          new Object[]{0, limit + 1},
+          startNanos
+      );
+    } else {
+      Object[] idValues = generateIdValues(lastId);
+      Object[] values = Arrays.copyOf(idValues, idValues.length + 2);
+      values[idValues.length] = 0;
+      values[idValues.length + 1] = limit + 1;
+      entities = queryEntities(OperationType.GET_ALL, nextKeysetPagePlan, values, startNanos);
+    }
+    boolean hasNext = entities.size() > limit;
+    if (hasNext) {
+      entities = entities.subList(0, limit);
+    }
     @SuppressWarnings("unchecked")
-    List<E> result = (List<E>) queryFunction.query(jdbcTemplate, (queryBuilder -> {
-      queryBuilder.setOffset(offset).setLimit(limit);
-    }));
-    return result;
+    ID pageLastId = entities.isEmpty()
+        ? lastId
+        : (ID) extractIdValue(entities.get(entities.size() - 1));
+    return new KeysetPage<>(Collections.unmodifiableList(entities), pageLastId, hasNext);
   }
 
   public void deleteOne(ID id) {
-    QueryFunction queryFunction = queriesLambdas.get(OperationType.DELETE);
-    queryFunction.query(
-        jdbcTemplate,
-        queryBuilder -> applyIdConditions(queryBuilder, id)
-    );
+    long startNanos = System.nanoTime();
+    update(OperationType.DELETE, deletePlan, generateIdValues(id), startNanos);
+    invalidateCachedId(id);
+  }
+
+  public int[] deleteAll(Collection<ID> ids) {
+    return deleteAll(ids, DEFAULT_BATCH_SIZE);
   }
 
   /**
-   * Optimization for queries by providing ready to run lambdas
+   * Deletes entities by ids using jdbc batches of at most {@code batchSize} rows
    *
-   * @param entityClazz entity class
-   * @param tableName   table for entity
-   * @return pre-compiled queries
+   * @return update counts in the same order as passed ids
    */
-  private Map<OperationType, QueryFunction> prepareQueriesLambdas(
-      Class<E> entityClazz,
-      String tableName
+  public int[] deleteAll(Collection<ID> ids, int batchSize) {
+    checkArgument(batchSize > 0);
+    int[] result = new int[ids.size()];
+    List<Object[]> rows = new ArrayList<>(Math.min(batchSize, ids.size()));
+    int from = 0;
+    long startNanos = System.nanoTime();
+    for (ID id : ids) {
+      rows.add(generateIdValues(checkNotNull(id, "Id must not be null")));
+      if (rows.size() == batchSize) {
+        from = flushRows(deletePlan, rows, from, result, startNanos);
+        startNanos = System.nanoTime();
+      }
+    }
+    if (!rows.isEmpty()) {
+      flushRows(deletePlan, rows, from, result, startNanos);
+    }
+    ids.forEach(this::invalidateCachedId);
+    return result;
+  }
+
+  private int flushRows(
+      QueryPlan plan,
+      List<Object[]> rows,
+      int from,
+      int[] result,
+      long startNanos
   ) {
-    Map<OperationType, QueryFunction> result = new HashMap<>();
-    for (OperationType operationType : OperationType.values()) {
-      switch (operationType) {
-        case CREATE:
-          result.put(operationType, (jdbcTemplate, queryBuilderMutator) -> {
-            var queryBuilder = new QueryBuilder(columnValueConverter)
-                .setType(QueryType.INSERT)
-                .setTableName(tableName)
-                .setIdColumns(idColumns);
-            queryBuilderMutator.accept(queryBuilder);
-            Query query = queryBuilder.build();
-            LOGGER.info("Running query: {} with params: {}", query.sqlQuery,
-                query.parameterSource);
-            if (!query.hasReturningStatement) {
-              jdbcTemplate.update(
-                  query.sqlQuery,
-                  query.parameterSource
-              );
-              return null; //passed entity is the same as in database, so return nothing
-            } else {
-              return checkNotNull(jdbcTemplate.query(
-                  query.sqlQuery,
-                  query.parameterSource,
-                  rs -> rs.next() ? rs.getObject(1) : null //getting generated id value
-              ));
-            }
-          });
-          break;
-        case CREATE_OR_UPDATE:
-          result.put(operationType, (jdbcTemplate, queryBuilderMutator) -> {
-            var queryBuilder = new QueryBuilder(columnValueConverter)
-                .setType(QueryType.UPSERT)
-                .setTableName(tableName)
-                .setIdColumns(idColumns);
-            queryBuilderMutator.accept(queryBuilder);
-            Query query = queryBuilder.build();
-            LOGGER.info("Running query: {} with params: {}", query.sqlQuery, query.parameterSource);
-            if (!query.hasReturningStatement) {
-              jdbcTemplate.update(
-                  query.sqlQuery,
-                  query.parameterSource
-              );
-              return null; //passed entity is the same as in database, so return nothing
-            } else {
-              return checkNotNull(jdbcTemplate.query(
-                  query.sqlQuery,
-                  query.parameterSource,
-                  rs -> rs.next() ? rs.getObject(1) : null //getting generated id value
-              ));
-            }
-          });
-          break;
-        case FIND_ONE:
-          result.put(operationType, (jdbcTemplate, queryBuilderMutator) -> {
-            var queryBuilder = new QueryBuilder(columnValueConverter)
-                .setType(QueryType.SELECT)
-                .setTableName(tableName)
-        .setIdColumns(idColumns)
-        .setColumnsToSelect(selectColumns);
-            queryBuilderMutator.accept(queryBuilder);
-            Query query = queryBuilder.build();
-            LOGGER.info("Running query: {} with params: {}", query.sqlQuery, query.parameterSource);
-            return jdbcTemplate.query(
-                query.sqlQuery,
-                query.parameterSource,
-                rs -> {
-                  if (rs.next()) {
-                    E entity = mapResultSetToEntity(columnDefinitions, entityClazz, rs);
-                    checkState(
-                        !rs.next(),
-                        "Query returned more than one result"
-                    );
-                    return entity;
-                  }
-                  return null;
-                }
-            );
-          });
-          break;
-        case GET_ALL:
-          result.put(operationType, (jdbcTemplate, queryBuilderMutator) -> {
-            var queryBuilder = new QueryBuilder(columnValueConverter)
-                .setType(QueryType.SELECT)
-                .setTableName(tableName)
-                .setIdColumns(idColumns)
-                .setColumnsToSelect(selectColumns);
-            queryBuilderMutator.accept(queryBuilder);
-            Query query = queryBuilder.build();
-            LOGGER.info("Running query: {} with params: {}", query.sqlQuery, query.parameterSource);
-            return checkNotNull(jdbcTemplate.query(
-                query.sqlQuery,
-                query.parameterSource,
-                rs -> {
-                  List<E> entities = new ArrayList<>();
-                  while (rs.next()) {
-                    entities.add(mapResultSetToEntity(columnDefinitions, entityClazz, rs));
-                  }
-                  return entities;
-                }
-            ));
-          });
-          break;
-        case DELETE:
-          result.put(operationType, (jdbcTemplate, queryBuilderMutator) -> {
-            var queryBuilder = new QueryBuilder(columnValueConverter)
-                .setType(QueryType.DELETE)
-                .setTableName(tableName)
-                .setIdColumns(idColumns);
-            queryBuilderMutator.accept(queryBuilder);
-            Query query = queryBuilder.build();
-            LOGGER.info("Running query: {} with params: {}", query.sqlQuery, query.parameterSource);
-            jdbcTemplate.update(
-                query.sqlQuery,
-                query.parameterSource
-            );
-            return null; //nothing
-          });
-          break;
-        default:
-          throw new IllegalStateException("Unexpected OperationType: " + operationType);
+    int[] counts = batchUpdate(OperationType.DELETE, plan, rows, startNanos);
+    System.arraycopy(counts, 0, result, from, counts.length);
+    rows.clear();
+    return from + counts.length;
+  }
+
+  private void write(
+      OperationType operationType,
+      QueryPlan plan,
+      @Nullable QueryPlan returningPlan,
+      E entity
+  ) {
+    long startNanos = System.nanoTime();
+    preAllocateId(entity);
+    Object[] values = generateColumnValues(entity);
+    if (returningPlan != null && hasNoDeferredIdValue(entity)) {
+      List<Object> idValues = queryGeneratedIds(operationType, returningPlan, values, startNanos);
+      checkState(idValues.size() == 1, "Query must return exactly one generated id");
+      setDeferredIdValue(entity, idValues.get(0));
+    } else {
+      //original entity keeps the same
+      update(operationType, plan, values, startNanos);
+    }
+  }
+
+  private int[] writeAll(OperationType operationType, Collection<E> entities, int batchSize) {
+    checkArgument(batchSize > 0);
+    QueryPlan plan = operationType == OperationType.CREATE ? insertPlan : upsertPlan;
+    QueryType multiRowQueryType = operationType == OperationType.CREATE
+        ? QueryType.INSERT
+        : QueryType.UPSERT;
+    boolean isDbSideGenerated = insertReturningPlan != null;
+    //every generated row binds all columns except id, so statement must fit protocol limit
+    int generatedBatchSize = Math.max(
+        1,
+        Math.min(batchSize, MAX_BIND_PARAMETERS / Math.max(1, selectColumns.size() - 1))
+    );
+    int[] result = new int[entities.size()];
+    List<Object[]> chunk = new ArrayList<>(Math.min(batchSize, entities.size()));
+    int[] chunkPositions = new int[Math.min(batchSize, entities.size())];
+    List<E> generatedChunk = new ArrayList<>();
+    int[] generatedChunkPositions = new int[generatedBatchSize];
+    int position = 0;
+    long chunkStartNanos = 0;
+    for (E entity : entities) {
+      preAllocateId(entity);
+      if (isDbSideGenerated && hasNoDeferredIdValue(entity)) {
+        //id is known only after insert, so such rows go to multi-row INSERT ... RETURNING
+        generatedChunkPositions[generatedChunk.size()] = position++;
+        generatedChunk.add(entity);
+        if (generatedChunk.size() == generatedBatchSize) {
+          flushGeneratedChunk(
+              operationType,
+              multiRowQueryType,
+              generatedChunk,
+              generatedChunkPositions,
+              result
+          );
+        }
+        continue;
+      }
+      if (chunk.isEmpty()) {
+        chunkStartNanos = System.nanoTime();
       }
+      chunkPositions[chunk.size()] = position++;
+      chunk.add(generateColumnValues(entity));
+      if (chunk.size() == batchSize) {
+        flushChunk(operationType, plan, chunk, chunkPositions, result, chunkStartNanos);
+      }
+    }
+    if (!chunk.isEmpty()) {
+      flushChunk(operationType, plan, chunk, chunkPositions, result, chunkStartNanos);
+    }
+    if (!generatedChunk.isEmpty()) {
+      flushGeneratedChunk(
+          operationType,
+          multiRowQueryType,
+          generatedChunk,
+          generatedChunkPositions,
+          result
+      );
     }
     return result;
   }
 
-  private E mapResultSetToEntity(
-      List<ColumnDefinition> columnDefinitions,
-      Class<E> typeClass,
-      ResultSet rs
-  ) throws SQLException {
+  private void flushChunk(
+      OperationType operationType,
+      QueryPlan plan,
+      List<Object[]> chunk,
+      int[] chunkPositions,
+      int[] result,
+      long startNanos
+  ) {
+    int[] counts = batchUpdate(operationType, plan, chunk, startNanos);
+    for (int i = 0; i < counts.length; i++) {
+      result[chunkPositions[i]] = counts[i];
+    }
+    chunk.clear();
+  }
+
+  private void flushGeneratedChunk(
+      OperationType operationType,
+      QueryType queryType,
+      List<E> chunk,
+      int[] chunkPositions,
+      int[] result
+  ) {
+    long startNanos = System.nanoTime();
+    int columnCount = insertColumns.size();
+    Object[] values = new Object[chunk.size() * columnCount];
+    for (int i = 0; i < chunk.size(); i++) {
+      generateColumnValues(chunk.get(i), values, i * columnCount);
+    }
+    List<Object> idValues = queryGeneratedIds(
+        operationType,
+        generatedRowsPlan(queryType, chunk.size(), chunk.size() == chunkPositions.length),
+        values,
+        startNanos
+    );
+    checkState(
+        idValues.size() == chunk.size(),
+        "Query returned " + idValues.size() + " generated ids for " + chunk.size() + " rows"
+    );
+    for (int i = 0; i < chunk.size(); i++) {
+      //ids are returned ordered by row number, see QueryBuilder#setRowCount
+      setDeferredIdValue(chunk.get(i), idValues.get(i));
+      result[chunkPositions[i]] = 1;
+    }
+    chunk.clear();
+  }
+
+  /**
+   * Multi-row statement text depends on the number of rows, so plans of full chunks are cached
+   * by it, there are as many of them as distinct batch sizes. The last chunk of every call is
+   * rendered anew.
+   */
+  private QueryPlan generatedRowsPlan(QueryType queryType, int rowCount, boolean isFullChunk) {
+    Map<Integer, QueryPlan> plans = queryType == QueryType.INSERT
+        ? generatedInsertPlans
+        : generatedUpsertPlans;
+    Function<Integer, QueryPlan> compile = rows -> newQueryBuilder(queryType)
+        .setColumnsToInsert(insertColumns)
+        .setGenerateAndReturnId(true)
+        .setRowCount(rows)
+        .compile();
+    return isFullChunk ? plans.computeIfAbsent(rowCount, compile) : compile.apply(rowCount);
+  }
+
+  private QueryBuilder newQueryBuilder(QueryType queryType) {
+    return new QueryBuilder(columnValueConverter)
+        .setType(queryType)
+        .setTableName(tableName)
+        .setIdColumns(idColumns);
+  }
+
+  private void update(
+      OperationType operationType,
+      QueryPlan plan,
+      Object[] values,
+      long startNanos
+  ) {
+    long executeStartNanos = System.nanoTime();
+    int updated = jdbcTemplate.getJdbcTemplate().update(
+        plan.positionalSqlQuery,
+        ps -> plan.setValues(ps, values)
+    );
+    long endNanos = System.nanoTime();
+    onQuery(
+        operationType,
+        plan.sqlQuery,
+        values,
+        updated,
+        startNanos,
+        executeStartNanos,
+        endNanos,
+        endNanos
+    );
+  }
+
+  private int[] batchUpdate(
+      OperationType operationType,
+      QueryPlan plan,
+      List<Object[]> rows,
+      long startNanos
+  ) {
+    long executeStartNanos = System.nanoTime();
+    int[] counts = jdbcTemplate.getJdbcTemplate().batchUpdate(
+        plan.positionalSqlQuery,
+        new BatchPreparedStatementSetter() {
+          @Override
+          public void setValues(PreparedStatement ps, int i) throws SQLException {
+            plan.setValues(ps, rows.get(i));
+          }
+
+          @Override
+          public int getBatchSize() {
+            return rows.size();
+          }
+        }
+    );
+    long endNanos = System.nanoTime();
+    if (isQueryObserved()) {
+      long boundBytes = 0;
+      for (Object[] row : rows) {
+        boundBytes += QueryExecution.estimateBytes(row);
+      }
+      onQuery(
+          operationType,
+          plan.sqlQuery,
+          null,
+          rows.size(),
+          boundBytes,
+          startNanos,
+          executeStartNanos,
+          endNanos,
+          endNanos
+      );
+    }
+    return counts;
+  }
+
+  private List<Object> queryGeneratedIds(
+      OperationType operationType,
+      QueryPlan plan,
+      Object[] values,
+      long startNanos
+  ) {
+    long executeStartNanos = System.nanoTime();
+    List<Object> generatedIds = checkNotNull(jdbcTemplate.getJdbcTemplate().query(
+        plan.positionalSqlQuery,
+        ps -> plan.setValues(ps, values),
+        GENERATED_IDS_EXTRACTOR
+    ));
+    long endNanos = System.nanoTime();
+    onQuery(
+        operationType,
+        plan.sqlQuery,
+        values,
+        generatedIds.size(),
+        startNanos,
+        executeStartNanos,
+        endNanos,
+        endNanos
+    );
+    return generatedIds;
+  }
+
+  private List<E> queryEntities(
+      OperationType operationType,
+      QueryPlan plan,
+      Object[] values,
+      long startNanos
+  ) {
+    long executeStartNanos = System.nanoTime();
+    long[] mapStartNanos = new long[1];
+    List<E> entities = checkNotNull(jdbcTemplate.getJdbcTemplate().query(
+        plan.positionalSqlQuery,
+        ps -> plan.setValues(ps, values),
+        rs -> {
+          mapStartNanos[0] = System.nanoTime();
+          validateResultSet(rs);
+          List<E> result = new ArrayList<>();
+          while (rs.next()) {
+            result.add(mapResultSetToEntity(rs));
+          }
+          return result;
+        }
+    ));
+    onQuery(
+        operationType,
+        plan.sqlQuery,
+        values,
+        entities.size(),
+        startNanos,
+        executeStartNanos,
+        mapStartNanos[0],
+        System.nanoTime()
+    );
+    return entities;
+  }
+
+  @Nullable
+  private E querySingleEntity(
+      OperationType operationType,
+      QueryPlan plan,
+      Object[] values,
+      long startNanos
+  ) {
+    long executeStartNanos = System.nanoTime();
+    long[] mapStartNanos = new long[1];
+    E entity = jdbcTemplate.getJdbcTemplate().query(
+        plan.positionalSqlQuery,
+        ps -> plan.setValues(ps, values),
+        rs -> {
+          mapStartNanos[0] = System.nanoTime();
+          validateResultSet(rs);
+          if (rs.next()) {
+            E result = mapResultSetToEntity(rs);
+            checkState(
+                !rs.next(),
+                "Query returned more than one result"
+            );
+            return result;
+          }
+          return null;
+        }
+    );
+    onQuery(
+        operationType,
+        plan.sqlQuery,
+        values,
+        entity != null ? 1 : 0,
+        startNanos,
+        executeStartNanos,
+        mapStartNanos[0],
+        System.nanoTime()
+    );
+    return entity;
+  }
+
+  /**
+   * Opens cursor over all rows of the plan, statement is reported to listener when returned
+   * stream is closed
+   */
+  private <T> Stream<T> streamCursor(
+      QueryPlan plan,
+      Object[] values,
+      int fetchSize,
+      RowMapper<T> rowMapper
+  ) {
+    long startNanos = System.nanoTime();
+    ResultSetCursor<T> cursor = new ResultSetCursor<>(
+        jdbcTemplate.getJdbcTemplate(),
+        plan,
+        values,
+        fetchSize,
+        rowMapper
+    );
+    long mapStartNanos = System.nanoTime();
+    return cursor.stream().onClose(() -> onQuery(
+        OperationType.GET_ALL,
+        plan.sqlQuery,
+        values,
+        cursor.getRowCount(),
+        startNanos,
+        startNanos,
+        mapStartNanos,
+        System.nanoTime()
+    ));
+  }
+
+  /**
+   * Reports single-row statement, size of bound values is estimated only if somebody observes
+   */
+  private void onQuery(
+      OperationType operationType,
+      String sqlQuery,
+      Object[] values,
+      int rowCount,
+      long startNanos,
+      long executeStartNanos,
+      long mapStartNanos,
+      long endNanos
+  ) {
+    if (!isQueryObserved()) {
+      return;
+    }
+    onQuery(
+        operationType,
+        sqlQuery,
+        values,
+        rowCount,
+        QueryExecution.estimateBytes(values),
+        startNanos,
+        executeStartNanos,
+        mapStartNanos,
+        endNanos
+    );
+  }
+
+  private void onQuery(
+      OperationType operationType,
+      String sqlQuery,
+      @Nullable Object[] values,
+      int rowCount,
+      long boundBytes,
+      long startNanos,
+      long executeStartNanos,
+      long mapStartNanos,
+      long endNanos
+  ) {
+    if (!isQueryObserved()) {
+      return;
+    }
+    QueryExecution execution = new QueryExecution(
+        operationType,
+        tableName,
+        sqlQuery,
+        values,
+        rowCount,
+        boundBytes,
+        executeStartNanos - startNanos,
+        mapStartNanos - executeStartNanos,
+        endNanos - mapStartNanos
+    );
+    queryListener.onQuery(execution);
+    QueryEvent.emit(entityClazz, execution);
+  }
+
+  private boolean isQueryObserved() {
+    return queryListener != QueryListener.NOOP || QueryEvent.isRecorded();
+  }
+
+  private void invalidateCached(E entity) {
+    if (cache != null || offHeapStore != null) {
+      @SuppressWarnings("unchecked")
+      ID id = (ID) extractIdValue(entity);
+      invalidateCachedId(id);
+    }
+  }
+
+  /**
+   * Invalidates entity now, and once more after completion of current spring transaction,
+   * otherwise a concurrent findOne could cache the value committed before the transaction
+   */
+  private void invalidateCachedId(ID id) {
+    if (cache == null && offHeapStore == null) {
+      return;
+    }
+    invalidateCachedIdNow(id);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          invalidateCachedIdNow(id);
+        }
+      });
+    }
+  }
+
+  private void invalidateCachedIdNow(ID id) {
+    if (cache != null) {
+      cache.invalidate(id);
+    }
+    if (offHeapStore != null) {
+      offHeapStore.invalidate(id);
+    }
+  }
+
+  private void invalidateAllCached() {
+    if (cache == null && offHeapStore == null) {
+      return;
+    }
+    invalidateAllCachedNow();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          invalidateAllCachedNow();
+        }
+      });
+    }
+  }
+
+  private void invalidateAllCachedNow() {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+    if (offHeapStore != null) {
+      offHeapStore.invalidateAll();
+    }
+  }
+
+  private void validateResultSet(ResultSet rs) throws SQLException {
+    if (resultSetValidated) {
+      return;
+    }
+    ResultSetMetaData metaData = rs.getMetaData();
+    checkState(
+        metaData.getColumnCount() == selectColumns.size(),
+        "Query returned " + metaData.getColumnCount() + " columns, expected " + selectColumns
+    );
+    for (int i = 0; i < selectColumns.size(); i++) {
+      String columnLabel = metaData.getColumnLabel(i + 1);
+      checkState(
+          selectColumns.get(i).equalsIgnoreCase(columnLabel),
+          "Query returned column " + columnLabel + " at position " + (i + 1)
+              + ", expected " + selectColumns.get(i)
+      );
+    }
+    this.resultSetValidated = true;
+  }
+
+  private <A> A scanRange(IdRange<ID> range, Collector<? super E, A, ?> collector) {
+    Object[] fromValues = generateIdValues(range.from);
+    Object[] toValues = generateIdValues(range.to);
+    Object[] values = Arrays.copyOf(fromValues, fromValues.length + toValues.length);
+    System.arraycopy(toValues, 0, values, fromValues.length, toValues.length);
+    A container = collector.supplier().get();
+    BiConsumer<A, ? super E> accumulator = collector.accumulator();
+    try (Stream<E> entities = streamCursor(
+        idRangePlan,
+        values,
+        DEFAULT_FETCH_SIZE,
+        this::mapCursorRow
+    )) {
+      entities.forEach(entity -> accumulator.accept(container, entity));
+    }
+    return container;
+  }
+
+  private List<IdRange<ID>> splitIdRange(int partitions) {
+    checkState(
+        numericIdClass != null,
+        "Id of " + tableName + " is not numeric, id ranges must be passed explicitly"
+    );
+    String idColumnName = idColumns.get(0).columnName;
+    long[] minMax = jdbcTemplate.getJdbcTemplate().queryForObject(
+        String.format("SELECT min(%s), max(%s) FROM %s", idColumnName, idColumnName, tableName),
+        (rs, rowNum) -> {
+          long min = rs.getLong(1);
+          return rs.wasNull() ? null : new long[]{min, rs.getLong(2)};
+        }
+    );
+    if (minMax == null) {
+      return Collections.emptyList();
+    }
+    long max = minMax[1];
+    long step = Math.max(1, Math.subtractExact(max, minMax[0]) / partitions + 1);
+    List<IdRange<ID>> ranges = new ArrayList<>(partitions);
+    for (long from = minMax[0]; ; from += step) {
+      long to = max - from < step ? max : from + step - 1;
+      ranges.add(IdRange.of(toIdValue(from), toIdValue(to)));
+      if (to == max) {
+        return ranges;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private ID toIdValue(long value) {
+    if (Integer.class.equals(numericIdClass)) {
+      return (ID) Integer.valueOf((int) value);
+    }
+    if (Short.class.equals(numericIdClass)) {
+      return (ID) Short.valueOf((short) value);
+    }
+    return (ID) Long.valueOf(value);
+  }
+
+  /**
+   * @return values of select columns, not decoded by column codecs
+   */
+  private Object[] readRawRow(ResultSet rs, int rowNum) throws SQLException {
+    if (rowNum == 0) {
+      validateResultSet(rs);
+    }
+    Object[] rawRow = new Object[selectColumns.size()];
+    for (int i = 0; i < columnDefinitions.size(); i++) {
+      ColumnDefinition columnDefinition = columnDefinitions.get(i);
+      int columnIndex = columnIndexes[i];
+      if (columnDefinition.isComposite()) {
+        for (ColumnComponentDefinition component : columnDefinition.compositeComponents) {
+          rawRow[columnIndex - 1] = checkNotNull(component.codec).readRaw(rs, columnIndex);
+          columnIndex++;
+        }
+      } else {
+        rawRow[columnIndex - 1] = checkNotNull(columnDefinition.codec).readRaw(rs, columnIndex);
+      }
+    }
+    return rawRow;
+  }
+
+  /**
+   * @param consumer receives entities instead of returned list, if passed
+   */
+  private List<E> decodeRows(List<Object[]> rawRows, @Nullable Consumer<? super E> consumer) {
+    List<E> entities = new ArrayList<>(consumer == null ? rawRows.size() : 0);
+    for (Object[] rawRow : rawRows) {
+      E entity = decodeRow(rawRow);
+      if (consumer == null) {
+        entities.add(entity);
+      } else {
+        consumer.accept(entity);
+      }
+    }
+    return entities;
+  }
+
+  private E decodeRow(Object[] rawRow) {
     Object[] constructorArgs = new Object[columnDefinitions.size()];
     for (int i = 0; i < columnDefinitions.size(); i++) {
       ColumnDefinition columnDefinition = columnDefinitions.get(i);
-      Object value = columnDefinition.isComposite()
-          ? mapCompositeValue(columnDefinition, rs)
-          : mapSimpleValue(columnDefinition, rs);
+      int columnIndex = columnIndexes[i];
+      Object value;
+      if (columnDefinition.isComposite()) {
+        List<ColumnComponentDefinition> components = columnDefinition.compositeComponents;
+        Object[] args = new Object[components.size()];
+        for (int j = 0; j < args.length; j++) {
+          ColumnComponentDefinition component = components.get(j);
+          args[j] = checkNotNull(component.codec).decode(rawRow[columnIndex - 1 + j]);
+          if (!component.nullable && args[j] == null) {
+            throw new IllegalStateException(
+                "Query returned null value for non-null column " + component.columnName
+            );
+          }
+        }
+        value = entityMapper.newCompositeId(args);
+      } else {
+        value = checkNotNull(columnDefinition.codec).decode(rawRow[columnIndex - 1]);
+      }
       if (!columnDefinition.nullable && value == null) {
         throw new IllegalStateException(
             "Query returned null value for non-null column " + columnDefinition.columnName
@@ -301,52 +1317,57 @@ public class StandardOperations<E, ID> {
       }
       constructorArgs[i] = value;
     }
+    return entityMapper.newEntity(constructorArgs);
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
     try {
-      Constructor<?> constructor = typeClass.getConstructors()[0];
-      checkState(constructor.getParameterCount() == columnDefinitions.size());
-      @SuppressWarnings("unchecked")
-      E instance = (E) constructor.newInstance(constructorArgs);
-      return instance;
-    } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-      throw new RuntimeException(e);
+      return future.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
     }
   }
 
-  private Object mapSimpleValue(ColumnDefinition columnDefinition, ResultSet rs)
-      throws SQLException {
-    IdMetadata idMetadata = columnDefinition.idMetadata;
-    EnumMetadata enumMetadata = columnDefinition.enumMetadata;
-    String columnName = checkNotNull(
-        columnDefinition.columnName,
-        "Column name must be set for simple field " + columnDefinition.javaReflectionField.getName()
-    );
-    return columnValueConverter.toJavaTypeValue(
-        rs,
-        columnName,
-        idMetadata != null && idMetadata.isDbSideGenerated
-            ? DeferredId.class
-            : ReflectionTools.primitiveToWrapper(columnDefinition.valueClass),
-        enumMetadata
-    );
+  private E mapCursorRow(ResultSet rs, int rowNum) throws SQLException {
+    if (rowNum == 0) {
+      validateResultSet(rs);
+    }
+    return mapResultSetToEntity(rs);
   }
 
-  private Object mapCompositeValue(ColumnDefinition columnDefinition, ResultSet rs)
+  private E mapResultSetToEntity(ResultSet rs) throws SQLException {
+    Object[] constructorArgs = new Object[columnDefinitions.size()];
+    for (int i = 0; i < columnDefinitions.size(); i++) {
+      ColumnDefinition columnDefinition = columnDefinitions.get(i);
+      Object value = columnDefinition.isComposite()
+          ? mapCompositeValue(columnDefinition, rs, columnIndexes[i])
+          : mapSimpleValue(columnDefinition, rs, columnIndexes[i]);
+      if (!columnDefinition.nullable && value == null) {
+        throw new IllegalStateException(
+            "Query returned null value for non-null column " + columnDefinition.columnName
+        );
+      }
+      constructorArgs[i] = value;
+    }
+    return entityMapper.newEntity(constructorArgs);
+  }
+
+  @Nullable
+  private Object mapSimpleValue(ColumnDefinition columnDefinition, ResultSet rs, int columnIndex)
       throws SQLException {
+    return checkNotNull(columnDefinition.codec).read(rs, columnIndex);
+  }
+
+  private Object mapCompositeValue(
+      ColumnDefinition columnDefinition,
+      ResultSet rs,
+      int firstColumnIndex
+  ) throws SQLException {
     checkState(columnDefinition.isComposite(), "ColumnDefinition is not composite");
-    Constructor<?> constructor = checkNotNull(
-        columnDefinition.compositeConstructor,
-        "Composite constructor is not defined for field "
-            + columnDefinition.javaReflectionField.getName()
-    );
     Object[] args = new Object[columnDefinition.compositeComponents.size()];
     for (int i = 0; i < columnDefinition.compositeComponents.size(); i++) {
       ColumnComponentDefinition component = columnDefinition.compositeComponents.get(i);
-      Object value = columnValueConverter.toJavaTypeValue(
-          rs,
-          component.columnName,
-          ReflectionTools.primitiveToWrapper(component.valueClass),
-          component.enumMetadata
-      );
+      Object value = checkNotNull(component.codec).read(rs, firstColumnIndex + i);
       if (!component.nullable && value == null) {
         throw new IllegalStateException(
             "Query returned null value for non-null column " + component.columnName
@@ -354,72 +1375,72 @@ public class StandardOperations<E, ID> {
       }
       args[i] = value;
     }
-    try {
-      return constructor.newInstance(args);
-    } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-      throw new RuntimeException(e);
-    }
+    return entityMapper.newCompositeId(args);
   }
 
-  private LinkedHashMap<String, Pair<QueryColDef, Object>> generateColumnsToInsert(E entity) {
-    //Map<ColumnName, JavaReflectionFieldValue>
-    LinkedHashMap<String, Pair<QueryColDef, Object>> result = new LinkedHashMap<>();
-    for (ColumnDefinition columnDefinition : columnDefinitions) {
-      try {
-        if (columnDefinition.isComposite()) {
-          Object compositeValue = columnDefinition.javaReflectionField.get(entity);
-          compositeValue = checkNotNull(
-              compositeValue,
-              "Composite id field " + columnDefinition.javaReflectionField.getName()
-                  + " must not be null"
-          );
-          for (ColumnComponentDefinition component : columnDefinition.compositeComponents) {
-            result.put(
-                component.columnName,
-                Pair.of(
-                    toQueryColDef(component, columnDefinition),
-                    component.readValue(compositeValue)
-                )
-            );
-          }
-        } else {
-          result.put(
-              checkNotNull(columnDefinition.columnName,
-                  "Column name must not be null for non composite field"),
-              Pair.of(
-                  toQueryColDef(columnDefinition),
-                  columnDefinition.javaReflectionField.get(entity)
-              )
-          );
+  /**
+   * @return entity values in order of {@link #insertColumns}, composite id is flattened
+   */
+  private Object[] generateColumnValues(E entity) {
+    Object[] result = new Object[insertColumns.size()];
+    generateColumnValues(entity, result, 0);
+    return result;
+  }
+
+  /**
+   * Writes values of insert columns into {@code result}, starting from {@code offset}
+   */
+  private void generateColumnValues(E entity, Object[] result, int offset) {
+    int valueIndex = offset;
+    for (int i = 0; i < columnDefinitions.size(); i++) {
+      ColumnDefinition columnDefinition = columnDefinitions.get(i);
+      Object value = entityMapper.getFieldValue(entity, i);
+      if (columnDefinition.isComposite()) {
+        Object compositeValue = checkNotNull(
+            value,
+            "Composite id field " + columnDefinition.fieldName
+                + " must not be null"
+        );
+        for (int j = 0; j < columnDefinition.compositeComponents.size(); j++) {
+          result[valueIndex++] = entityMapper.getCompositeIdComponentValue(compositeValue, j);
         }
-      } catch (IllegalAccessException e) {
-        throw new RuntimeException(e);
+      } else {
+        result[valueIndex++] = value;
       }
     }
-    return result;
   }
 
-  private void setDeferredIdValue(E entity, Object rawIdValue) {
-    try {
-      Object deferredIdObj = idColumn.javaReflectionField.get(entity);
-      idColumn.javaReflectionField.getType()
-          .getDeclaredField("value")
-          .set(deferredIdObj, rawIdValue); //settings mutable "value" to id
-    } catch (IllegalAccessException | NoSuchFieldException e) {
-      throw new RuntimeException(e);
+  private void generateColumnsToCopy(E entity, Object[] values) {
+    preAllocateId(entity);
+    IdMetadata idMetadata = idColumn.idMetadata;
+    checkState(
+        idMetadata == null || !idMetadata.isDbSideGenerated || !hasNoDeferredIdValue(entity),
+        "COPY requires id value, fill DeferredId or set allocationSize of @DbSideId"
+    );
+    generateColumnValues(entity, values, 0);
+  }
+
+  private void preAllocateId(E entity) {
+    if (idAllocator != null && hasNoDeferredIdValue(entity)) {
+      setDeferredIdValue(entity, idAllocator.nextId());
     }
   }
 
+  private void setDeferredIdValue(E entity, Object rawIdValue) {
+    getDeferredId(entity).value = rawIdValue; //settings mutable "value" to id
+  }
+
   private boolean hasNoDeferredIdValue(E entity) {
-    try {
-      Object deferredIdObj = idColumn.javaReflectionField.get(entity);
-      return idColumn.javaReflectionField.getType()
-          .getDeclaredField("value")
-          .get(deferredIdObj) == null;
+    return getDeferredId(entity).value == null;
+  }
 
-    } catch (IllegalAccessException | NoSuchFieldException e) {
-      throw new RuntimeException(e);
-    }
+  private DeferredId<Object> getDeferredId(E entity) {
+    @SuppressWarnings("unchecked")
+    DeferredId<Object> deferredId = (DeferredId<Object>) checkNotNull(
+        entityMapper.getFieldValue(entity, idFieldIndex),
+        "DeferredId field must not be null"
+    );
+    return deferredId;
   }
 
   private static ColumnDefinition getIdColumnName(List<ColumnDefinition> columnDefinitions) {
@@ -431,18 +1452,84 @@ public class StandardOperations<E, ID> {
     throw new RuntimeException("Couldn't find ColumnDefinition for id ");
   }
 
-  private void applyIdConditions(QueryBuilder queryBuilder, Object idValue) {
+  @Nullable
+  private static Class<?> getNumericIdClass(ColumnDefinition idColumn) {
+    if (idColumn.isComposite()) {
+      return null;
+    }
+    IdMetadata idMetadata = idColumn.idMetadata;
+    Class<?> idClass = idMetadata != null && idMetadata.isDbSideGenerated
+        ? idMetadata.sequenceValueType
+        : ReflectionTools.primitiveToWrapper(idColumn.valueClass);
+    return Long.class.equals(idClass)
+        || Integer.class.equals(idClass)
+        || Short.class.equals(idClass) ? idClass : null;
+  }
+
+  @Nullable
+  private static SequenceIdAllocator createIdAllocator(
+      ColumnDefinition idColumn,
+      NamedParameterJdbcTemplate jdbcTemplate
+  ) {
+    IdMetadata idMetadata = idColumn.idMetadata;
+    if (idMetadata == null || !idMetadata.isDbSideGenerated || idMetadata.allocationSize <= 1) {
+      return null;
+    }
+    return new SequenceIdAllocator(
+        jdbcTemplate,
+        checkNotNull(idMetadata.sequenceName),
+        idMetadata.allocationSize,
+        checkNotNull(idMetadata.sequenceValueType)
+    );
+  }
+
+  /**
+   * @return values of id columns in order of {@link #idColumns}
+   */
+  private Object[] generateIdValues(Object idValue) {
     if (idColumn.isComposite()) {
       Object compositeId = checkNotNull(idValue, "Composite id value must not be null");
-      for (ColumnComponentDefinition component : idColumn.compositeComponents) {
-        queryBuilder.setCondition(
-            toQueryColDef(component, idColumn),
-            component.readValue(compositeId)
-        );
+      Object[] result = new Object[idColumns.size()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = entityMapper.getCompositeIdComponentValue(compositeId, i);
       }
-    } else {
-      queryBuilder.setCondition(toQueryColDef(idColumn), idValue);
+      return result;
+    }
+    return new Object[]{idValue};
+  }
+
+  /**
+   * @return list of values per id column in order of {@link #idColumns}, lists are matched
+   * by position
+   */
+  private Object[] generateIdValueLists(List<?> idValues) {
+    if (idColumn.isComposite()) {
+      Object[] result = new Object[idColumns.size()];
+      for (int i = 0; i < result.length; i++) {
+        List<Object> componentValues = new ArrayList<>(idValues.size());
+        for (Object idValue : idValues) {
+          componentValues.add(entityMapper.getCompositeIdComponentValue(
+              checkNotNull(idValue, "Composite id value must not be null"),
+              i
+          ));
+        }
+        result[i] = componentValues;
+      }
+      return result;
     }
+    return new Object[]{idValues};
+  }
+
+  /**
+   * @return id of entity in the same form as it's passed to findOne, i.e. without DeferredId
+   */
+  @Nullable
+  private Object extractIdValue(E entity) {
+    Object idValue = entityMapper.getFieldValue(entity, idFieldIndex);
+    if (idValue instanceof DeferredId<?>) {
+      return ((DeferredId<?>) idValue).value;
+    }
+    return idValue;
   }
 
   private static List<QueryColDef> buildIdColumns(ColumnDefinition idColumnDefinition) {
@@ -454,6 +1541,31 @@ public class StandardOperations<E, ID> {
     return List.of(toQueryColDef(idColumnDefinition));
   }
 
+  private static int[] buildColumnIndexes(List<ColumnDefinition> definitions) {
+    int[] result = new int[definitions.size()];
+    int columnIndex = 1;
+    for (int i = 0; i < definitions.size(); i++) {
+      result[i] = columnIndex;
+      ColumnDefinition definition = definitions.get(i);
+      columnIndex += definition.isComposite() ? definition.compositeComponents.size() : 1;
+    }
+    return result;
+  }
+
+  private static List<QueryColDef> flattenColumns(List<ColumnDefinition> definitions) {
+    List<QueryColDef> columns = new ArrayList<>();
+    for (ColumnDefinition definition : definitions) {
+      if (definition.isComposite()) {
+        for (ColumnComponentDefinition component : definition.compositeComponents) {
+          columns.add(toQueryColDef(component, definition));
+        }
+      } else {
+        columns.add(toQueryColDef(definition));
+      }
+    }
+    return columns;
+  }
+
   private static List<String> flattenColumnNames(List<ColumnDefinition> definitions) {
     List<String> columns = new ArrayList<>();
     for (ColumnDefinition definition : definitions) {
@@ -465,14 +1577,59 @@ public class StandardOperations<E, ID> {
         columns.add(checkNotNull(
             definition.columnName,
             "Column name must be provided for field "
-                + definition.javaReflectionField.getName()
+                + definition.fieldName
         ));
       }
     }
     return columns;
   }
 
-  private static List<ColumnDefinition> getColumnsDefinitions(Class<?> entityClazz) {
+  /**
+   * Copies definitions declared by generated code, resolving codecs by {@code codecRegistry}
+   * the same way as for definitions read reflectively
+   */
+  private static List<ColumnDefinition> resolveCodecs(
+      List<ColumnDefinition> definitions,
+      ColumnCodecRegistry codecRegistry
+  ) {
+    List<ColumnDefinition> result = new ArrayList<>(definitions.size());
+    for (ColumnDefinition definition : definitions) {
+      List<ColumnComponentDefinition> components =
+          new ArrayList<>(definition.compositeComponents.size());
+      for (ColumnComponentDefinition component : definition.compositeComponents) {
+        components.add(new ColumnComponentDefinition(
+            component.fieldName,
+            component.columnName,
+            component.valueClass,
+            component.enumMetadata,
+            component.nullable,
+            codecRegistry.resolve(component.valueClass, null, component.enumMetadata)
+        ));
+      }
+      result.add(new ColumnDefinition(
+          definition.fieldName,
+          definition.columnName,
+          definition.valueClass,
+          definition.idMetadata,
+          definition.enumMetadata,
+          definition.nullable,
+          Collections.unmodifiableList(components),
+          definition.isComposite()
+              ? null
+              : codecRegistry.resolve(
+                  definition.valueClass,
+                  definition.idMetadata,
+                  definition.enumMetadata
+              )
+      ));
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  private static List<ColumnDefinition> getColumnsDefinitions(
+      Class<?> entityClazz,
+      ColumnCodecRegistry codecRegistry
+  ) {
     Field[] entityFields = entityClazz.getDeclaredFields();
     boolean hasIdField = false;
     List<ColumnDefinition> result = new ArrayList<>(entityFields.length);
@@ -505,19 +1662,16 @@ public class StandardOperations<E, ID> {
         idMetadata = new IdMetadata(
             dbSideId != null,
             idAnnotation.compositeKey(),
-            dbSideId != null ? dbSideId.sequenceName() : null
+            dbSideId != null ? dbSideId.sequenceName() : null,
+            dbSideId != null ? dbSideId.sequenceValueType() : null,
+            dbSideId != null ? dbSideId.allocationSize() : 1
         );
         if (idAnnotation.compositeKey()) {
-          compositeMetadata = buildCompositeMetadata(entityField);
+          compositeMetadata = buildCompositeMetadata(entityField, codecRegistry);
         }
       }
       if (hasEnumAnnotation) {
-        Enumerated enumerated = entityField.getAnnotation(Enumerated.class);
-        enumMetadata = new EnumMetadata(
-            enumerated.accessorField().equals("") ? null : enumerated.accessorField(),
-            enumerated.accessorMethod().equals("") ? null : enumerated.accessorMethod(),
-            enumerated.builderMethod().equals("") ? null : enumerated.builderMethod()
-        );
+        enumMetadata = buildEnumMetadata(entityField);
       }
     List<ColumnComponentDefinition> componentDefinitions =
       compositeMetadata != null
@@ -531,7 +1685,10 @@ public class StandardOperations<E, ID> {
       enumMetadata,
       columnAnnotation != null && columnAnnotation.nullable(),
       componentDefinitions,
-      compositeMetadata != null ? compositeMetadata.left : null
+      compositeMetadata != null ? compositeMetadata.left : null,
+      compositeMetadata != null
+        ? null
+        : codecRegistry.resolve(entityField.getType(), idMetadata, enumMetadata)
     ));
     }
     if (!hasIdField) {
@@ -540,8 +1697,22 @@ public class StandardOperations<E, ID> {
     return Collections.unmodifiableList(result);
   }
 
+  /**
+   * Resolves codec of enum field once, so values are not converted reflectively per row
+   */
+  private static EnumMetadata buildEnumMetadata(Field enumField) {
+    Enumerated enumerated = enumField.getAnnotation(Enumerated.class);
+    return new EnumMetadata(
+        enumerated.accessorField().equals("") ? null : enumerated.accessorField(),
+        enumerated.accessorMethod().equals("") ? null : enumerated.accessorMethod(),
+        enumerated.builderMethod().equals("") ? null : enumerated.builderMethod(),
+        enumField.getType()
+    );
+  }
+
   private static Pair<Constructor<?>, List<ColumnComponentDefinition>> buildCompositeMetadata(
-      Field idField
+      Field idField,
+      ColumnCodecRegistry codecRegistry
   ) {
     Class<?> compositeClass = idField.getType();
     Field[] declaredFields = compositeClass.getDeclaredFields();
@@ -554,19 +1725,15 @@ public class StandardOperations<E, ID> {
       }
       EnumMetadata componentEnumMetadata = null;
       if (declaredField.isAnnotationPresent(Enumerated.class)) {
-        Enumerated enumerated = declaredField.getAnnotation(Enumerated.class);
-        componentEnumMetadata = new EnumMetadata(
-            enumerated.accessorField().equals("") ? null : enumerated.accessorField(),
-            enumerated.accessorMethod().equals("") ? null : enumerated.accessorMethod(),
-            enumerated.builderMethod().equals("") ? null : enumerated.builderMethod()
-        );
+        componentEnumMetadata = buildEnumMetadata(declaredField);
       }
       components.add(new ColumnComponentDefinition(
           declaredField,
           column.name(),
           declaredField.getType(),
           componentEnumMetadata,
-          column.nullable()
+          column.nullable(),
+          codecRegistry.resolve(declaredField.getType(), null, componentEnumMetadata)
       ));
     }
     checkState(!components.isEmpty(),
@@ -617,13 +1784,14 @@ public class StandardOperations<E, ID> {
 
   private static QueryColDef toQueryColDef(ColumnDefinition columnDefinition){
   checkState(!columnDefinition.isComposite(),
-    "ColumnDefinition " + columnDefinition.javaReflectionField.getName() + " is composite");
+    "ColumnDefinition " + columnDefinition.fieldName + " is composite");
   return new QueryColDef(
     checkNotNull(columnDefinition.columnName,
       "Column name must be provided for field "
-        + columnDefinition.javaReflectionField.getName()),
+        + columnDefinition.fieldName),
     columnDefinition.idMetadata,
-    columnDefinition.enumMetadata
+    columnDefinition.enumMetadata,
+    columnDefinition.codec
   );
   }
 
@@ -634,7 +1802,8 @@ public class StandardOperations<E, ID> {
   return new QueryColDef(
     componentDefinition.columnName,
     parentDefinition.idMetadata,
-    componentDefinition.enumMetadata
+    componentDefinition.enumMetadata,
+    componentDefinition.codec
   );
   }
 }
@@ -0,0 +1,81 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.time.Duration;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Optional settings of {@link StandardOperations}, read once by its constructor
+ */
+@ParametersAreNonnullByDefault
+public class StandardOperationsConfig {
+
+  private ColumnCodecRegistry codecRegistry = ColumnCodecRegistry.createDefault();
+  private QueryListener queryListener = LoggingQueryListener.createDefault();
+  //0 if findOne isn't cached
+  private int cacheMaximumSize = 0;
+  @Nullable
+  private Duration cacheTtl;
+  //0 if findOne isn't cached off-heap
+  private long offHeapCacheMaximumBytes = 0;
+
+  public ColumnCodecRegistry getCodecRegistry() {
+    return codecRegistry;
+  }
+
+  public StandardOperationsConfig setCodecRegistry(ColumnCodecRegistry codecRegistry) {
+    this.codecRegistry = codecRegistry;
+    return this;
+  }
+
+  public QueryListener getQueryListener() {
+    return queryListener;
+  }
+
+  /**
+   * Replaces default listener, which logs every statement if DEBUG level of
+   * {@link LoggingQueryListener} is enabled when config is created, and does nothing otherwise
+   */
+  public StandardOperationsConfig setQueryListener(QueryListener queryListener) {
+    this.queryListener = queryListener;
+    return this;
+  }
+
+  public int getCacheMaximumSize() {
+    return cacheMaximumSize;
+  }
+
+  @Nullable
+  public Duration getCacheTtl() {
+    return cacheTtl;
+  }
+
+  /**
+   * Enables {@link EntityCache} of findOne results, kept up to date by writes made through
+   * the same StandardOperations instance
+   *
+   * @param maximumSize upper bound of cached entities
+   * @param ttl time after load when entity is evicted, null to keep until evicted by size
+   */
+  public StandardOperationsConfig setCache(int maximumSize, @Nullable Duration ttl) {
+    this.cacheMaximumSize = maximumSize;
+    this.cacheTtl = ttl;
+    return this;
+  }
+
+  public long getOffHeapCacheMaximumBytes() {
+    return offHeapCacheMaximumBytes;
+  }
+
+  /**
+   * Enables {@link OffHeapEntityStore} of findOne results, consulted after {@link EntityCache}
+   * if both are enabled. Fields of types other than built-in ones and enums must have codecs
+   * with {@link ColumnCodec#serializer()}, otherwise StandardOperations can't be created.
+   *
+   * @param maximumBytes upper bound of direct memory, must fit into -XX:MaxDirectMemorySize
+   */
+  public StandardOperationsConfig setOffHeapCache(long maximumBytes) {
+    this.offHeapCacheMaximumBytes = maximumBytes;
+    return this;
+  }
+}
@@ -0,0 +1,35 @@
+package ru.bibarsov.jdbcstdops.value;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Range of ids, inclusive on both ends. Composite ids are compared component by component,
+ * in order of their {@code @Column} fields.
+ *
+ * @param <ID> type of id, the same as passed to findOne
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public class IdRange<ID> {
+
+  public final ID from;
+  public final ID to;
+
+  public IdRange(ID from, ID to) {
+    this.from = from;
+    this.to = to;
+  }
+
+  public static <ID> IdRange<ID> of(ID from, ID to) {
+    return new IdRange<>(from, to);
+  }
+
+  @Override
+  public String toString() {
+    return "IdRange{" +
+        "from=" + from +
+        ", to=" + to +
+        '}';
+  }
+}
@@ -0,0 +1,38 @@
+package ru.bibarsov.jdbcstdops.value;
+
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Page of entities ordered by id
+ *
+ * @param <E> type of entity
+ * @param <ID> type of id, the same as passed to findOne
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public class KeysetPage<E, ID> {
+
+  public final List<E> entities;
+  //continuation token: id of the last entity, the next page starts right after it
+  @Nullable
+  public final ID lastId;
+  public final boolean hasNext;
+
+  public KeysetPage(List<E> entities, @Nullable ID lastId, boolean hasNext) {
+    this.entities = entities;
+    this.lastId = lastId;
+    this.hasNext = hasNext;
+  }
+
+  @Override
+  public String toString() {
+    return "KeysetPage{" +
+        "entities=" + entities.size() +
+        ", lastId=" + lastId +
+        ", hasNext=" + hasNext +
+        '}';
+  }
+}
@@ -8,5 +8,7 @@ public enum OperationType {
   CREATE_OR_UPDATE,
   GET_ALL,
   FIND_ONE,
+  FIND_ALL_BY_ID,
   DELETE,
+  COPY,
 }
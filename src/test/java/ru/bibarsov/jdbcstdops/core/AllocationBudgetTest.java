@@ -0,0 +1,152 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import com.sun.management.ThreadMXBean;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.ParametersAreNonnullByDefault;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.bibarsov.jdbcstdops.entity.Entity;
+import ru.bibarsov.jdbcstdops.helper.DatabaseManager;
+import ru.bibarsov.jdbcstdops.value.EntType1;
+import ru.bibarsov.jdbcstdops.value.EntType2;
+import ru.bibarsov.jdbcstdops.value.EntType3;
+
+/**
+ * Bytes allocated by the calling thread per warmed-up operation, checked against budgets. A
+ * single reused connection keeps connection setup out of the numbers, the rest of the driver
+ * allocations are included. Numbers are stable between runs, so budgets have headroom of about
+ * a tenth, which is less than a map or a few boxed values per row.
+ * <p>
+ * Per-row mapping cost is the difference between reading 2N and N rows, divided by N, so it
+ * doesn't depend on per-statement costs.
+ * <p>
+ * Budgets depend on the driver and jdk versions, so the test is opt-in:
+ * {@code mvn test -Djdbcstdops.allocationBudget=true}
+ */
+@ParametersAreNonnullByDefault
+public class AllocationBudgetTest {
+
+  //measured on jdk 17 and pgjdbc 42.7: findOne 2213, create 2352, getAll 618 per row
+  private static final long FIND_ONE_BUDGET_BYTES = 2_450;
+  private static final long CREATE_BUDGET_BYTES = 2_600;
+  private static final long GET_ALL_PER_ROW_BUDGET_BYTES = 680;
+
+  private static final String ENABLED_PROPERTY = "jdbcstdops.allocationBudget";
+  private static final int WARMUP_CALLS = 5_000;
+  private static final int MEASURED_CALLS = 1_000;
+  private static final int ROWS = 100;
+
+  private static final ThreadMXBean THREAD_MX_BEAN =
+      (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private static EmbeddedPostgres db;
+  private static SingleConnectionDataSource dataSource;
+  private static NamedParameterJdbcTemplate jdbcTemplate;
+
+  private StandardOperations<Entity, Long> entityStdOps;
+
+  @BeforeClass
+  public static void beforeClass() throws IOException, SQLException {
+    Assume.assumeTrue(ENABLED_PROPERTY + " is not set", Boolean.getBoolean(ENABLED_PROPERTY));
+    Assume.assumeTrue(THREAD_MX_BEAN.isThreadAllocatedMemorySupported());
+    THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+    db = EmbeddedPostgres.builder().start();
+    dataSource = new SingleConnectionDataSource(db.getPostgresDatabase().getConnection(), true);
+    jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    DatabaseManager.initDatabase(jdbcTemplate);
+  }
+
+  @AfterClass
+  public static void afterClass() throws IOException {
+    if (dataSource != null) {
+      dataSource.destroy();
+    }
+    if (db != null) {
+      db.close();
+    }
+  }
+
+  @Before
+  public void beforeTest() {
+    jdbcTemplate.getJdbcTemplate().execute("TRUNCATE entity");
+    this.entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate);
+  }
+
+  @Test
+  public void testFindOneAllocations() {
+    entityStdOps.create(newEntity(1L));
+    long bytes = allocatedBytesPerCall(() -> entityStdOps.findOne(1L));
+    assertWithinBudget("findOne", bytes, FIND_ONE_BUDGET_BYTES);
+  }
+
+  @Test
+  public void testCreateAllocations() {
+    AtomicLong nextId = new AtomicLong();
+    List<Entity> entities = new ArrayList<>(WARMUP_CALLS + MEASURED_CALLS);
+    for (int i = 0; i < WARMUP_CALLS + MEASURED_CALLS; i++) {
+      entities.add(newEntity(i));
+    }
+    long bytes = allocatedBytesPerCall(
+        () -> entityStdOps.create(entities.get((int) nextId.getAndIncrement()))
+    );
+    assertWithinBudget("create", bytes, CREATE_BUDGET_BYTES);
+  }
+
+  @Test
+  public void testGetAllPerRowAllocations() {
+    List<Entity> entities = new ArrayList<>(2 * ROWS);
+    for (int i = 0; i < 2 * ROWS; i++) {
+      entities.add(newEntity(i));
+    }
+    entityStdOps.createAll(entities.subList(0, ROWS));
+    long bytesOfRows = allocatedBytesPerCall(() -> entityStdOps.getAll());
+    entityStdOps.createAll(entities.subList(ROWS, 2 * ROWS));
+    long bytesOfDoubleRows = allocatedBytesPerCall(() -> entityStdOps.getAll());
+    long bytes = (bytesOfDoubleRows - bytesOfRows) / ROWS;
+    assertWithinBudget("getAll per row", bytes, GET_ALL_PER_ROW_BUDGET_BYTES);
+  }
+
+  private static long allocatedBytesPerCall(Runnable operation) {
+    for (int i = 0; i < WARMUP_CALLS; i++) {
+      operation.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long before = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < MEASURED_CALLS; i++) {
+      operation.run();
+    }
+    return (THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - before) / MEASURED_CALLS;
+  }
+
+  private static void assertWithinBudget(String operation, long bytes, long budgetBytes) {
+    Assert.assertTrue(
+        operation + " allocated " + bytes + " bytes per call, budget is " + budgetBytes,
+        bytes <= budgetBytes
+    );
+  }
+
+  private static Entity newEntity(long id) {
+    return new Entity(
+        id,
+        "name-" + id,
+        null,
+        EntType1.A,
+        EntType2.D,
+        EntType3.G,
+        Instant.EPOCH
+    );
+  }
+}
@@ -0,0 +1,59 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.ParametersAreNonnullByDefault;
+import org.junit.Assert;
+import org.junit.Test;
+
+@ParametersAreNonnullByDefault
+public class EntityMapperClassWriterTest {
+
+  @Test
+  public void testHiddenClassMapsPrivateFields() throws ReflectiveOperationException {
+    EntityMapper<PrivateEntity> mapper = EntityMapperClassWriter.define(
+        PrivateEntity.class,
+        columnDefinitions(PrivateEntity.class)
+    );
+    Assert.assertNotNull(mapper);
+    Assert.assertTrue(mapper.getClass().isHidden());
+
+    PrivateEntity entity = mapper.newEntity(new Object[]{5L, "name", 2.5});
+    Assert.assertEquals(5L, mapper.getFieldValue(entity, 0));
+    Assert.assertEquals("name", mapper.getFieldValue(entity, 1));
+    Assert.assertEquals(2.5, mapper.getFieldValue(entity, 2));
+    Assert.assertThrows(IndexOutOfBoundsException.class, () -> mapper.getFieldValue(entity, 3));
+    Assert.assertThrows(IllegalStateException.class, () -> mapper.newCompositeId(new Object[0]));
+  }
+
+  private static List<ColumnDefinition> columnDefinitions(Class<?> entityClazz) {
+    List<ColumnDefinition> result = new ArrayList<>();
+    for (Field field : entityClazz.getDeclaredFields()) {
+      result.add(new ColumnDefinition(
+          field,
+          field.getName(),
+          field.getType(),
+          null,
+          null,
+          true,
+          List.of(),
+          null
+      ));
+    }
+    return result;
+  }
+
+  public static class PrivateEntity {
+
+    private final long id;
+    private final String name;
+    private final double score;
+
+    public PrivateEntity(long id, String name, double score) {
+      this.id = id;
+      this.name = name;
+      this.score = score;
+    }
+  }
+}
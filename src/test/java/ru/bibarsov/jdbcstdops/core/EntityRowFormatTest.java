@@ -0,0 +1,106 @@
+package ru.bibarsov.jdbcstdops.core;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import org.junit.Assert;
+import org.junit.Test;
+
+@ParametersAreNonnullByDefault
+public class EntityRowFormatTest {
+
+  private static final ColumnCodec<URI> URI_CODEC = new ColumnCodec<>() {
+    @Nullable
+    @Override
+    public URI read(ResultSet rs, int columnIndex) throws SQLException {
+      String value = rs.getString(columnIndex);
+      return value != null ? URI.create(value) : null;
+    }
+
+    @Nullable
+    @Override
+    public Object toDbValue(@Nullable URI value) {
+      return value != null ? value.toString() : null;
+    }
+
+    @Override
+    public Serializer<URI> serializer() {
+      return new Serializer<>() {
+        @Override
+        public byte[] serialize(URI value) {
+          return value.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public URI deserialize(byte[] bytes) {
+          return URI.create(new String(bytes, StandardCharsets.UTF_8));
+        }
+      };
+    }
+  };
+
+  @Test
+  public void testCodecSerializerOfUnknownType() throws ReflectiveOperationException {
+    List<ColumnDefinition> columnDefinitions = List.of(
+        column("id", ColumnCodecs.LONG),
+        column("link", URI_CODEC)
+    );
+    EntityRowFormat<LinkEntity> format = new EntityRowFormat<>(
+        columnDefinitions,
+        0,
+        new MethodHandleEntityMapper<>(LinkEntity.class, columnDefinitions)
+    );
+    EntityRowFormat.RowOutput out = new EntityRowFormat.RowOutput(16);
+    format.writeKey(5L, out);
+    format.writeRow(new LinkEntity(5L, URI.create("https://example.com/a")), out);
+    LinkEntity read = format.read(ByteBuffer.wrap(out.array(), 0, out.position()));
+    Assert.assertEquals(5L, read.id);
+    Assert.assertEquals(URI.create("https://example.com/a"), read.link);
+  }
+
+  @Test
+  public void testUnknownTypeWithoutSerializerIsRejected() throws ReflectiveOperationException {
+    List<ColumnDefinition> columnDefinitions = List.of(
+        column("id", ColumnCodecs.LONG),
+        column("link", ColumnCodecs.object(URI.class))
+    );
+    var entityMapper = new MethodHandleEntityMapper<>(LinkEntity.class, columnDefinitions);
+    Assert.assertThrows(
+        IllegalStateException.class,
+        () -> new EntityRowFormat<>(columnDefinitions, 0, entityMapper)
+    );
+  }
+
+  private static ColumnDefinition column(String fieldName, ColumnCodec<?> codec)
+      throws ReflectiveOperationException {
+    var field = LinkEntity.class.getField(fieldName);
+    return new ColumnDefinition(
+        field,
+        fieldName,
+        field.getType(),
+        null,
+        null,
+        true,
+        List.of(),
+        null,
+        codec
+    );
+  }
+
+  public static class LinkEntity {
+
+    public final long id;
+    @Nullable
+    public final URI link;
+
+    public LinkEntity(long id, @Nullable URI link) {
+      this.id = id;
+      this.link = link;
+    }
+  }
+}
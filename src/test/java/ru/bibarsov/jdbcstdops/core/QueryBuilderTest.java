@@ -6,6 +6,7 @@ import java.util.Objects;
 import javax.annotation.ParametersAreNonnullByDefault;
 import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import ru.bibarsov.jdbcstdops.util.Pair;
 import ru.bibarsov.jdbcstdops.value.QueryType;
 
@@ -154,4 +155,188 @@ public class QueryBuilderTest {
     );
     Assert.assertEquals(Boolean.FALSE, build.hasReturningStatement);
   }
+
+  @Test
+  public void testNullConditionQueryBuild() {
+    QueryBuilder queryBuilder = new QueryBuilder(new ColumnValueConverter());
+    queryBuilder.setType(QueryType.SELECT);
+    queryBuilder.setTableName("foobar");
+    queryBuilder.setColumnsToSelect(List.of("id"));
+    queryBuilder.setCondition(
+        new QueryColDef(
+            "id", //columnName
+            null, //idMetadata
+            null  //enumMetadata
+        ),
+        null
+    );
+    Query build = queryBuilder.build();
+    //null is bound as a value, not rendered as IS NULL
+    Assert.assertEquals(
+        "SELECT id FROM foobar WHERE id = :id OFFSET 0 LIMIT 2147483647",
+        build.sqlQuery
+    );
+    Assert.assertTrue(Objects.requireNonNull(build.parameterSource).hasValue("id"));
+    Assert.assertNull(Objects.requireNonNull(build.parameterSource).getValue("id"));
+  }
+
+  @Test
+  public void testCompiledMultiRowInsertReturningQuery() {
+    QueryColDef id = new QueryColDef("id", new IdMetadata(true, false, "foobar_seq"), null);
+    QueryColDef name = new QueryColDef("name", null, null);
+    QueryPlan plan = new QueryBuilder(new ColumnValueConverter())
+        .setType(QueryType.INSERT)
+        .setTableName("foobar")
+        .setIdColumn(id)
+        .setColumnsToInsert(List.of(id, name))
+        .setGenerateAndReturnId(true)
+        .setRowCount(2)
+        .compile();
+    Assert.assertEquals(
+        "WITH generated_ids AS (SELECT nextval('foobar_seq') AS id, ord"
+            + " FROM generate_series(1, 2) AS ord),"
+            + " inserted AS (INSERT INTO foobar (id,name) SELECT g.id,v.name FROM (VALUES"
+            + " (0,(NULL::foobar).name),(1,:name_0),(2,:name_1)) v(ord,name)"
+            + " JOIN generated_ids g USING (ord))"
+            + " SELECT id FROM generated_ids ORDER BY ord",
+        plan.sqlQuery
+    );
+    SqlParameterSource parameterSource = plan.bind(new Object[]{null, "name-0", null, "name-1"});
+    Assert.assertEquals("name-0", parameterSource.getValue("name_0"));
+    Assert.assertEquals("name-1", parameterSource.getValue("name_1"));
+    Assert.assertTrue(plan.hasReturningStatement);
+  }
+
+  @Test
+  public void testCompiledMultiRowUpsertReturningQuery() {
+    QueryColDef id = new QueryColDef("id", new IdMetadata(true, false, "foobar_seq"), null);
+    QueryColDef name = new QueryColDef("name", null, null);
+    QueryPlan plan = new QueryBuilder(new ColumnValueConverter())
+        .setType(QueryType.UPSERT)
+        .setTableName("foobar")
+        .setIdColumn(id)
+        .setColumnsToInsert(List.of(id, name))
+        .setGenerateAndReturnId(true)
+        .setRowCount(2)
+        .compile();
+    Assert.assertEquals(
+        "WITH generated_ids AS (SELECT nextval('foobar_seq') AS id, ord"
+            + " FROM generate_series(1, 2) AS ord),"
+            + " inserted AS (INSERT INTO foobar (id,name) SELECT g.id,v.name FROM (VALUES"
+            + " (0,(NULL::foobar).name),(1,:name_0),(2,:name_1)) v(ord,name)"
+            + " JOIN generated_ids g USING (ord)"
+            + " ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name)"
+            + " SELECT id FROM generated_ids ORDER BY ord",
+        plan.sqlQuery
+    );
+    //values of row i start at i * number of columns
+    Assert.assertEquals(1, plan.parameters.get(0).valueIndex);
+    Assert.assertEquals(3, plan.parameters.get(1).valueIndex);
+    Assert.assertTrue(plan.hasReturningStatement);
+  }
+
+  @Test
+  public void testInConditionSelectQueryBuild() {
+    QueryBuilder queryBuilder = new QueryBuilder(new ColumnValueConverter());
+    queryBuilder.setType(QueryType.SELECT);
+    queryBuilder.setTableName("foobar");
+    queryBuilder.setColumnsToSelect(List.of("id", "name"));
+    queryBuilder.setInCondition(new QueryColDef("id", null, null), List.of(1L, 2L));
+    Query build = queryBuilder.build();
+    Assert.assertEquals(
+        "SELECT id,name FROM foobar WHERE id = ANY(:id) OFFSET 0 LIMIT 2147483647",
+        build.sqlQuery
+    );
+    Assert.assertArrayEquals(new Long[]{1L, 2L}, (Long[]) build.parameterSource.getValue("id"));
+  }
+
+  @Test
+  public void testCompositeInConditionSelectQueryBuild() {
+    QueryBuilder queryBuilder = new QueryBuilder(new ColumnValueConverter());
+    queryBuilder.setType(QueryType.SELECT);
+    queryBuilder.setTableName("foobar");
+    queryBuilder.setColumnsToSelect(List.of("col1", "col2"));
+    queryBuilder.setInCondition(new QueryColDef("col1", null, null), List.of(1, 2));
+    queryBuilder.setInCondition(new QueryColDef("col2", null, null), List.of(3, 4));
+    Query build = queryBuilder.build();
+    Assert.assertEquals(
+        "SELECT col1,col2 FROM foobar WHERE (col1,col2) IN (SELECT * FROM unnest(:col1,:col2))"
+            + " OFFSET 0 LIMIT 2147483647",
+        build.sqlQuery
+    );
+    Assert.assertArrayEquals(
+        new Integer[]{3, 4},
+        (Integer[]) build.parameterSource.getValue("col2")
+    );
+  }
+
+  @Test
+  public void testCompiledSelectQuery() {
+    QueryColDef id = new QueryColDef("id", null, null);
+    QueryPlan plan = new QueryBuilder(new ColumnValueConverter())
+        .setType(QueryType.SELECT)
+        .setTableName("foobar")
+        .setColumnsToSelect(List.of("id", "name"))
+        .setConditionColumns(List.of(id))
+        .compile();
+    Assert.assertEquals("SELECT id,name FROM foobar WHERE id = :id", plan.sqlQuery);
+    Assert.assertEquals("SELECT id,name FROM foobar WHERE id = ?", plan.positionalSqlQuery);
+    Assert.assertEquals(
+        5L, //expected
+        plan.bind(new Object[]{5L}).getValue("id")
+    );
+  }
+
+  @Test
+  public void testCompiledPagedSelectQuery() {
+    QueryPlan plan = new QueryBuilder(new ColumnValueConverter())
+        .setType(QueryType.SELECT)
+        .setTableName("foobar")
+        .setColumnsToSelect(List.of("id", "name"))
+        .setPaged(true)
+        .compile();
+    Assert.assertEquals("SELECT id,name FROM foobar OFFSET :offset LIMIT :limit", plan.sqlQuery);
+    var parameterSource = plan.bind(new Object[]{10, 20});
+    Assert.assertEquals(10, parameterSource.getValue("offset"));
+    Assert.assertEquals(20, parameterSource.getValue("limit"));
+  }
+
+  @Test
+  public void testCompiledKeysetSelectQuery() {
+    QueryColDef col1 = new QueryColDef("col1", new IdMetadata(false, true, null), null);
+    QueryColDef col2 = new QueryColDef("col2", new IdMetadata(false, true, null), null);
+    QueryPlan plan = new QueryBuilder(new ColumnValueConverter())
+        .setType(QueryType.SELECT)
+        .setTableName("foobar")
+        .setColumnsToSelect(List.of("col1", "col2", "name"))
+        .setKeyset(List.of(col1, col2))
+        .setPaged(true)
+        .compile();
+    Assert.assertEquals(
+        "SELECT col1,col2,name FROM foobar WHERE (col1,col2) > (:last_col1,:last_col2) "
+            + "ORDER BY col1,col2 LIMIT :limit",
+        plan.sqlQuery
+    );
+    var parameterSource = plan.bind(new Object[]{1, 2, 0, 10});
+    Assert.assertEquals(1, parameterSource.getValue("last_col1"));
+    Assert.assertEquals(2, parameterSource.getValue("last_col2"));
+    Assert.assertEquals(10, parameterSource.getValue("limit"));
+  }
+
+  @Test
+  public void testCompiledRangeSelectQuery() {
+    QueryPlan plan = new QueryBuilder(new ColumnValueConverter())
+        .setType(QueryType.SELECT)
+        .setTableName("foobar")
+        .setColumnsToSelect(List.of("id", "name"))
+        .setRange(List.of(new QueryColDef("id", null, null)))
+        .compile();
+    Assert.assertEquals(
+        "SELECT id,name FROM foobar WHERE id >= :from_id AND id <= :to_id",
+        plan.sqlQuery
+    );
+    var parameterSource = plan.bind(new Object[]{1L, 10L});
+    Assert.assertEquals(1L, parameterSource.getValue("from_id"));
+    Assert.assertEquals(10L, parameterSource.getValue("to_id"));
+  }
 }
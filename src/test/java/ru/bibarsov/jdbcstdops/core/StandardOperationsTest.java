@@ -3,18 +3,37 @@ package ru.bibarsov.jdbcstdops.core;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static ru.bibarsov.jdbcstdops.util.Preconditions.checkNotNull;
 
+import java.time.Duration;
 import java.time.Instant;
 import ru.bibarsov.jdbcstdops.entity.Entity;
 import ru.bibarsov.jdbcstdops.entity.EntityWithCompositeId;
 import ru.bibarsov.jdbcstdops.entity.EntityWithCompositeId.EntityId;
 import ru.bibarsov.jdbcstdops.entity.EntityWithDeferredId;
+import ru.bibarsov.jdbcstdops.entity.EntityWithPooledId;
 import ru.bibarsov.jdbcstdops.helper.DatabaseManager;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import javax.annotation.ParametersAreNonnullByDefault;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.hamcrest.CoreMatchers;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -23,10 +42,16 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.bibarsov.jdbcstdops.value.DeferredId;
+import ru.bibarsov.jdbcstdops.value.IdRange;
 import ru.bibarsov.jdbcstdops.value.EntType1;
 import ru.bibarsov.jdbcstdops.value.EntType2;
 import ru.bibarsov.jdbcstdops.value.EntType3;
+import ru.bibarsov.jdbcstdops.value.OperationType;
 
 @ParametersAreNonnullByDefault
 public class StandardOperationsTest {
@@ -127,6 +152,388 @@ public class StandardOperationsTest {
     Assert.assertEquals(entity, entityStdOps.findOne(1L));
   }
 
+  @Test
+  public void testCreateKeepsMicrosOfInstant() {
+    var entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate);
+    var createdAt = Instant.parse("2021-01-01T10:00:00.123456Z");
+    var entity = new Entity(1L, "simple", null, EntType1.A, EntType2.F, EntType3.G, createdAt);
+    entityStdOps.create(entity);
+    Assert.assertEquals(createdAt, checkNotNull(entityStdOps.findOne(1L)).createdAt);
+  }
+
+  @Test
+  public void testCustomColumnCodec() {
+    ColumnCodecRegistry codecRegistry = ColumnCodecRegistry.createDefault()
+        .register(String.class, ColumnCodecs.of(
+            (rs, i) -> rs.getString(i),
+            value -> value.toUpperCase()
+        ));
+    var entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate, codecRegistry);
+    entityStdOps.create(
+        new Entity(1L, "simple", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH)
+    );
+    Assert.assertEquals(
+        new Entity(1L, "SIMPLE", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH),
+        entityStdOps.findOne(1L)
+    );
+  }
+
+  @Test
+  public void testQueryListener() {
+    LatencyRecorder recorder = new LatencyRecorder();
+    var entityStdOps = new StandardOperations<>(
+        Entity.class,
+        jdbcTemplate,
+        new StandardOperationsConfig().setQueryListener(recorder)
+    );
+    entityStdOps.create(
+        new Entity(1L, "example", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH)
+    );
+    entityStdOps.findOne(1L);
+    entityStdOps.findOne(2L);
+    LatencyHistogram creates = checkNotNull(
+        recorder.getHistogram(OperationType.CREATE, "entity"),
+        "No histogram for create"
+    );
+    LatencyHistogram finds = checkNotNull(
+        recorder.getHistogram(OperationType.FIND_ONE, "entity"),
+        "No histogram for findOne"
+    );
+    Assert.assertEquals(1, creates.count());
+    Assert.assertEquals(2, finds.count());
+    Assert.assertTrue(finds.percentileNanos(50) <= finds.maxNanos());
+    Assert.assertEquals(2, recorder.snapshot().size());
+  }
+
+  @Test
+  public void testDefaultQueryListener() {
+    //slf4j-simple logs at INFO, so default listener does nothing
+    Assert.assertSame(QueryListener.NOOP, new StandardOperationsConfig().getQueryListener());
+  }
+
+  @Test
+  public void testFlightRecorderEvents() throws IOException {
+    var entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate);
+    Path file = Files.createTempFile("jdbc-std-ops", ".jfr");
+    try (Recording recording = new Recording()) {
+      entityStdOps.findOne(1L); //not recorded, event is disabled by default
+      recording.enable(QueryEvent.NAME);
+      recording.start();
+      entityStdOps.create(
+          new Entity(1L, "example", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH)
+      );
+      entityStdOps.findOne(1L);
+      recording.stop();
+      recording.dump(file);
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+          .filter(e -> e.getEventType().getName().equals(QueryEvent.NAME))
+          .collect(Collectors.toList());
+      Assert.assertEquals(2, events.size());
+      //bound values are measured for recording even with no-op listener
+      Assert.assertTrue(events.get(0).getLong("boundBytes") > 0);
+      RecordedEvent findOne = events.get(1);
+      Assert.assertEquals(Entity.class.getName(), findOne.getClass("entityClass").getName());
+      Assert.assertEquals(OperationType.FIND_ONE.name(), findOne.getString("operationType"));
+      Assert.assertEquals("entity", findOne.getString("tableName"));
+      Assert.assertEquals(1, findOne.getInt("rowCount"));
+      Assert.assertTrue(findOne.getDuration("totalNanos").toNanos() > 0);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testFindOneCache() {
+    LatencyRecorder recorder = new LatencyRecorder();
+    StandardOperations<Entity, Long> entityStdOps = new StandardOperations<>(
+        Entity.class,
+        jdbcTemplate,
+        new StandardOperationsConfig().setQueryListener(recorder).setCache(2, null)
+    );
+    var entity = new Entity(1L, "example", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH);
+    entityStdOps.create(entity);
+    Assert.assertEquals(entity, entityStdOps.findOne(1L));
+    Assert.assertEquals(entity, entityStdOps.findOne(1L));
+    LatencyHistogram finds = checkNotNull(
+        recorder.getHistogram(OperationType.FIND_ONE, "entity"),
+        "No histogram for findOne"
+    );
+    Assert.assertEquals(1, finds.count());
+    EntityCache<Long, Entity> cache = checkNotNull(entityStdOps.getCache(), "No cache");
+    Assert.assertEquals(1, cache.stats().hitCount);
+    Assert.assertEquals(1, cache.stats().loadCount);
+
+    entityStdOps.createOrUpdate(
+        new Entity(1L, "updated", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH)
+    );
+    Assert.assertEquals("updated", checkNotNull(entityStdOps.findOne(1L), "Not found").name);
+    entityStdOps.deleteOne(1L);
+    Assert.assertNull(entityStdOps.findOne(1L));
+
+    //stale read loaded before invalidation isn't cached
+    long stamp = cache.stamp(2L);
+    cache.invalidate(2L);
+    cache.putLoaded(2L, entity, stamp, 0);
+    Assert.assertNull(cache.get(2L));
+
+    entityStdOps.createAll(List.of(
+        new Entity(2L, "example-2", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH),
+        new Entity(3L, "example-3", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH),
+        new Entity(4L, "example-4", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH)
+    ));
+    for (long id = 2; id <= 4; id++) {
+      entityStdOps.findOne(id);
+    }
+    Assert.assertTrue(cache.size() <= 2);
+    Assert.assertTrue(cache.stats().evictionCount > 0);
+  }
+
+  @Test
+  public void testFindOneCacheTtl() throws InterruptedException {
+    var entityStdOps = new StandardOperations<>(
+        Entity.class,
+        jdbcTemplate,
+        new StandardOperationsConfig().setCache(10, Duration.ofMillis(50))
+    );
+    entityStdOps.create(
+        new Entity(1L, "example", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH)
+    );
+    entityStdOps.findOne(1L);
+    Thread.sleep(100);
+    entityStdOps.findOne(1L);
+    EntityCache.Stats stats = checkNotNull(entityStdOps.getCache(), "No cache").stats();
+    Assert.assertEquals(0, stats.hitCount);
+    Assert.assertEquals(2, stats.loadCount);
+    Assert.assertEquals(1, stats.evictionCount);
+  }
+
+  @Test
+  public void testFindOneCacheInTransaction() {
+    StandardOperations<Entity, Long> entityStdOps = new StandardOperations<>(
+        Entity.class,
+        jdbcTemplate,
+        new StandardOperationsConfig().setCache(10, null)
+    );
+    EntityCache<Long, Entity> cache = checkNotNull(entityStdOps.getCache(), "No cache");
+    var transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(
+        checkNotNull(jdbcTemplate.getJdbcTemplate().getDataSource())
+    ));
+    var entity = new Entity(1L, "example", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH);
+
+    //uncommitted row isn't visible to other threads through cache
+    transactionTemplate.executeWithoutResult(status -> {
+      entityStdOps.createOrUpdate(entity);
+      Assert.assertEquals(entity, entityStdOps.findOne(1L));
+      Assert.assertEquals(0, cache.size());
+    });
+
+    //snapshot of repeatable read transaction isn't cached after commit
+    var otherStdOps = new StandardOperations<>(
+        Entity.class,
+        new NamedParameterJdbcTemplate(db.getTemplateDatabase())
+    );
+    transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    transactionTemplate.executeWithoutResult(status -> {
+      Assert.assertEquals(entity, entityStdOps.findOne(1L));
+      otherStdOps.createOrUpdate(
+          new Entity(1L, "updated", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH)
+      );
+      Assert.assertEquals(entity, entityStdOps.findOne(1L));
+    });
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals("updated", checkNotNull(entityStdOps.findOne(1L), "Not found").name);
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testFindOneOffHeapCache() {
+    LatencyRecorder recorder = new LatencyRecorder();
+    StandardOperations<Entity, Long> entityStdOps = new StandardOperations<>(
+        Entity.class,
+        jdbcTemplate,
+        new StandardOperationsConfig().setQueryListener(recorder).setOffHeapCache(1 << 20)
+    );
+    Instant createdAt = Instant.ofEpochMilli(1);
+    var entity = new Entity(1L, "example", "text", EntType1.A, EntType2.F, EntType3.G, createdAt);
+    entityStdOps.create(entity);
+    Assert.assertEquals(entity, entityStdOps.findOne(1L));
+    Assert.assertEquals(entity, entityStdOps.findOne(1L));
+    Assert.assertNotSame(entityStdOps.findOne(1L), entityStdOps.findOne(1L));
+    LatencyHistogram finds = checkNotNull(
+        recorder.getHistogram(OperationType.FIND_ONE, "entity"),
+        "No histogram for findOne"
+    );
+    Assert.assertEquals(1, finds.count());
+    OffHeapEntityStore<Long, Entity> store =
+        checkNotNull(entityStdOps.getOffHeapStore(), "No off-heap store");
+    Assert.assertEquals(1, store.size());
+    Assert.assertTrue(store.usedBytes() > 0);
+
+    entityStdOps.createOrUpdate(
+        new Entity(1L, "updated", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH)
+    );
+    Entity updated = checkNotNull(entityStdOps.findOne(1L), "Not found");
+    Assert.assertEquals("updated", updated.name);
+    Assert.assertNull(updated.nullName);
+    entityStdOps.deleteOne(1L);
+    Assert.assertNull(entityStdOps.findOne(1L));
+    Assert.assertEquals(0, store.size());
+
+    //both tiers, off-heap hit is promoted to heap
+    StandardOperations<EntityWithDeferredId, Long> entityDefStdOps = new StandardOperations<>(
+        EntityWithDeferredId.class,
+        jdbcTemplate,
+        new StandardOperationsConfig().setCache(10, null).setOffHeapCache(1 << 20)
+    );
+    var entityDef = new EntityWithDeferredId(DeferredId.create(), "def");
+    entityDefStdOps.create(entityDef);
+    Assert.assertEquals(entityDef, entityDefStdOps.findOne(1L));
+    checkNotNull(entityDefStdOps.getCache(), "No cache").invalidateAll();
+    Assert.assertEquals(entityDef, entityDefStdOps.findOne(1L));
+    Assert.assertEquals(
+        1,
+        checkNotNull(entityDefStdOps.getOffHeapStore(), "No off-heap store").stats().hitCount
+    );
+    Assert.assertEquals(entityDef, entityDefStdOps.findOne(1L));
+    EntityCache.Stats cacheStats = checkNotNull(entityDefStdOps.getCache(), "No cache").stats();
+    Assert.assertEquals(1, cacheStats.hitCount);
+    //promotion isn't a load
+    Assert.assertEquals(1, cacheStats.loadCount);
+
+    StandardOperations<EntityWithCompositeId, EntityId> entityCompositeStdOps =
+        new StandardOperations<>(
+            EntityWithCompositeId.class,
+            jdbcTemplate,
+            new StandardOperationsConfig().setOffHeapCache(1 << 20)
+        );
+    var entityId = new EntityId(10, 20);
+    var entityComposite = new EntityWithCompositeId(entityId, "composite");
+    entityCompositeStdOps.create(entityComposite);
+    entityCompositeStdOps.findOne(entityId);
+    Assert.assertEquals(entityComposite, entityCompositeStdOps.findOne(new EntityId(10, 20)));
+    Assert.assertNull(entityCompositeStdOps.findOne(new EntityId(20, 10)));
+
+    //uncommitted row isn't stored off-heap
+    var transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(
+        checkNotNull(jdbcTemplate.getJdbcTemplate().getDataSource())
+    ));
+    transactionTemplate.executeWithoutResult(status -> {
+      entityStdOps.create(entity);
+      Assert.assertEquals(entity, entityStdOps.findOne(1L));
+      Assert.assertEquals(0, store.size());
+    });
+  }
+
+  @Test
+  public void testFindOneOffHeapCacheEviction() {
+    //the smallest store: slabs of 4 KiB in a single segment
+    StandardOperations<Entity, Long> entityStdOps = new StandardOperations<>(
+        Entity.class,
+        jdbcTemplate,
+        new StandardOperationsConfig().setOffHeapCache(32 * 1024)
+    );
+    List<Entity> entities = new ArrayList<>();
+    for (long id = 1; id <= 1000; id++) {
+      entities.add(
+          new Entity(id, "entity-" + id, null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH)
+      );
+    }
+    entityStdOps.createAll(entities);
+    for (Entity entity : entities) {
+      Assert.assertEquals(entity, entityStdOps.findOne(entity.id));
+    }
+    OffHeapEntityStore<Long, Entity> store =
+        checkNotNull(entityStdOps.getOffHeapStore(), "No off-heap store");
+    Assert.assertTrue(store.stats().evictionCount > 0);
+    Assert.assertEquals(1000, store.size() + store.stats().evictionCount);
+    Assert.assertEquals(32 * 1024, store.allocatedBytes());
+    //the most recently loaded entities survive
+    Assert.assertEquals(entities.get(999), entityStdOps.findOne(1000L));
+    Assert.assertEquals(1, store.stats().hitCount);
+  }
+
+  @Test
+  public void testReferenceSnapshot() throws InterruptedException {
+    jdbcTemplate.getJdbcTemplate().execute(""
+        + "CREATE OR REPLACE FUNCTION notify_entity() RETURNS trigger AS $$ "
+        + "BEGIN "
+        + "  PERFORM pg_notify('entity_changed', COALESCE(NEW.id, OLD.id)::text); "
+        + "  RETURN NULL; "
+        + "END $$ LANGUAGE plpgsql; "
+        + "CREATE TRIGGER entity_changed AFTER INSERT OR UPDATE OR DELETE ON entity "
+        + "FOR EACH ROW EXECUTE FUNCTION notify_entity();"
+    );
+    StandardOperations<Entity, Long> entityStdOps =
+        new StandardOperations<>(Entity.class, jdbcTemplate);
+    var first = new Entity(1L, "first", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH);
+    entityStdOps.create(first);
+    ReferenceSnapshot<Long, Entity> snapshot = entityStdOps.createSnapshot("type_1");
+    Assert.assertEquals(first, snapshot.get(1L));
+    Assert.assertEquals(List.of(first), snapshot.findBy("type_1", EntType1.A));
+
+    //pooled connections without autocommit must receive notifications as well
+    HikariConfig hikariConfig = new HikariConfig();
+    hikariConfig.setDataSource(db.getTemplateDatabase());
+    hikariConfig.setAutoCommit(false);
+    hikariConfig.setMaximumPoolSize(1);
+    try (HikariDataSource dataSource = new HikariDataSource(hikariConfig)) {
+      PgNotificationListener listener =
+          snapshot.listen(dataSource, "entity_changed", Long::valueOf);
+      try {
+        var second =
+            new Entity(2L, "second", null, EntType1.B, EntType2.F, EntType3.G, Instant.EPOCH);
+        entityStdOps.create(second);
+        awaitCondition(() -> snapshot.get(2L) != null);
+        Assert.assertEquals(List.of(second), snapshot.findBy("type_1", EntType1.B));
+
+        entityStdOps.deleteOne(1L);
+        awaitCondition(() -> snapshot.get(1L) == null);
+        Assert.assertEquals(List.of(), snapshot.findBy("type_1", EntType1.A));
+        Assert.assertEquals(1, snapshot.size());
+      } finally {
+        listener.close();
+      }
+    }
+    var movedSecond =
+        new Entity(2L, "second", null, EntType1.A, EntType2.F, EntType3.G, Instant.EPOCH);
+    entityStdOps.createOrUpdate(movedSecond);
+    snapshot.refresh(List.of(2L));
+    Assert.assertEquals(List.of(), snapshot.findBy("type_1", EntType1.B));
+    Assert.assertEquals(List.of(movedSecond), snapshot.findBy("type_1", EntType1.A));
+  }
+
+  private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+    long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      Assert.assertTrue("Condition is not met in time", System.nanoTime() < deadlineNanos);
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testStreamAll() {
+    var entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate);
+    var entities = List.of(
+        new Entity(1L, "example-1", null, EntType1.A, EntType2.D, EntType3.G, Instant.EPOCH),
+        new Entity(2L, "example-2", "notnull", EntType1.B, EntType2.E, EntType3.H, Instant.EPOCH),
+        new Entity(3L, "example-3", null, EntType1.C, EntType2.F, EntType3.I, Instant.EPOCH)
+    );
+    entityStdOps.createAll(entities);
+    try (Stream<Entity> all = entityStdOps.streamAll(2)) {
+      assertThat(
+          all.sorted(Comparator.comparingLong(e -> e.id)).collect(Collectors.toList()),
+          CoreMatchers.is(entities)
+      );
+    }
+    try (Stream<Entity> all = entityStdOps.streamAll(1)) {
+      Assert.assertEquals(1, all.limit(1).count());
+    }
+    List<Entity> consumed = new ArrayList<>();
+    entityStdOps.forEach(consumed::add, 2);
+    consumed.sort(Comparator.comparingLong(e -> e.id));
+    assertThat(consumed, CoreMatchers.is(entities));
+  }
+
   @Test
   public void testCreateForDeferred() {
     var entityDefStdOps = new StandardOperations<>(EntityWithDeferredId.class, jdbcTemplate);
@@ -178,4 +585,355 @@ public class StandardOperationsTest {
     entityCompositeStdOps.deleteOne(entityId);
     Assert.assertNull(entityCompositeStdOps.findOne(entityId));
   }
+
+  @Test
+  public void testCreateAll() {
+    var entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate);
+    List<Entity> entities = List.of(
+        new Entity(1L, "example-1", null, EntType1.A, EntType2.D, EntType3.G, Instant.EPOCH),
+        new Entity(2L, "example-2", "notnull", EntType1.B, EntType2.E, EntType3.H, Instant.EPOCH),
+        new Entity(3L, "example-3", null, EntType1.C, EntType2.F, EntType3.I, Instant.EPOCH)
+    );
+    int[] counts = entityStdOps.createAll(entities, 2);
+    Assert.assertArrayEquals(new int[]{1, 1, 1}, counts);
+    //buffers are sized by the collection, not by batch size
+    Assert.assertArrayEquals(
+        new int[]{1},
+        entityStdOps.createOrUpdateAll(List.of(entities.get(0)), Integer.MAX_VALUE)
+    );
+    List<Entity> all = entityStdOps.getAll().stream()
+        .sorted(Comparator.comparingLong(e -> e.id))
+        .collect(Collectors.toList());
+    assertThat(all, CoreMatchers.is(entities));
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testGetAllPaged() {
+    var entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate);
+    List<Entity> entities = List.of(
+        new Entity(1L, "example-1", null, EntType1.A, EntType2.D, EntType3.G, Instant.EPOCH),
+        new Entity(2L, "example-2", null, EntType1.B, EntType2.E, EntType3.H, Instant.EPOCH),
+        new Entity(3L, "example-3", null, EntType1.C, EntType2.F, EntType3.I, Instant.EPOCH)
+    );
+    entityStdOps.createAll(entities);
+    Assert.assertEquals(2, entityStdOps.getAll(0, 2).size());
+    Assert.assertEquals(1, entityStdOps.getAll(2, 2).size());
+    Assert.assertEquals(0, entityStdOps.getAll(3, 2).size());
+  }
+
+  @Test
+  public void testGetPageByCompositeId() {
+    var entityCompositeStdOps = new StandardOperations<>(EntityWithCompositeId.class, jdbcTemplate);
+    var entities = List.of(
+        new EntityWithCompositeId(new EntityId(1, 1), "first"),
+        new EntityWithCompositeId(new EntityId(1, 2), "second"),
+        new EntityWithCompositeId(new EntityId(2, 1), "third")
+    );
+    entityCompositeStdOps.createAll(List.of(entities.get(2), entities.get(0), entities.get(1)));
+    var firstPage = entityCompositeStdOps.getFirstPage(2);
+    assertThat(firstPage.entities, CoreMatchers.is(entities.subList(0, 2)));
+    Assert.assertTrue(firstPage.hasNext);
+    Assert.assertEquals(new EntityId(1, 2), firstPage.lastId);
+    var secondPage = entityCompositeStdOps.getPage(firstPage.lastId, 2);
+    assertThat(secondPage.entities, CoreMatchers.is(entities.subList(2, 3)));
+    Assert.assertFalse(secondPage.hasNext);
+    var emptyPage = entityCompositeStdOps.getPage(secondPage.lastId, 2);
+    Assert.assertTrue(emptyPage.entities.isEmpty());
+    Assert.assertEquals(secondPage.lastId, emptyPage.lastId);
+  }
+
+  @Test
+  public void testIterateAll() throws InterruptedException {
+    var entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate);
+    List<Entity> entities = IntStream.rangeClosed(1, 5)
+        .mapToObj(i -> new Entity(
+            i, "example-" + i, null, EntType1.A, EntType2.D, EntType3.G, Instant.EPOCH
+        ))
+        .collect(Collectors.toList());
+    entityStdOps.createAll(entities);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      List<Entity> iterated = new ArrayList<>();
+      try (var iterator = entityStdOps.iterateAll(2, 1, executor)) {
+        iterator.forEachRemaining(iterated::add);
+      }
+      assertThat(iterated, CoreMatchers.is(entities));
+      try (var iterator = entityStdOps.iterateAll(1, 1, executor)) {
+        Assert.assertEquals(entities.get(0), iterator.next());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    //fetching task is released by close
+    Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testParallelScan() {
+    var entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate);
+    List<Entity> entities = IntStream.rangeClosed(1, 10)
+        .mapToObj(i -> new Entity(
+            i, "example-" + i, null, EntType1.A, EntType2.D, EntType3.G, Instant.EPOCH
+        ))
+        .collect(Collectors.toList());
+    entityStdOps.createAll(entities);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<Entity> scanned = entityStdOps.parallelScan(3, executor, Collectors.toList());
+      scanned.sort(Comparator.comparingLong(e -> e.id));
+      assertThat(scanned, CoreMatchers.is(entities));
+
+      var entityCompositeStdOps =
+          new StandardOperations<>(EntityWithCompositeId.class, jdbcTemplate);
+      entityCompositeStdOps.createAll(List.of(
+          new EntityWithCompositeId(new EntityId(1, 1), "first"),
+          new EntityWithCompositeId(new EntityId(1, 2), "second"),
+          new EntityWithCompositeId(new EntityId(2, 1), "third")
+      ));
+      long count = entityCompositeStdOps.parallelScan(
+          List.of(
+              IdRange.of(new EntityId(1, 1), new EntityId(1, 1)),
+              IdRange.of(new EntityId(1, 2), new EntityId(2, 2))
+          ),
+          executor,
+          Collectors.counting()
+      );
+      Assert.assertEquals(3L, count);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testForEachPipelined() {
+    var entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate);
+    List<Entity> entities = IntStream.rangeClosed(1, 1000)
+        .mapToObj(i -> new Entity(
+            i, "example-" + i, null, EntType1.A, EntType2.D, EntType3.G, Instant.EPOCH
+        ))
+        .collect(Collectors.toList());
+    entityStdOps.createAll(entities);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Entity> ordered = new ArrayList<>();
+      entityStdOps.forEachPipelined(ordered::add, executor, 2, true);
+      assertThat(ordered, CoreMatchers.is(entityStdOps.getAll()));
+
+      Queue<Entity> unordered = new ConcurrentLinkedQueue<>();
+      entityStdOps.forEachPipelined(unordered::add, executor, 2, false);
+      List<Entity> sorted = new ArrayList<>(unordered);
+      sorted.sort(Comparator.comparingLong(e -> e.id));
+      assertThat(sorted, CoreMatchers.is(entities));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testCreateAllForDeferred() {
+    var entityDefStdOps = new StandardOperations<>(EntityWithDeferredId.class, jdbcTemplate);
+    var explicit = new EntityWithDeferredId(DeferredId.ofImmediateId(100L), "explicit");
+    var generated1 = new EntityWithDeferredId(DeferredId.create(), "generated-1");
+    var generated2 = new EntityWithDeferredId(DeferredId.create(), "generated-2");
+    var generated3 = new EntityWithDeferredId(DeferredId.create(), "generated-3");
+    int[] counts = entityDefStdOps.createAll(
+        List.of(generated1, explicit, generated2, generated3),
+        2
+    );
+    Assert.assertArrayEquals(new int[]{1, 1, 1, 1}, counts);
+    Assert.assertEquals(explicit, entityDefStdOps.findOne(100L));
+    for (EntityWithDeferredId generated : List.of(generated1, generated2, generated3)) {
+      Assert.assertEquals(generated, entityDefStdOps.findOne(checkNotNull(generated.id.value)));
+    }
+    Assert.assertTrue(checkNotNull(generated1.id.value) < checkNotNull(generated2.id.value));
+    Assert.assertTrue(checkNotNull(generated2.id.value) < checkNotNull(generated3.id.value));
+  }
+
+  @Test
+  public void testCreateOrUpdateAllForDeferred() {
+    var entityDefStdOps = new StandardOperations<>(EntityWithDeferredId.class, jdbcTemplate);
+    var generated1 = new EntityWithDeferredId(DeferredId.create(), "generated-1");
+    var generated2 = new EntityWithDeferredId(DeferredId.create(), "generated-2");
+    int[] counts = entityDefStdOps.createOrUpdateAll(List.of(generated1, generated2));
+    Assert.assertArrayEquals(new int[]{1, 1}, counts);
+    Assert.assertEquals(generated1, entityDefStdOps.findOne(checkNotNull(generated1.id.value)));
+    Assert.assertEquals(generated2, entityDefStdOps.findOne(checkNotNull(generated2.id.value)));
+  }
+
+  @Test
+  public void testCreateOrUpdateAll() {
+    var entityCompositeStdOps = new StandardOperations<>(EntityWithCompositeId.class, jdbcTemplate);
+    entityCompositeStdOps.create(new EntityWithCompositeId(new EntityId(1, 1), "original"));
+    var updated = new EntityWithCompositeId(new EntityId(1, 1), "updated");
+    var created = new EntityWithCompositeId(new EntityId(1, 2), "created");
+    int[] counts = entityCompositeStdOps.createOrUpdateAll(List.of(updated, created), 1);
+    Assert.assertArrayEquals(new int[]{1, 1}, counts);
+    Assert.assertEquals(updated, entityCompositeStdOps.findOne(new EntityId(1, 1)));
+    Assert.assertEquals(created, entityCompositeStdOps.findOne(new EntityId(1, 2)));
+  }
+
+  @Test
+  public void testDeleteAll() {
+    var entityDefStdOps = new StandardOperations<>(EntityWithDeferredId.class, jdbcTemplate);
+    entityDefStdOps.createAll(List.of(
+        new EntityWithDeferredId(DeferredId.ofImmediateId(1L), "first"),
+        new EntityWithDeferredId(DeferredId.ofImmediateId(2L), "second"),
+        new EntityWithDeferredId(DeferredId.ofImmediateId(3L), "third")
+    ));
+    int[] counts = entityDefStdOps.deleteAll(List.of(1L, 3L, 4L), 2);
+    Assert.assertArrayEquals(new int[]{1, 1, 0}, counts);
+    Assert.assertEquals(1, entityDefStdOps.getAll().size());
+    Assert.assertNotNull(entityDefStdOps.findOne(2L));
+  }
+
+  @Test
+  public void testCreateWithPreAllocatedIds() {
+    var entityPooledStdOps = new StandardOperations<>(EntityWithPooledId.class, jdbcTemplate);
+    var single = new EntityWithPooledId(DeferredId.create(), "single");
+    entityPooledStdOps.create(single);
+    Assert.assertEquals(Long.valueOf(1L), single.id.value);
+
+    List<EntityWithPooledId> entities = List.of(
+        new EntityWithPooledId(DeferredId.create(), "pooled-2"),
+        new EntityWithPooledId(DeferredId.create(), "pooled-3"),
+        new EntityWithPooledId(DeferredId.create(), "pooled-4"),
+        new EntityWithPooledId(DeferredId.create(), "pooled-5")
+    );
+    int[] counts = entityPooledStdOps.createAll(entities);
+    Assert.assertArrayEquals(new int[]{1, 1, 1, 1}, counts);
+    for (int i = 0; i < entities.size(); i++) {
+      Assert.assertEquals(Long.valueOf(i + 2), entities.get(i).id.value);
+      Assert.assertEquals(entities.get(i), entityPooledStdOps.findOne((long) i + 2));
+    }
+    //two blocks of three values were fetched
+    Assert.assertEquals(
+        Long.valueOf(6L),
+        jdbcTemplate.getJdbcTemplate().queryForObject(
+            "SELECT last_value FROM entity_pooled_id_seq",
+            Long.class
+        )
+    );
+  }
+
+  @Test
+  public void testCopyAll() {
+    var entityStdOps = new StandardOperations<>(Entity.class, jdbcTemplate);
+    List<Entity> entities = List.of(
+        new Entity(1L, "tab\there", null, EntType1.A, EntType2.D, EntType3.G, Instant.EPOCH),
+        new Entity(2L, "line\nbreak", "back\\slash", EntType1.B, EntType2.E, EntType3.H,
+            Instant.EPOCH),
+        new Entity(3L, "example-3", "\\N", EntType1.C, EntType2.F, EntType3.I, Instant.EPOCH)
+    );
+    Assert.assertEquals(3L, entityStdOps.copyAll(entities));
+    for (Entity entity : entities) {
+      Entity found = checkNotNull(entityStdOps.findOne(entity.id));
+      Assert.assertEquals(entity.name, found.name);
+      Assert.assertEquals(entity.nullName, found.nullName);
+      Assert.assertEquals(entity.entityType2, found.entityType2);
+      Assert.assertEquals(entity.entityType3, found.entityType3);
+      Assert.assertEquals(entity.createdAt, found.createdAt);
+    }
+  }
+
+  @Test
+  public void testCopyAllTimestampWithTimeZone() throws Exception {
+    jdbcTemplate.getJdbcTemplate().execute(
+        "ALTER TABLE entity ALTER COLUMN created_at TYPE timestamp with time zone"
+    );
+    var dataSource = new SingleConnectionDataSource(db.getTemplateDatabase().getConnection(), true);
+    try {
+      //session zone differs from jvm zone
+      dataSource.getConnection().createStatement().execute("SET TimeZone = 'Pacific/Kiritimati'");
+      var entityStdOps = new StandardOperations<>(
+          Entity.class,
+          new NamedParameterJdbcTemplate(dataSource)
+      );
+      Instant createdAt = Instant.ofEpochSecond(1_600_000_000L, 123_456_000L);
+      entityStdOps.copyAll(List.of(
+          new Entity(1L, "example-1", null, EntType1.A, EntType2.D, EntType3.G, createdAt)
+      ));
+      Assert.assertEquals(createdAt, checkNotNull(entityStdOps.findOne(1L)).createdAt);
+    } finally {
+      dataSource.destroy();
+    }
+  }
+
+  @Test
+  public void testCopyAllComposite() {
+    var entityCompositeStdOps = new StandardOperations<>(EntityWithCompositeId.class, jdbcTemplate);
+    long copied = entityCompositeStdOps.copyAll(
+        IntStream.range(0, 10_000)
+            .mapToObj(i -> new EntityWithCompositeId(new EntityId(i / 100, i % 100), "c-" + i))
+    );
+    Assert.assertEquals(10_000L, copied);
+    Assert.assertEquals(
+        new EntityWithCompositeId(new EntityId(42, 17), "c-4217"),
+        entityCompositeStdOps.findOne(new EntityId(42, 17))
+    );
+  }
+
+  @Test
+  public void testCopyAllWithPreAllocatedIds() {
+    var entityPooledStdOps = new StandardOperations<>(EntityWithPooledId.class, jdbcTemplate);
+    var first = new EntityWithPooledId(DeferredId.create(), "first");
+    var second = new EntityWithPooledId(DeferredId.create(), "second");
+    Assert.assertEquals(2L, entityPooledStdOps.copyAll(List.of(first, second)));
+    Assert.assertEquals(first, entityPooledStdOps.findOne(checkNotNull(first.id.value)));
+    Assert.assertEquals(second, entityPooledStdOps.findOne(checkNotNull(second.id.value)));
+
+    var entityDefStdOps = new StandardOperations<>(EntityWithDeferredId.class, jdbcTemplate);
+    Assert.assertThrows(
+        IllegalStateException.class,
+        () -> entityDefStdOps.copyAll(List.of(new EntityWithDeferredId(DeferredId.create(), "x")))
+    );
+  }
+
+  @Test
+  public void testFindAllById() {
+    StandardOperations<Entity, Long> entityStdOps =
+        new StandardOperations<>(Entity.class, jdbcTemplate);
+    List<Entity> entities = List.of(
+        new Entity(1L, "example-1", null, EntType1.A, EntType2.D, EntType3.G, Instant.EPOCH),
+        new Entity(2L, "example-2", "notnull", EntType1.B, EntType2.E, EntType3.H, Instant.EPOCH),
+        new Entity(3L, "example-3", null, EntType1.C, EntType2.F, EntType3.I, Instant.EPOCH)
+    );
+    entityStdOps.createAll(entities);
+    assertThat(
+        entityStdOps.findAllById(List.of(3L, 1L, 42L, 2L), 2),
+        CoreMatchers.is(List.of(entities.get(2), entities.get(0), entities.get(1)))
+    );
+    Map<Long, Entity> byId = entityStdOps.findAllByIdAsMap(List.of(2L, 2L, 5L));
+    Assert.assertEquals(Map.of(2L, entities.get(1)), byId);
+    Assert.assertTrue(entityStdOps.findAllById(List.of()).isEmpty());
+  }
+
+  @Test
+  public void testFindAllByIdForDeferred() {
+    StandardOperations<EntityWithDeferredId, Long> entityDefStdOps =
+        new StandardOperations<>(EntityWithDeferredId.class, jdbcTemplate);
+    var first = new EntityWithDeferredId(DeferredId.create(), "first");
+    var second = new EntityWithDeferredId(DeferredId.create(), "second");
+    entityDefStdOps.createAll(List.of(first, second));
+    Map<Long, EntityWithDeferredId> byId = entityDefStdOps.findAllByIdAsMap(
+        List.of(checkNotNull(first.id.value), checkNotNull(second.id.value))
+    );
+    Assert.assertEquals(first, byId.get(first.id.value));
+    Assert.assertEquals(second, byId.get(second.id.value));
+  }
+
+  @Test
+  public void testFindAllByCompositeId() {
+    var entityCompositeStdOps = new StandardOperations<>(EntityWithCompositeId.class, jdbcTemplate);
+    var first = new EntityWithCompositeId(new EntityId(1, 2), "first");
+    var second = new EntityWithCompositeId(new EntityId(2, 1), "second");
+    var third = new EntityWithCompositeId(new EntityId(2, 2), "third");
+    entityCompositeStdOps.createAll(List.of(first, second, third));
+    assertThat(
+        entityCompositeStdOps.findAllById(
+            List.of(new EntityId(2, 1), new EntityId(1, 1), new EntityId(1, 2))
+        ),
+        CoreMatchers.is(List.of(second, first))
+    );
+  }
 }
@@ -31,9 +31,15 @@ public class DatabaseManager {
         + "              second_part   bigint            NOT NULL,"
         + "              name character varying NOT NULL,"
         + "              CONSTRAINT entity_composite_pkey PRIMARY KEY (first_part, second_part)"
+        + "          );"
+        + "      CREATE TABLE IF NOT EXISTS public.entity_pooled"
+        + "          ("
+        + "              id   bigint            NOT NULL PRIMARY KEY,"
+        + "              name character varying NOT NULL"
         + "          );"
             + ""
             + "      CREATE SEQUENCE IF NOT EXISTS public.entity_deferred_id_seq;"
+            + "      CREATE SEQUENCE IF NOT EXISTS public.entity_pooled_id_seq;"
     );
   }
 
@@ -43,7 +49,9 @@ public class DatabaseManager {
             + "      DROP TABLE IF EXISTS public.entity;"
             + "      DROP TABLE IF EXISTS public.entity_deferred;"
             + "      DROP TABLE IF EXISTS public.entity_composite;"
+            + "      DROP TABLE IF EXISTS public.entity_pooled;"
             + "      DROP SEQUENCE IF EXISTS public.entity_deferred_id_seq;"
+            + "      DROP SEQUENCE IF EXISTS public.entity_pooled_id_seq;"
     );
   }
 }
@@ -0,0 +1,48 @@
+package ru.bibarsov.jdbcstdops.load;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import ru.bibarsov.jdbcstdops.core.LatencyHistogram;
+
+/**
+ * Records time threads wait for a pooled connection, histogram is replaced on every load step
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class ConnectionWaitTracker implements MetricsTrackerFactory, IMetricsTracker {
+
+  private volatile LatencyHistogram waits = new LatencyHistogram();
+  private volatile LongAdder timeouts = new LongAdder();
+
+  @Override
+  public IMetricsTracker create(String poolName, PoolStats poolStats) {
+    return this;
+  }
+
+  @Override
+  public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+    waits.record(elapsedAcquiredNanos);
+  }
+
+  @Override
+  public void recordConnectionTimeout() {
+    timeouts.increment();
+  }
+
+  public void reset() {
+    this.waits = new LatencyHistogram();
+    this.timeouts = new LongAdder();
+  }
+
+  public LatencyHistogram getWaits() {
+    return waits;
+  }
+
+  public long getTimeouts() {
+    return timeouts.sum();
+  }
+}
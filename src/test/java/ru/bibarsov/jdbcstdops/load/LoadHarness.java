@@ -0,0 +1,351 @@
+package ru.bibarsov.jdbcstdops.load;
+
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkArgument;
+import static ru.bibarsov.jdbcstdops.util.Preconditions.checkState;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+import javax.annotation.ParametersAreNonnullByDefault;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.bibarsov.jdbcstdops.core.LatencyHistogram;
+import ru.bibarsov.jdbcstdops.core.QueryListener;
+import ru.bibarsov.jdbcstdops.core.StandardOperations;
+import ru.bibarsov.jdbcstdops.core.StandardOperationsConfig;
+import ru.bibarsov.jdbcstdops.entity.Entity;
+import ru.bibarsov.jdbcstdops.helper.DatabaseManager;
+import ru.bibarsov.jdbcstdops.value.EntType1;
+import ru.bibarsov.jdbcstdops.value.EntType2;
+import ru.bibarsov.jdbcstdops.value.EntType3;
+
+/**
+ * Load harness: fills {@code entity} table of embedded postgres and runs mixed workload through
+ * StandardOperations at every given thread count, sharing one connection pool. Every step prints
+ * throughput, latency percentiles per operation and connection wait time.
+ * <p>
+ * Arguments are {@code key=value} pairs, see {@link Options}:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=ru.bibarsov.jdbcstdops.load.LoadHarness \
+ *   -Dexec.args="rows=10000000 threads=1,2,4,8,16,32,64 pool=32"
+ * </pre>
+ */
+@ParametersAreNonnullByDefault
+public class LoadHarness {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadHarness.class);
+
+  enum Operation {
+    FIND_ONE("findOne"),
+    CREATE("create"),
+    CREATE_OR_UPDATE("createOrUpdate"),
+    //keyset page from random id, reading the whole table of millions rows isn't a request
+    GET_PAGE("getPage");
+
+    private final String key;
+
+    Operation(String key) {
+      this.key = key;
+    }
+
+    static Operation ofKey(String key) {
+      for (Operation operation : values()) {
+        if (operation.key.equals(key)) {
+          return operation;
+        }
+      }
+      throw new IllegalArgumentException("Unknown operation " + key);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = Options.parse(args);
+    ConnectionWaitTracker waitTracker = new ConnectionWaitTracker();
+    try (
+        EmbeddedPostgres db = EmbeddedPostgres.builder()
+            .setServerConfig("max_connections", String.valueOf(options.poolSize + 10))
+            .start();
+        HikariDataSource dataSource = createDataSource(db, options.poolSize, waitTracker)
+    ) {
+      NamedParameterJdbcTemplate jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+      DatabaseManager.initDatabase(jdbcTemplate);
+      //no logging on the hot path
+      StandardOperations<Entity, Long> stdOps = new StandardOperations<>(
+          Entity.class,
+          jdbcTemplate,
+          new StandardOperationsConfig().setQueryListener(QueryListener.NOOP)
+      );
+      long loadStartNanos = System.nanoTime();
+      stdOps.copyAll(LongStream.range(0, options.rows).mapToObj(id -> newEntity(id, "name")));
+      jdbcTemplate.getJdbcTemplate().execute("ANALYZE entity");
+      System.out.printf(
+          "Loaded %d rows in %d s%n",
+          options.rows,
+          TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - loadStartNanos)
+      );
+      Workload workload = new Workload(stdOps, options);
+      for (int threads : options.threads) {
+        workload.run(threads, options.warmupSeconds);
+        waitTracker.reset();
+        StepResult result = workload.run(threads, options.durationSeconds);
+        result.print(waitTracker);
+      }
+    }
+  }
+
+  private static HikariDataSource createDataSource(
+      EmbeddedPostgres db,
+      int poolSize,
+      ConnectionWaitTracker waitTracker
+  ) {
+    HikariConfig config = new HikariConfig();
+    config.setDataSource(db.getPostgresDatabase());
+    config.setMaximumPoolSize(poolSize);
+    config.setMinimumIdle(poolSize);
+    config.setMetricsTrackerFactory(waitTracker);
+    return new HikariDataSource(config);
+  }
+
+  private static Entity newEntity(long id, String name) {
+    return new Entity(
+        id,
+        name + "-" + id,
+        id % 2 == 0 ? null : "nullname",
+        EntType1.values()[(int) (id % 3)],
+        EntType2.values()[(int) (id % 3)],
+        EntType3.values()[(int) (id % 3)],
+        Instant.ofEpochSecond(id)
+    );
+  }
+
+  /**
+   * Harness arguments, all optional
+   */
+  static class Options {
+
+    //rows loaded before the first step
+    long rows = 1_000_000;
+    int[] threads = {1, 2, 4, 8, 16, 32, 64};
+    int poolSize = 32;
+    int warmupSeconds = 10;
+    int durationSeconds = 30;
+    int pageSize = 100;
+    //relative weights of operations
+    Map<Operation, Integer> mix = new EnumMap<>(Map.of(
+        Operation.FIND_ONE, 70,
+        Operation.CREATE, 10,
+        Operation.CREATE_OR_UPDATE, 15,
+        Operation.GET_PAGE, 5
+    ));
+
+    static Options parse(String[] args) {
+      Options options = new Options();
+      for (String arg : args) {
+        String[] keyValue = arg.split("=", 2);
+        checkArgument(keyValue.length == 2);
+        String value = keyValue[1];
+        switch (keyValue[0]) {
+          case "rows":
+            options.rows = Long.parseLong(value);
+            break;
+          case "threads":
+            options.threads = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+            break;
+          case "pool":
+            options.poolSize = Integer.parseInt(value);
+            break;
+          case "warmup":
+            options.warmupSeconds = Integer.parseInt(value);
+            break;
+          case "duration":
+            options.durationSeconds = Integer.parseInt(value);
+            break;
+          case "pageSize":
+            options.pageSize = Integer.parseInt(value);
+            break;
+          case "mix":
+            //e.g. findOne:70,create:10,createOrUpdate:15,getPage:5
+            options.mix = new EnumMap<>(Operation.class);
+            for (String weight : value.split(",")) {
+              String[] operationWeight = weight.split(":", 2);
+              options.mix.put(
+                  Operation.ofKey(operationWeight[0]),
+                  Integer.parseInt(operationWeight[1])
+              );
+            }
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown argument " + arg);
+        }
+      }
+      checkArgument(options.rows > 0);
+      checkArgument(options.poolSize > 0);
+      checkArgument(options.mix.values().stream().mapToInt(Integer::intValue).sum() > 0);
+      return options;
+    }
+  }
+
+  private static class Workload {
+
+    private final StandardOperations<Entity, Long> stdOps;
+    private final long rows;
+    private final int pageSize;
+    private final Operation[] operations;
+    //cumulative weights of operations
+    private final int[] weights;
+    //created rows follow the loaded ones
+    private final AtomicLong nextId;
+
+    private Workload(StandardOperations<Entity, Long> stdOps, Options options) {
+      this.stdOps = stdOps;
+      this.rows = options.rows;
+      this.pageSize = options.pageSize;
+      this.operations = options.mix.keySet().toArray(new Operation[0]);
+      this.weights = new int[operations.length];
+      int total = 0;
+      for (int i = 0; i < operations.length; i++) {
+        total += options.mix.get(operations[i]);
+        weights[i] = total;
+      }
+      this.nextId = new AtomicLong(options.rows);
+    }
+
+    private StepResult run(int threads, int durationSeconds) throws InterruptedException {
+      Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+      for (Operation operation : operations) {
+        latencies.put(operation, new LatencyHistogram());
+      }
+      LongAdder errors = new LongAdder();
+      AtomicBoolean firstErrorLogged = new AtomicBoolean();
+      long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      long startNanos = System.nanoTime();
+      for (int i = 0; i < threads; i++) {
+        executor.execute(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          while (System.nanoTime() < deadlineNanos) {
+            Operation operation = pick(random);
+            long operationStartNanos = System.nanoTime();
+            try {
+              execute(operation, random);
+              latencies.get(operation).record(System.nanoTime() - operationStartNanos);
+            } catch (RuntimeException e) {
+              errors.increment();
+              if (firstErrorLogged.compareAndSet(false, true)) {
+                LOGGER.warn(
+                    "{} failed at {} threads, next errors of the step are only counted",
+                    operation,
+                    threads,
+                    e
+                );
+              }
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      if (!executor.awaitTermination(durationSeconds + 60L, TimeUnit.SECONDS)) {
+        executor.shutdownNow();
+        checkState(false, "Workers of " + threads + " threads step didn't finish in time");
+      }
+      return new StepResult(threads, System.nanoTime() - startNanos, latencies, errors.sum());
+    }
+
+    private Operation pick(ThreadLocalRandom random) {
+      int value = random.nextInt(weights[weights.length - 1]);
+      for (int i = 0; i < weights.length; i++) {
+        if (value < weights[i]) {
+          return operations[i];
+        }
+      }
+      throw new IllegalStateException("Weight " + value + " is out of range");
+    }
+
+    private void execute(Operation operation, ThreadLocalRandom random) {
+      switch (operation) {
+        case FIND_ONE:
+          stdOps.findOne(random.nextLong(rows));
+          break;
+        case CREATE:
+          stdOps.create(newEntity(nextId.getAndIncrement(), "created"));
+          break;
+        case CREATE_OR_UPDATE:
+          stdOps.createOrUpdate(newEntity(random.nextLong(rows), "updated"));
+          break;
+        case GET_PAGE:
+          stdOps.getPage(random.nextLong(rows), pageSize);
+          break;
+        default:
+          throw new IllegalStateException("Unknown operation " + operation);
+      }
+    }
+  }
+
+  private static class StepResult {
+
+    private final int threads;
+    private final long elapsedNanos;
+    private final Map<Operation, LatencyHistogram> latencies;
+    private final long errors;
+
+    private StepResult(
+        int threads,
+        long elapsedNanos,
+        Map<Operation, LatencyHistogram> latencies,
+        long errors
+    ) {
+      this.threads = threads;
+      this.elapsedNanos = elapsedNanos;
+      this.latencies = latencies;
+      this.errors = errors;
+    }
+
+    private void print(ConnectionWaitTracker waitTracker) {
+      long total = latencies.values().stream().mapToLong(LatencyHistogram::count).sum();
+      double seconds = elapsedNanos / 1e9;
+      System.out.printf(
+          "%n=== threads: %d, throughput: %.0f ops/s, errors: %d ===%n",
+          threads,
+          total / seconds,
+          errors
+      );
+      Map<String, LatencyHistogram> rows = new LinkedHashMap<>();
+      latencies.forEach((operation, histogram) -> rows.put(operation.key, histogram));
+      rows.put("connectionWait", waitTracker.getWaits());
+      System.out.printf(
+          "%-16s %10s %10s %10s %10s %10s %10s%n",
+          "", "count", "ops/s", "p50 us", "p99 us", "p99.9 us", "max us"
+      );
+      rows.forEach((name, histogram) -> System.out.printf(
+          "%-16s %10d %10.0f %10d %10d %10d %10d%n",
+          name,
+          histogram.count(),
+          histogram.count() / seconds,
+          toMicros(histogram.percentileNanos(50)),
+          toMicros(histogram.percentileNanos(99)),
+          toMicros(histogram.percentileNanos(99.9)),
+          toMicros(histogram.maxNanos())
+      ));
+      System.out.printf("connection timeouts: %d%n", waitTracker.getTimeouts());
+    }
+
+    private static long toMicros(long nanos) {
+      return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+  }
+}